@@ -0,0 +1,1168 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.BiFunction;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: ArrayB2_3Tree
+// Files: ArrayB2_3Tree.java, B2_3Tree.java, InnerNode.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Array-backed 2-3 tree with the same public API as B2_3Tree. Instead of one TreeNode object per
+ * node and one InnerNode per entry, every node is an int id into three flat arrays: two key slots
+ * and two value slots per node, and three child slots per node. There are no parent pointers;
+ * inserts and removes remember the path they took from the root instead.
+ *
+ * InnerNodes handed out by the iterators and the floor/ceiling methods are copies, so calling
+ * setValue on them does not change the tree. Use put or compute instead.
+ *
+ * @author fvanorde
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class ArrayB2_3Tree<K extends Comparable<? super K>, V> implements Iterable<V> {
+  private static final int NIL = -1;
+
+  private Object[] keys; // keys[2 * id] is the left key, keys[2 * id + 1] the right key or null
+  private Object[] values; // values[2 * id + i] belongs to keys[2 * id + i]
+  private int[] children; // children[3 * id] is NIL for a leaf
+  private int nodeCount; // number of ids handed out so far
+  private int freeList; // head of the list of removed ids, chained through children[3 * id]
+  private int root;
+  private int size;
+  // Path from the root taken by the last descend(), reused by insert and remove
+  private int[] pathNodes;
+  private int[] pathSlots;
+  private int pathDepth;
+
+  /**
+   * Constructor for an ArrayB2_3Tree
+   */
+  public ArrayB2_3Tree() {
+    this(16);
+  }
+
+  /**
+   * Constructor for an ArrayB2_3Tree with room for the given number of nodes
+   *
+   * @param capacity - number of nodes to allocate up front
+   */
+  private ArrayB2_3Tree(int capacity) {
+    keys = new Object[2 * capacity];
+    values = new Object[2 * capacity];
+    children = new int[3 * capacity];
+    nodeCount = 0;
+    freeList = NIL;
+    root = NIL;
+    size = 0;
+    pathNodes = new int[16];
+    pathSlots = new int[16];
+  }
+
+  /**
+   * Bulk-load constructor for an ArrayB2_3Tree. Builds a balanced tree from the given entries in
+   * O(n) after sorting. As with insert, only the first entry for a duplicate key is kept.
+   *
+   * @param entries - key/value pairs to load, in any order
+   * @throws IllegalKeyException if any entry has a null key
+   */
+  public ArrayB2_3Tree(Collection<InnerNode<K, V>> entries) throws IllegalKeyException {
+    this(Math.max(16, entries.size()));
+    @SuppressWarnings("unchecked")
+    InnerNode<K, V>[] nodeAry = (InnerNode<K, V>[]) entries.toArray(new InnerNode<?, ?>[0]);
+    boolean sorted = true;
+    for (int i = 0; i < nodeAry.length; i++) {
+      if (nodeAry[i].getKey() == null) {
+        throw new IllegalKeyException("Cannot store a null value.");
+      }
+      if (i > 0 && nodeAry[i - 1].getKey().compareTo(nodeAry[i].getKey()) > 0) {
+        sorted = false;
+      }
+    }
+    if (!sorted) {
+      // Stable sort so the first of several duplicates stays first
+      Arrays.sort(nodeAry, (n1, n2) -> n1.getKey().compareTo(n2.getKey()));
+    }
+    int count = 0;
+    for (int i = 0; i < nodeAry.length; i++) {
+      if (count == 0 || nodeAry[count - 1].getKey().compareTo(nodeAry[i].getKey()) != 0) {
+        nodeAry[count++] = nodeAry[i];
+      }
+    }
+    if (count == 0) {
+      return;
+    }
+    int height = 0;
+    while (maxKeys(height) < count) {
+      height++;
+    }
+    root = buildSubtree(nodeAry, 0, count, height);
+    size = count;
+  }
+
+  /**
+   * Builds a subtree of the given height holding nodeAry[from, from + count).
+   *
+   * @param nodeAry - sorted InnerNodes with no duplicate keys
+   * @param from    - index of the first InnerNode of the subtree
+   * @param count   - number of InnerNodes in the subtree
+   * @param height  - height of the subtree, 0 for a leaf
+   * @return id of the root node of the subtree
+   */
+  private int buildSubtree(InnerNode<K, V>[] nodeAry, int from, int count, int height) {
+    int node = allocNode();
+    if (height == 0) {
+      setEntry(node, 0, nodeAry[from].getKey(), nodeAry[from].getValue());
+      if (count == 2) {
+        setEntry(node, 1, nodeAry[from + 1].getKey(), nodeAry[from + 1].getValue());
+      }
+      return node;
+    }
+    // Use a 2Node unless the keys left over would overflow two full children
+    int childCount = (count - 1 <= 2 * maxKeys(height - 1)) ? 2 : 3;
+    int childKeys = count - (childCount - 1);
+    int pos = from;
+    for (int c = 0; c < childCount; c++) {
+      // Spread the keys as evenly as possible over the children
+      int childSize = childKeys / childCount + (c < childKeys % childCount ? 1 : 0);
+      int child = buildSubtree(nodeAry, pos, childSize, height - 1);
+      children[3 * node + c] = child;
+      pos += childSize;
+      if (c < childCount - 1) {
+        setEntry(node, c, nodeAry[pos].getKey(), nodeAry[pos].getValue());
+        pos++;
+      }
+    }
+    return node;
+  }
+
+  /**
+   * @param height - height of a subtree, 0 for a leaf
+   * @return the number of keys in a subtree of the given height made entirely of 3Nodes
+   */
+  private static long maxKeys(int height) {
+    long max = 3;
+    for (int i = 0; i < height; i++) {
+      max *= 3;
+    }
+    return max - 1;
+  }
+
+  /**
+   * Hands out a node id, reusing removed ids first and growing the arrays when full
+   *
+   * @return id of an empty leaf node
+   */
+  private int allocNode() {
+    int node;
+    if (freeList != NIL) {
+      node = freeList;
+      freeList = children[3 * node];
+    } else {
+      if (nodeCount * 2 == keys.length) {
+        int capacity = Math.max(16, nodeCount * 2);
+        keys = Arrays.copyOf(keys, 2 * capacity);
+        values = Arrays.copyOf(values, 2 * capacity);
+        children = Arrays.copyOf(children, 3 * capacity);
+      }
+      node = nodeCount++;
+    }
+    children[3 * node] = NIL;
+    children[3 * node + 1] = NIL;
+    children[3 * node + 2] = NIL;
+    return node;
+  }
+
+  /**
+   * Returns a node id to the free list
+   *
+   * @param node - id of the node to free
+   */
+  private void freeNode(int node) {
+    keys[2 * node] = null;
+    keys[2 * node + 1] = null;
+    values[2 * node] = null;
+    values[2 * node + 1] = null;
+    children[3 * node] = freeList;
+    freeList = node;
+  }
+
+  /**
+   * @param node  - node id
+   * @param index - 0 for the left key, 1 for the right key
+   * @return the key in the given slot
+   */
+  @SuppressWarnings("unchecked")
+  private K key(int node, int index) {
+    return (K) keys[2 * node + index];
+  }
+
+  /**
+   * @param node  - node id
+   * @param index - 0 for the left value, 1 for the right value
+   * @return the value in the given slot
+   */
+  @SuppressWarnings("unchecked")
+  private V value(int node, int index) {
+    return (V) values[2 * node + index];
+  }
+
+  /**
+   * Stores a key and value in the given slot
+   *
+   * @param node  - node id
+   * @param index - 0 for the left slot, 1 for the right slot
+   * @param key   - key to store
+   * @param value - value to store
+   */
+  private void setEntry(int node, int index, Object key, Object value) {
+    keys[2 * node + index] = key;
+    values[2 * node + index] = value;
+  }
+
+  /**
+   * @param node - node id
+   * @return true if the node holds a single key, else false
+   */
+  private boolean is2Node(int node) {
+    return keys[2 * node + 1] == null;
+  }
+
+  /**
+   * @param node - node id
+   * @return true if the node has no children, else false
+   */
+  private boolean isLeaf(int node) {
+    return children[3 * node] == NIL;
+  }
+
+  /**
+   * @return true if the tree is empty, else false
+   */
+  public boolean isEmpty() {
+    return root == NIL;
+  }
+
+  /**
+   * @return the number of keys stored in the tree
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Removes every key from the tree.
+   */
+  public void clear() {
+    Arrays.fill(keys, 0, 2 * nodeCount, null);
+    Arrays.fill(values, 0, 2 * nodeCount, null);
+    nodeCount = 0;
+    freeList = NIL;
+    root = NIL;
+    size = 0;
+  }
+
+  /**
+   * Inserts the given key and value into the tree. If the key is already present the tree is left
+   * unchanged.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @throws IllegalKeyException
+   */
+  public void insert(K key, V value) throws IllegalKeyException {
+    putIfAbsent(key, value);
+  }
+
+  /**
+   * Inserts the given key and value into the tree, replacing the value if the key is already
+   * present.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @return the previous value stored under key, else null
+   * @throws IllegalKeyException
+   */
+  public V put(K key, V value) throws IllegalKeyException {
+    if (key == null) { // Null check
+      throw new IllegalKeyException("Cannot store a null value.");
+    }
+    if (root != NIL && descend(key)) {
+      int node = pathNodes[pathDepth - 1];
+      int index = pathSlots[pathDepth - 1];
+      V previous = value(node, index);
+      values[2 * node + index] = value;
+      return previous;
+    }
+    insertAtPath(key, value);
+    return null;
+  }
+
+  /**
+   * Inserts the given key and value into the tree only if the key is not already present.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @return the value already stored under key, else null
+   * @throws IllegalKeyException
+   */
+  public V putIfAbsent(K key, V value) throws IllegalKeyException {
+    if (key == null) { // Null check
+      throw new IllegalKeyException("Cannot store a null value.");
+    }
+    if (root != NIL && descend(key)) {
+      return value(pathNodes[pathDepth - 1], pathSlots[pathDepth - 1]);
+    }
+    insertAtPath(key, value);
+    return null;
+  }
+
+  /**
+   * Computes a new value for the given key from its current value (null if absent) and stores it,
+   * all in one descent of the tree. If the function returns null the key is removed, or not
+   * inserted if it was absent.
+   *
+   * @param key       - Key to identify the node
+   * @param remapping - function from the key and its current value to the new value
+   * @return the new value stored under key
+   * @throws IllegalKeyException
+   */
+  public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping)
+      throws IllegalKeyException {
+    if (key == null) { // Null check
+      throw new IllegalKeyException("Cannot store a null value.");
+    }
+    if (root != NIL && descend(key)) {
+      int node = pathNodes[pathDepth - 1];
+      int index = pathSlots[pathDepth - 1];
+      V value = remapping.apply(key, value(node, index));
+      if (value == null) {
+        removeAtPath();
+      } else {
+        values[2 * node + index] = value;
+      }
+      return value;
+    }
+    V value = remapping.apply(key, null);
+    if (value != null) {
+      insertAtPath(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Removes the given key from the tree, merging with or borrowing from sibling nodes on the way
+   * back up the recorded path so that every leaf stays at the same depth.
+   *
+   * @param key - key to remove
+   * @return the value that was stored under key, else null
+   */
+  public V remove(K key) {
+    if (root == NIL || key == null || !descend(key)) {
+      return null;
+    }
+    return removeAtPath();
+  }
+
+  /**
+   * Searches the tree for a node with the specified key
+   *
+   * @param key - key to search for
+   * @return - value of the node with specified key, else null
+   */
+  public V get(K key) {
+    int node = root;
+    while (node != NIL) {
+      int cmp = key.compareTo(key(node, 0));
+      if (cmp == 0) {
+        return value(node, 0);
+      }
+      int slot;
+      if (cmp < 0) {
+        slot = 0;
+      } else if (is2Node(node)) {
+        slot = 1;
+      } else {
+        cmp = key.compareTo(key(node, 1));
+        if (cmp == 0) {
+          return value(node, 1);
+        }
+        slot = cmp < 0 ? 1 : 2;
+      }
+      node = children[3 * node + slot];
+    }
+    return null;
+  }
+
+  /**
+   * Descends a non-empty tree towards key, recording every node visited and the child slot taken
+   * from it. The last entry of the path is the node holding key, with the index of the matching
+   * key as its slot, or else the leaf where key would go, with the insert position as its slot.
+   *
+   * @param key - key to search for
+   * @return true if key is in the tree, else false
+   */
+  private boolean descend(K key) {
+    pathDepth = 0;
+    int node = root;
+    while (true) {
+      int slot;
+      int cmp = key.compareTo(key(node, 0));
+      if (cmp == 0) {
+        pushPath(node, 0);
+        return true;
+      }
+      if (cmp < 0) {
+        slot = 0;
+      } else if (is2Node(node)) {
+        slot = 1;
+      } else {
+        cmp = key.compareTo(key(node, 1));
+        if (cmp == 0) {
+          pushPath(node, 1);
+          return true;
+        }
+        slot = cmp < 0 ? 1 : 2;
+      }
+      pushPath(node, slot);
+      if (isLeaf(node)) {
+        return false;
+      }
+      node = children[3 * node + slot];
+    }
+  }
+
+  /**
+   * Appends a node to the recorded path, growing the path arrays if needed
+   *
+   * @param node - node id
+   * @param slot - child slot taken from node
+   */
+  private void pushPath(int node, int slot) {
+    if (pathDepth == pathNodes.length) {
+      pathNodes = Arrays.copyOf(pathNodes, pathDepth * 2);
+      pathSlots = Arrays.copyOf(pathSlots, pathDepth * 2);
+    }
+    pathNodes[pathDepth] = node;
+    pathSlots[pathDepth] = slot;
+    pathDepth++;
+  }
+
+  /**
+   * Inserts a key that descend() did not find at the leaf it stopped at, splitting full nodes
+   * back up the recorded path.
+   *
+   * @param key   - key to insert
+   * @param value - value to insert
+   */
+  private void insertAtPath(K key, V value) {
+    size++;
+    if (root == NIL) {
+      root = allocNode();
+      setEntry(root, 0, key, value);
+      return;
+    }
+    Object upKey = key;
+    Object upValue = value;
+    int upChild = NIL; // new node to the right of upKey
+    for (int d = pathDepth - 1; d >= 0; d--) {
+      int node = pathNodes[d];
+      int slot = pathSlots[d];
+      int c = 3 * node;
+      if (is2Node(node)) {
+        if (slot == 0) {
+          setEntry(node, 1, keys[2 * node], values[2 * node]);
+          setEntry(node, 0, upKey, upValue);
+          children[c + 2] = children[c + 1];
+          children[c + 1] = upChild;
+        } else {
+          setEntry(node, 1, upKey, upValue);
+          children[c + 2] = upChild;
+        }
+        return;
+      }
+      // 3Node -> split into node (smallest key) and right (largest key), promote the middle key
+      int right = allocNode();
+      Object promoteKey;
+      Object promoteValue;
+      if (slot == 0) {
+        promoteKey = keys[2 * node];
+        promoteValue = values[2 * node];
+        setEntry(right, 0, keys[2 * node + 1], values[2 * node + 1]);
+        setEntry(node, 0, upKey, upValue);
+        children[3 * right] = children[c + 1];
+        children[3 * right + 1] = children[c + 2];
+        children[c + 1] = upChild;
+      } else if (slot == 1) {
+        promoteKey = upKey;
+        promoteValue = upValue;
+        setEntry(right, 0, keys[2 * node + 1], values[2 * node + 1]);
+        children[3 * right] = upChild;
+        children[3 * right + 1] = children[c + 2];
+      } else {
+        promoteKey = keys[2 * node + 1];
+        promoteValue = values[2 * node + 1];
+        setEntry(right, 0, upKey, upValue);
+        children[3 * right] = children[c + 2];
+        children[3 * right + 1] = upChild;
+      }
+      setEntry(node, 1, null, null);
+      children[c + 2] = NIL;
+      upKey = promoteKey;
+      upValue = promoteValue;
+      upChild = right;
+    }
+    // The root was split -> grow the tree by one level
+    int newRoot = allocNode();
+    setEntry(newRoot, 0, upKey, upValue);
+    children[3 * newRoot] = root;
+    children[3 * newRoot + 1] = upChild;
+    root = newRoot;
+  }
+
+  /**
+   * Removes the key that descend() found. A key in an internal node is first replaced by its
+   * in-order successor, which always sits in a leaf.
+   *
+   * @return the value that was stored under the removed key
+   */
+  private V removeAtPath() {
+    size--;
+    int d = pathDepth - 1;
+    int node = pathNodes[d];
+    int index = pathSlots[d];
+    V removed = value(node, index);
+    if (!isLeaf(node)) {
+      // Successor is the leftmost key of the subtree to the right of the removed key
+      pathSlots[d] = index + 1;
+      int leaf = children[3 * node + index + 1];
+      while (true) {
+        pushPath(leaf, 0);
+        if (isLeaf(leaf)) {
+          break;
+        }
+        leaf = children[3 * leaf];
+      }
+      setEntry(node, index, keys[2 * leaf], values[2 * leaf]);
+      node = leaf;
+      index = 0;
+      d = pathDepth - 1;
+    }
+    // node is a leaf
+    if (!is2Node(node)) {
+      if (index == 0) {
+        setEntry(node, 0, keys[2 * node + 1], values[2 * node + 1]);
+      }
+      setEntry(node, 1, null, null);
+      return removed;
+    }
+    setEntry(node, 0, null, null);
+    fixEmptyNode(d, NIL);
+    return removed;
+  }
+
+  /**
+   * Restores the tree after the node at the given depth of the recorded path has lost its only
+   * key. The empty node either borrows a key through its parent from a 3Node sibling, or merges
+   * with a 2Node sibling. A merge takes a key away from the parent, which may leave the parent
+   * empty in turn.
+   *
+   * @param d    - depth of the empty node in the recorded path
+   * @param only - the single remaining child of the empty node, NIL if it is a leaf
+   */
+  private void fixEmptyNode(int d, int only) {
+    while (true) {
+      int hole = pathNodes[d];
+      // Special case: the root is empty -> its only child becomes the root
+      if (d == 0) {
+        root = only;
+        freeNode(hole);
+        return;
+      }
+      int parent = pathNodes[d - 1];
+      int pos = pathSlots[d - 1];
+      int p = 3 * parent;
+      int h = 3 * hole;
+      int merged;
+      // Case 1: hole is the left child of parent
+      if (pos == 0) {
+        int sibling = children[p + 1];
+        int s = 3 * sibling;
+        if (!is2Node(sibling)) { // Borrow from middle sibling
+          setEntry(hole, 0, keys[2 * parent], values[2 * parent]);
+          setEntry(parent, 0, keys[2 * sibling], values[2 * sibling]);
+          setEntry(sibling, 0, keys[2 * sibling + 1], values[2 * sibling + 1]);
+          setEntry(sibling, 1, null, null);
+          children[h] = only;
+          children[h + 1] = children[s];
+          children[h + 2] = NIL;
+          children[s] = children[s + 1];
+          children[s + 1] = children[s + 2];
+          children[s + 2] = NIL;
+          return;
+        }
+        // Merge into middle sibling
+        setEntry(sibling, 1, keys[2 * sibling], values[2 * sibling]);
+        setEntry(sibling, 0, keys[2 * parent], values[2 * parent]);
+        children[s + 2] = children[s + 1];
+        children[s + 1] = children[s];
+        children[s] = only;
+        freeNode(hole);
+        if (!is2Node(parent)) {
+          setEntry(parent, 0, keys[2 * parent + 1], values[2 * parent + 1]);
+          setEntry(parent, 1, null, null);
+          children[p] = sibling;
+          children[p + 1] = children[p + 2];
+          children[p + 2] = NIL;
+          return;
+        }
+        merged = sibling;
+      }
+      // Case 2: hole is the middle child of parent
+      else if (pos == 1) {
+        int left = children[p];
+        int right = children[p + 2];
+        if (!is2Node(left)) { // Borrow from left sibling
+          setEntry(hole, 0, keys[2 * parent], values[2 * parent]);
+          setEntry(parent, 0, keys[2 * left + 1], values[2 * left + 1]);
+          setEntry(left, 1, null, null);
+          children[h] = children[3 * left + 2];
+          children[h + 1] = only;
+          children[h + 2] = NIL;
+          children[3 * left + 2] = NIL;
+          return;
+        }
+        if (right != NIL && !is2Node(right)) { // Borrow from right sibling
+          int r = 3 * right;
+          setEntry(hole, 0, keys[2 * parent + 1], values[2 * parent + 1]);
+          setEntry(parent, 1, keys[2 * right], values[2 * right]);
+          setEntry(right, 0, keys[2 * right + 1], values[2 * right + 1]);
+          setEntry(right, 1, null, null);
+          children[h] = only;
+          children[h + 1] = children[r];
+          children[h + 2] = NIL;
+          children[r] = children[r + 1];
+          children[r + 1] = children[r + 2];
+          children[r + 2] = NIL;
+          return;
+        }
+        // Merge into left sibling
+        setEntry(left, 1, keys[2 * parent], values[2 * parent]);
+        children[3 * left + 2] = only;
+        freeNode(hole);
+        if (!is2Node(parent)) {
+          setEntry(parent, 0, keys[2 * parent + 1], values[2 * parent + 1]);
+          setEntry(parent, 1, null, null);
+          children[p + 1] = children[p + 2];
+          children[p + 2] = NIL;
+          return;
+        }
+        merged = left;
+      }
+      // Case 3: hole is the right child of a 3Node parent
+      else {
+        int sibling = children[p + 1];
+        int s = 3 * sibling;
+        if (!is2Node(sibling)) { // Borrow from middle sibling
+          setEntry(hole, 0, keys[2 * parent + 1], values[2 * parent + 1]);
+          setEntry(parent, 1, keys[2 * sibling + 1], values[2 * sibling + 1]);
+          setEntry(sibling, 1, null, null);
+          children[h] = children[s + 2];
+          children[h + 1] = only;
+          children[h + 2] = NIL;
+          children[s + 2] = NIL;
+          return;
+        }
+        // Merge into middle sibling; parent drops back to a 2Node
+        setEntry(sibling, 1, keys[2 * parent + 1], values[2 * parent + 1]);
+        children[s + 2] = only;
+        setEntry(parent, 1, null, null);
+        children[p + 2] = NIL;
+        freeNode(hole);
+        return;
+      }
+      // parent was a 2Node and gave its key to the merge -> parent is now the empty node
+      setEntry(parent, 0, null, null);
+      only = merged;
+      d--;
+    }
+  }
+
+  /**
+   * Traverses the tree in order and adds all objects to an ArrayList
+   *
+   * @return ArrayList containing all objects in the tree
+   */
+  public ArrayList<V> traverse() {
+    ArrayList<V> list = new ArrayList<V>(size);
+    for (V value : this) {
+      list.add(value);
+    }
+    return list;
+  }
+
+  /**
+   * Returns the values whose keys lie between from and to, in ascending key order. Only the part
+   * of the tree between the two bounds is visited.
+   *
+   * @param from          - lower bound, null for no lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound, null for no upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return ArrayList of the values in the range
+   */
+  public ArrayList<V> range(K from, boolean fromInclusive, K to, boolean toInclusive) {
+    ArrayList<V> list = new ArrayList<V>();
+    TreeIterator itr = new TreeIterator(from, fromInclusive, to, toInclusive);
+    while (itr.hasNext()) {
+      itr.advance();
+      list.add(itr.curValue());
+    }
+    return list;
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the key/value pairs whose keys lie between from and to.
+   *
+   * @param from          - lower bound, null for no lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound, null for no upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return Iterator over copies of the entries in the range in ascending key order
+   */
+  public Iterator<InnerNode<K, V>> rangeIterator(K from, boolean fromInclusive, K to,
+      boolean toInclusive) {
+    return new TreeIterator(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * Returns the values of every String key that starts with the given prefix, in ascending key
+   * order. Costs one descent to the first match plus one step per match.
+   *
+   * @param tree   - tree with String keys to search
+   * @param prefix - prefix to search for
+   * @return ArrayList of values whose keys start with prefix
+   */
+  public static <V> ArrayList<V> prefixScan(ArrayB2_3Tree<String, V> tree, String prefix) {
+    ArrayList<V> list = new ArrayList<V>();
+    ArrayB2_3Tree<String, V>.TreeIterator itr = tree.new TreeIterator(prefix, true, null, false);
+    while (itr.hasNext()) {
+      itr.advance();
+      if (!itr.curKey().startsWith(prefix)) {
+        break;
+      }
+      list.add(itr.curValue());
+    }
+    return list;
+  }
+
+  /**
+   * @param key - key to search for
+   * @return a copy of the entry with the greatest key less than or equal to key, else null
+   */
+  public InnerNode<K, V> floorEntry(K key) {
+    return lowerOrFloor(key, true);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return a copy of the entry with the greatest key strictly less than key, else null
+   */
+  public InnerNode<K, V> lowerEntry(K key) {
+    return lowerOrFloor(key, false);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return a copy of the entry with the least key greater than or equal to key, else null
+   */
+  public InnerNode<K, V> ceilingEntry(K key) {
+    return higherOrCeiling(key, true);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return a copy of the entry with the least key strictly greater than key, else null
+   */
+  public InnerNode<K, V> higherEntry(K key) {
+    return higherOrCeiling(key, false);
+  }
+
+  /**
+   * Helper method for floorEntry and lowerEntry. Descends the tree once, remembering the closest
+   * slot to the left of key seen so far.
+   *
+   * @param key       - key to search for
+   * @param inclusive - true if an entry with a key equal to key may be returned
+   * @return copy of the closest entry at or below key, else null
+   */
+  private InnerNode<K, V> lowerOrFloor(K key, boolean inclusive) {
+    int best = NIL; // 2 * id + index of the best slot so far
+    int node = root;
+    while (node != NIL) {
+      int cmp = key.compareTo(key(node, 0));
+      if (cmp < 0 || (cmp == 0 && !inclusive)) {
+        node = children[3 * node];
+        continue;
+      }
+      best = 2 * node;
+      if (cmp == 0) {
+        break;
+      }
+      if (is2Node(node)) {
+        node = children[3 * node + 1];
+        continue;
+      }
+      cmp = key.compareTo(key(node, 1));
+      if (cmp < 0 || (cmp == 0 && !inclusive)) {
+        node = children[3 * node + 1];
+      } else {
+        best = 2 * node + 1;
+        if (cmp == 0) {
+          break;
+        }
+        node = children[3 * node + 2];
+      }
+    }
+    return entryAt(best);
+  }
+
+  /**
+   * Helper method for ceilingEntry and higherEntry. Descends the tree once, remembering the
+   * closest slot to the right of key seen so far.
+   *
+   * @param key       - key to search for
+   * @param inclusive - true if an entry with a key equal to key may be returned
+   * @return copy of the closest entry at or above key, else null
+   */
+  private InnerNode<K, V> higherOrCeiling(K key, boolean inclusive) {
+    int best = NIL; // 2 * id + index of the best slot so far
+    int node = root;
+    while (node != NIL) {
+      int cmp = key.compareTo(key(node, 0));
+      if (cmp < 0 || (cmp == 0 && inclusive)) {
+        best = 2 * node;
+        if (cmp == 0) {
+          break;
+        }
+        node = children[3 * node];
+        continue;
+      }
+      if (is2Node(node)) {
+        node = children[3 * node + 1];
+        continue;
+      }
+      cmp = key.compareTo(key(node, 1));
+      if (cmp < 0 || (cmp == 0 && inclusive)) {
+        best = 2 * node + 1;
+        if (cmp == 0) {
+          break;
+        }
+        node = children[3 * node + 1];
+      } else {
+        node = children[3 * node + 2];
+      }
+    }
+    return entryAt(best);
+  }
+
+  /**
+   * @param slot - 2 * id + index of a key slot, or NIL
+   * @return a new InnerNode holding the key and value of the slot, null for NIL
+   */
+  @SuppressWarnings("unchecked")
+  private InnerNode<K, V> entryAt(int slot) {
+    if (slot == NIL) {
+      return null;
+    }
+    return new InnerNode<K, V>((K) keys[slot], (V) values[slot]);
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the values in the tree.
+   *
+   * @return Iterator over the values of the tree in ascending key order
+   */
+  @Override
+  public Iterator<V> iterator() {
+    return new Iterator<V>() {
+      private final TreeIterator itr = new TreeIterator(null, false, null, false);
+
+      @Override
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      @Override
+      public V next() {
+        itr.advance();
+        return itr.curValue();
+      }
+    };
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the keys in the tree.
+   *
+   * @return Iterator over the keys of the tree in ascending order
+   */
+  public Iterator<K> keyIterator() {
+    return new Iterator<K>() {
+      private final TreeIterator itr = new TreeIterator(null, false, null, false);
+
+      @Override
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      @Override
+      public K next() {
+        itr.advance();
+        return itr.curKey();
+      }
+    };
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the key/value pairs in the tree.
+   *
+   * @return Iterator over copies of the entries of the tree in ascending key order
+   */
+  public Iterator<InnerNode<K, V>> entryIterator() {
+    return new TreeIterator(null, false, null, false);
+  }
+
+  /**
+   * In-order iterator over the key slots of the tree, using an explicit stack of (node, index)
+   * frames. advance() moves to the next slot without allocating; next() wraps it in a new
+   * InnerNode.
+   *
+   * @author fvanorde
+   *
+   */
+  private class TreeIterator implements Iterator<InnerNode<K, V>> {
+    private int[] nodeStack;
+    private int[] indexStack;
+    private int depth;
+    private K hi;
+    private boolean hiInclusive;
+    private int cur; // 2 * id + index of the slot last returned
+
+    /**
+     * Constructor for a TreeIterator over the keys between lo and hi
+     *
+     * @param lo          - lower bound, null for no lower bound
+     * @param loInclusive - true if a key equal to lo should be returned
+     * @param hi          - upper bound, null for no upper bound
+     * @param hiInclusive - true if a key equal to hi should be returned
+     */
+    private TreeIterator(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+      nodeStack = new int[16];
+      indexStack = new int[16];
+      depth = 0;
+      this.hi = hi;
+      this.hiInclusive = hiInclusive;
+      cur = NIL;
+      if (lo == null) {
+        pushLeftPath(root);
+      } else {
+        seek(lo, loInclusive);
+      }
+    }
+
+    /**
+     * Builds the stack so that the next slot returned holds the first key greater than (or equal
+     * to, if inclusive) lo
+     *
+     * @param lo        - lower bound
+     * @param inclusive - true if a key equal to lo should be returned
+     */
+    private void seek(K lo, boolean inclusive) {
+      int node = root;
+      while (node != NIL) {
+        int cmp = lo.compareTo(key(node, 0));
+        if (cmp < 0 || (cmp == 0 && inclusive)) {
+          push(node, 0);
+          if (cmp == 0) {
+            return;
+          }
+          node = children[3 * node];
+        } else if (is2Node(node)) {
+          node = children[3 * node + 1];
+        } else {
+          cmp = lo.compareTo(key(node, 1));
+          if (cmp < 0 || (cmp == 0 && inclusive)) {
+            push(node, 1);
+            if (cmp == 0) {
+              return;
+            }
+            node = children[3 * node + 1];
+          } else {
+            node = children[3 * node + 2];
+          }
+        }
+      }
+    }
+
+    /**
+     * Pushes node and all of its leftmost descendants onto the stack
+     *
+     * @param node - node id to start from, NIL for none
+     */
+    private void pushLeftPath(int node) {
+      while (node != NIL) {
+        push(node, 0);
+        node = children[3 * node];
+      }
+    }
+
+    /**
+     * Pushes a frame onto the stack, growing the stack if needed
+     *
+     * @param node  - node id of the frame
+     * @param index - index of the next key to return from node
+     */
+    private void push(int node, int index) {
+      if (depth == nodeStack.length) {
+        nodeStack = Arrays.copyOf(nodeStack, depth * 2);
+        indexStack = Arrays.copyOf(indexStack, depth * 2);
+      }
+      nodeStack[depth] = node;
+      indexStack[depth] = index;
+      depth++;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (depth == 0) {
+        return false;
+      }
+      if (hi == null) {
+        return true;
+      }
+      int cmp = key(nodeStack[depth - 1], indexStack[depth - 1]).compareTo(hi);
+      return cmp < 0 || (cmp == 0 && hiInclusive);
+    }
+
+    /**
+     * Moves to the next slot in key order
+     */
+    private void advance() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      depth--;
+      int node = nodeStack[depth];
+      int index = indexStack[depth];
+      if (index == 0 && !is2Node(node)) {
+        // Come back for the right key of a 3Node once the middle subtree is done
+        push(node, 1);
+      }
+      if (!isLeaf(node)) {
+        pushLeftPath(children[3 * node + index + 1]);
+      }
+      cur = 2 * node + index;
+    }
+
+    /**
+     * @return key of the slot last moved to
+     */
+    @SuppressWarnings("unchecked")
+    private K curKey() {
+      return (K) keys[cur];
+    }
+
+    /**
+     * @return value of the slot last moved to
+     */
+    @SuppressWarnings("unchecked")
+    private V curValue() {
+      return (V) values[cur];
+    }
+
+    @Override
+    public InnerNode<K, V> next() {
+      advance();
+      return entryAt(cur);
+    }
+  }
+
+  /**
+   * Compares memory use and lookup latency of ArrayB2_3Tree against B2_3Tree for the same
+   * entries.
+   *
+   * @param args
+   */
+  public static void main(String[] args) {
+    int n = 1000000;
+    Random rand = new Random(42);
+    ArrayList<InnerNode<Integer, String>> entries = new ArrayList<InnerNode<Integer, String>>();
+    Integer[] probes = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      Integer key = rand.nextInt();
+      entries.add(new InnerNode<Integer, String>(key, "Value"));
+      probes[i] = key;
+    }
+    try {
+      // Keys and values are shared by both trees, so the difference is node overhead only
+      long before = usedMemory();
+      B2_3Tree<Integer, String> linked = new B2_3Tree<Integer, String>();
+      for (InnerNode<Integer, String> entry : entries) {
+        linked.insert(entry.getKey(), entry.getValue());
+      }
+      long linkedBytes = usedMemory() - before;
+      before = usedMemory();
+      ArrayB2_3Tree<Integer, String> flat = new ArrayB2_3Tree<Integer, String>();
+      for (InnerNode<Integer, String> entry : entries) {
+        flat.insert(entry.getKey(), entry.getValue());
+      }
+      long flatBytes = usedMemory() - before;
+      System.out.println("Entries: " + flat.size());
+      System.out.println("B2_3Tree heap:      " + linkedBytes / flat.size() + " bytes/entry");
+      System.out.println("ArrayB2_3Tree heap: " + flatBytes / flat.size() + " bytes/entry");
+
+      for (int round = 0; round < 3; round++) { // First rounds warm up the JIT
+        long start = System.nanoTime();
+        int found = 0;
+        for (Integer key : probes) {
+          if (linked.get(key) != null) {
+            found++;
+          }
+        }
+        long linkedTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (Integer key : probes) {
+          if (flat.get(key) != null) {
+            found++;
+          }
+        }
+        long flatTime = System.nanoTime() - start;
+        System.out.println("Round " + round + ": B2_3Tree get " + linkedTime / n
+            + " ns, ArrayB2_3Tree get " + flatTime / n + " ns (" + found + " hits)");
+      }
+    } catch (IllegalKeyException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * @return bytes of heap in use after a garbage collection
+   */
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
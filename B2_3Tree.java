@@ -1,5 +1,9 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
 ///////////////////////////////////////////////////////////////////////////////
 //
 // Title: B2_3Tree
@@ -19,8 +23,9 @@ import java.util.Iterator;
  * @param <K>
  * @param <V>
  */
-public class B2_3Tree<K extends Comparable<? super K>, V> {
+public class B2_3Tree<K extends Comparable<? super K>, V> implements Iterable<V> {
   private TreeNode root;
+  private int size;
 
   /**
    * Inner class for tree nodes that stores InnerNode<K, V>
@@ -30,11 +35,9 @@ public class B2_3Tree<K extends Comparable<? super K>, V> {
    */
   private class TreeNode {
     private InnerNode<K, V> leftNode;
-    private InnerNode<K, V> tempMiddleNode;
     private InnerNode<K, V> rightNode;
     private TreeNode leftChild;
     private TreeNode middleChild;
-    private TreeNode tempMiddleChild;
     private TreeNode rightChild;
     private TreeNode parent;
 
@@ -48,7 +51,6 @@ public class B2_3Tree<K extends Comparable<? super K>, V> {
       this.rightNode = null;
       this.leftChild = null;
       this.middleChild = null;
-      this.tempMiddleChild = null;
       this.rightChild = null;
       this.parent = null;
     }
@@ -71,6 +73,105 @@ public class B2_3Tree<K extends Comparable<? super K>, V> {
    */
   public B2_3Tree() {
     root = null;
+    size = 0;
+  }
+
+  /**
+   * Bulk-load constructor for a B2_3Tree. Builds a balanced tree bottom-up from the given entries
+   * in O(n) after sorting, without any of the node splits done by repeated inserts. Input that is
+   * already in ascending key order is not re-sorted. As with insert, only the first entry for a
+   * duplicate key is kept.
+   * 
+   * @param entries - key/value pairs to load, in any order
+   * @throws IllegalKeyException if any entry has a null key
+   */
+  public B2_3Tree(Collection<InnerNode<K, V>> entries) throws IllegalKeyException {
+    root = null;
+    size = 0;
+    @SuppressWarnings("unchecked")
+    InnerNode<K, V>[] nodeAry = (InnerNode<K, V>[]) entries.toArray(new InnerNode<?, ?>[0]);
+    boolean sorted = true;
+    for (int i = 0; i < nodeAry.length; i++) {
+      if (nodeAry[i].getKey() == null) {
+        throw new IllegalKeyException("Cannot store a null value.");
+      }
+      if (i > 0 && nodeAry[i - 1].getKey().compareTo(nodeAry[i].getKey()) > 0) {
+        sorted = false;
+      }
+    }
+    if (!sorted) {
+      // Stable sort so the first of several duplicates stays first
+      Arrays.sort(nodeAry, (n1, n2) -> n1.getKey().compareTo(n2.getKey()));
+    }
+    // Drop duplicate keys
+    int count = 0;
+    for (int i = 0; i < nodeAry.length; i++) {
+      if (count == 0 || nodeAry[count - 1].getKey().compareTo(nodeAry[i].getKey()) != 0) {
+        nodeAry[count++] = nodeAry[i];
+      }
+    }
+    if (count == 0) {
+      return;
+    }
+    int height = 0;
+    while (maxKeys(height) < count) {
+      height++;
+    }
+    root = buildSubtree(nodeAry, 0, count, height);
+    size = count;
+  }
+
+  /**
+   * Builds a subtree of the given height holding nodeAry[from, from + count). count must lie
+   * between minKeys(height) and maxKeys(height).
+   * 
+   * @param nodeAry - sorted InnerNodes with no duplicate keys
+   * @param from    - index of the first InnerNode of the subtree
+   * @param count   - number of InnerNodes in the subtree
+   * @param height  - height of the subtree, 0 for a leaf
+   * @return root TreeNode of the subtree
+   */
+  private TreeNode buildSubtree(InnerNode<K, V>[] nodeAry, int from, int count, int height) {
+    if (height == 0) {
+      TreeNode leaf = new TreeNode(nodeAry[from]);
+      if (count == 2) {
+        leaf.rightNode = nodeAry[from + 1];
+      }
+      return leaf;
+    }
+    // Use a 2Node unless the keys left over would overflow two full children
+    int children = (count - 1 <= 2 * maxKeys(height - 1)) ? 2 : 3;
+    int childKeys = count - (children - 1);
+    TreeNode[] childAry = newNodeArray(children);
+    int[] separators = new int[2];
+    int pos = from;
+    for (int c = 0; c < children; c++) {
+      // Spread the keys as evenly as possible over the children
+      int size = childKeys / children + (c < childKeys % children ? 1 : 0);
+      childAry[c] = buildSubtree(nodeAry, pos, size, height - 1);
+      pos += size;
+      if (c < children - 1) {
+        separators[c] = pos++;
+      }
+    }
+    TreeNode node = new TreeNode(nodeAry[separators[0]]);
+    if (children == 3) {
+      node.rightNode = nodeAry[separators[1]];
+      return updateNodeLinkages(node, childAry[0], childAry[1], childAry[2]);
+    }
+    return updateNodeLinkages(node, childAry[0], childAry[1], null);
+  }
+
+  /**
+   * @param height - height of a subtree, 0 for a leaf
+   * @return the number of keys in a subtree of the given height made entirely of 3Nodes
+   */
+  private static long maxKeys(int height) {
+    long max = 3;
+    for (int i = 0; i < height; i++) {
+      max *= 3;
+    }
+    return max - 1;
   }
   
   /**
@@ -84,442 +185,867 @@ public class B2_3Tree<K extends Comparable<? super K>, V> {
   }
 
   /**
-   * Inserts the given key and value into the tree.
+   * @return the number of keys stored in the tree
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Removes every key from the tree.
+   */
+  public void clear() {
+    root = null;
+    size = 0;
+  }
+
+  /**
+   * Inserts the given key and value into the tree. If the key is already present the tree is left
+   * unchanged.
    * 
    * @param key   - Key to identify the node
    * @param value - value contained by the node
    * @throws IllegalKeyException
    */
   public void insert(K key, V value) throws IllegalKeyException {
+    putIfAbsent(key, value);
+  }
+
+  /**
+   * Inserts the given key and value into the tree, replacing the value if the key is already
+   * present.
+   * 
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @return the previous value stored under key, else null
+   * @throws IllegalKeyException
+   */
+  public V put(K key, V value) throws IllegalKeyException {
     if (key == null) { // Null check
       throw new IllegalKeyException("Cannot store a null value.");
     }
-    if (get(key) != null) { // Duplicate check
-      return;
+    if (root == null) {
+      root = new TreeNode(new InnerNode<K, V>(key, value));
+      size++;
+      return null;
+    }
+    int[] slot = new int[1];
+    TreeNode node = findNode(key, slot);
+    InnerNode<K, V> match = matchingEntry(node, slot[0]);
+    if (match != null) {
+      V previous = match.getValue();
+      match.setValue(value);
+      return previous;
+    }
+    insertAt(node, -slot[0] - 1, new InnerNode<K, V>(key, value));
+    return null;
+  }
+
+  /**
+   * Inserts the given key and value into the tree only if the key is not already present.
+   * 
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @return the value already stored under key, else null
+   * @throws IllegalKeyException
+   */
+  public V putIfAbsent(K key, V value) throws IllegalKeyException {
+    if (key == null) { // Null check
+      throw new IllegalKeyException("Cannot store a null value.");
     }
-    InnerNode<K, V> newNode = new InnerNode<K, V>(key, value);
-    // Special case 1: Empty tree
     if (root == null) {
-      root = new TreeNode(newNode);
-      return;
-    } else {
-      insert(root, root.parent, newNode);
+      root = new TreeNode(new InnerNode<K, V>(key, value));
+      size++;
+      return null;
     }
+    int[] slot = new int[1];
+    TreeNode node = findNode(key, slot);
+    InnerNode<K, V> match = matchingEntry(node, slot[0]);
+    if (match != null) {
+      return match.getValue();
+    }
+    insertAt(node, -slot[0] - 1, new InnerNode<K, V>(key, value));
+    return null;
   }
 
   /**
-   * Inserts the specified InnerNode into the tree.
+   * Computes a new value for the given key from its current value (null if absent) and stores it,
+   * all in one descent of the tree. If the function returns null the key is removed, or not
+   * inserted if it was absent.
    * 
-   * @param curNode    - current TreeNode
-   * @param parentNode - parent TreeNode of curNode
-   * @param newNode    - InnerNode to insert
-   */
-  private void insert(TreeNode curNode, TreeNode parentNode, InnerNode<K, V> newNode) {
-    // If curNode has a left child, we are not at a leaf
-    if (curNode.leftChild != null) {
-      // newNode is to the left of curNode
-      if (newNode.getKey().compareTo(curNode.leftNode.getKey()) < 0) {
-        insert(curNode.leftChild, curNode, newNode);
-        return;
-      }
-      // curNode is a 2Node or curNode is a 3Node and newNode is between curNode's left and right
-      // InnerNodes
-      if ((curNode.is2Node()) || (newNode.getKey().compareTo(curNode.rightNode.getKey()) < 0)) {
-        insert(curNode.middleChild, curNode, newNode);
-        return;
-      }
-      // curNode is a 3Node and newNode is to its right
-      if (newNode.getKey().compareTo(curNode.rightNode.getKey()) > 0) {
-        insert(curNode.rightChild, curNode, newNode);
-        return;
-      }
+   * @param key       - Key to identify the node
+   * @param remapping - function from the key and its current value to the new value
+   * @return the new value stored under key
+   * @throws IllegalKeyException
+   */
+  public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping)
+      throws IllegalKeyException {
+    if (key == null) { // Null check
+      throw new IllegalKeyException("Cannot store a null value.");
+    }
+    TreeNode node = null;
+    InnerNode<K, V> match = null;
+    int[] slot = new int[1];
+    if (root != null) {
+      node = findNode(key, slot);
+      match = matchingEntry(node, slot[0]);
     }
-    // curNode is a leaf
-    // Case 1: Insert a node with only one data element
-    if (curNode.is2Node()) {
-      if (newNode.getKey().compareTo(curNode.leftNode.getKey()) < 0) {
-        curNode.rightNode = curNode.leftNode;
-        curNode.leftNode = newNode;
+    if (match != null) {
+      V value = remapping.apply(key, match.getValue());
+      if (value == null) {
+        removeEntry(node, match);
       } else {
-        curNode.rightNode = newNode;
+        match.setValue(value);
       }
-      return;
+      return value;
     }
-    // Case 1.5 parentNode is null
-    if (parentNode == null) {
-      InnerNode<K, V>[] nodeAry = sortInnerNodes(curNode.leftNode, curNode.rightNode, newNode);
-      TreeNode newParent = new TreeNode(nodeAry[1]);
-      newParent.leftChild = new TreeNode(nodeAry[0]);
-      newParent.middleChild = new TreeNode(nodeAry[2]);
-      // Update parent of new child nodes
-      newParent.leftChild.parent = newParent;
-      newParent.middleChild.parent = newParent;
-      root = newParent;
-      return;
+    V value = remapping.apply(key, null);
+    if (value == null) {
+      return null;
     }
-    InnerNode<K, V>[] nodeAry = sortInnerNodes(curNode.leftNode, curNode.rightNode, newNode);
-    // Create new nodes
-    TreeNode newLeftOrMiddleChild = new TreeNode(nodeAry[0]);
-    TreeNode newMiddleOrRightChild = new TreeNode(nodeAry[2]);
-
-    // Case 2: Insert in a node with two data elements whose parent contains only one data element.
-    if (parentNode.is2Node()) {
-      // curNode is left child of parent
-      if (curNode.equals(parentNode.leftChild)) {
-        parentNode.rightNode = parentNode.leftNode;
-        parentNode.leftNode = nodeAry[1]; // Middle node value moves up to parent
-        // Move middle child over to prepare for split
-        parentNode.rightChild = parentNode.middleChild;
-        parentNode.leftChild = newLeftOrMiddleChild;
-        parentNode.middleChild = newMiddleOrRightChild;
-      } // curNode is middle child of parent
-      else {
-        parentNode.rightNode = nodeAry[1];
-        parentNode.middleChild = newLeftOrMiddleChild;
-        parentNode.rightChild = newMiddleOrRightChild;
-      }
-      // Update parent of new child nodes
-      newLeftOrMiddleChild.parent = parentNode;
-      newMiddleOrRightChild.parent = parentNode;
-      return;
+    if (node == null) {
+      root = new TreeNode(new InnerNode<K, V>(key, value));
+      size++;
+    } else {
+      insertAt(node, -slot[0] - 1, new InnerNode<K, V>(key, value));
     }
-    // Case 3: Insert in a node with two data elements whose parent also contains two data elements.
-    if (!parentNode.is2Node()) {
-      TreeNode fourNode = createTempFourNode(curNode, newNode);
-      insertFourNode(parentNode, fourNode);
+    return value;
+  }
+
+  /**
+   * Removes the given key from the tree, merging with or borrowing from sibling nodes on the way
+   * back up so that every leaf stays at the same depth.
+   * 
+   * @param key - key to remove
+   * @return the value that was stored under key, else null
+   */
+  public V remove(K key) {
+    if (root == null || key == null) {
+      return null;
     }
+    int[] slot = new int[1];
+    TreeNode node = findNode(key, slot);
+    InnerNode<K, V> match = matchingEntry(node, slot[0]);
+    if (match == null) {
+      return null;
+    }
+    removeEntry(node, match);
+    return match.getValue();
   }
 
   /**
-   * Inserts a four node into the tree by splitting the four node and recursively pushing the new
-   * parent of the split four node up the tree
+   * Removes an InnerNode from the TreeNode holding it. An InnerNode in an internal TreeNode is
+   * first replaced by its in-order successor, which always sits in a leaf.
    * 
-   * @param target
-   * @param fourNode
+   * @param node  - TreeNode holding match
+   * @param match - InnerNode to remove
    */
-  private void insertFourNode(TreeNode target, TreeNode fourNode) {
-    TreeNode insertNode = splitFourNode(fourNode);
-    if (target == null) {
-      root = insertNode;
-      return;
+  private void removeEntry(TreeNode node, InnerNode<K, V> match) {
+    size--;
+    if (node.leftChild != null) {
+      // Successor is the leftmost InnerNode of the subtree to the right of match
+      TreeNode leaf = (match == node.leftNode) ? node.middleChild : node.rightChild;
+      while (leaf.leftChild != null) {
+        leaf = leaf.leftChild;
+      }
+      if (match == node.leftNode) {
+        node.leftNode = leaf.leftNode;
+      } else {
+        node.rightNode = leaf.leftNode;
+      }
+      node = leaf;
+      match = leaf.leftNode;
+    }
+    // node is a leaf
+    if (match == node.rightNode) {
+      node.rightNode = null;
+    } else if (!node.is2Node()) {
+      node.leftNode = node.rightNode;
+      node.rightNode = null;
     } else {
-      insertFourNodeHelper(target, insertNode);
+      node.leftNode = null;
+      fixEmptyNode(node, null);
     }
   }
 
   /**
-   * Helper method for insertFourNode. Inserts node into the specified target node and recursively
-   * calls insertFourNode if insertion results in a new four node.
+   * Restores the tree after a TreeNode has lost its only InnerNode. The empty node either borrows
+   * an InnerNode through its parent from a 3Node sibling, or merges with a 2Node sibling. A merge
+   * takes an InnerNode away from the parent, which may leave the parent empty in turn.
    * 
-   * @param target     - node to insert into
-   * @param insertNode - split four node to insert
+   * @param hole      - TreeNode with no InnerNodes
+   * @param onlyChild - the single remaining child of hole, null if hole is a leaf
    */
-  private void insertFourNodeHelper(TreeNode target, TreeNode insertNode) {
-    TreeNode tmp = null;
-    // Inserting into a 2Node -> done after this
-    if (target.is2Node()) {
-      if (insertNode.leftNode.getKey().compareTo(target.leftNode.getKey()) < 0) {
-        target.rightNode = target.leftNode;
-        target.leftNode = insertNode.leftNode;
-
-        target.rightChild = target.middleChild;
-        target.middleChild = insertNode.middleChild;
-        target.leftChild = insertNode.leftChild;
+  private void fixEmptyNode(TreeNode hole, TreeNode onlyChild) {
+    while (true) {
+      TreeNode parentNode = hole.parent;
+      // Special case: the root is empty -> its only child becomes the root
+      if (parentNode == null) {
+        root = onlyChild;
+        if (onlyChild != null) {
+          onlyChild.parent = null;
+        }
+        return;
+      }
+      hole.leftChild = null;
+      hole.middleChild = null;
+      hole.rightChild = null;
+      TreeNode merged;
+      // Case 1: hole is the left child of parent
+      if (hole == parentNode.leftChild) {
+        TreeNode sibling = parentNode.middleChild;
+        if (!sibling.is2Node()) { // Borrow from middle sibling
+          hole.leftNode = parentNode.leftNode;
+          parentNode.leftNode = sibling.leftNode;
+          sibling.leftNode = sibling.rightNode;
+          sibling.rightNode = null;
+          updateNodeLinkages(hole, onlyChild, sibling.leftChild, null);
+          updateNodeLinkages(sibling, sibling.middleChild, sibling.rightChild, null);
+          return;
+        }
+        // Merge into middle sibling
+        sibling.rightNode = sibling.leftNode;
+        sibling.leftNode = parentNode.leftNode;
+        updateNodeLinkages(sibling, onlyChild, sibling.leftChild, sibling.middleChild);
+        if (!parentNode.is2Node()) {
+          parentNode.leftNode = parentNode.rightNode;
+          parentNode.rightNode = null;
+          updateNodeLinkages(parentNode, sibling, parentNode.rightChild, null);
+          return;
+        }
+        merged = sibling;
+      }
+      // Case 2: hole is the middle child of parent
+      else if (hole == parentNode.middleChild) {
+        TreeNode leftSibling = parentNode.leftChild;
+        TreeNode rightSibling = parentNode.rightChild;
+        if (!leftSibling.is2Node()) { // Borrow from left sibling
+          hole.leftNode = parentNode.leftNode;
+          parentNode.leftNode = leftSibling.rightNode;
+          leftSibling.rightNode = null;
+          updateNodeLinkages(hole, leftSibling.rightChild, onlyChild, null);
+          leftSibling.rightChild = null;
+          return;
+        }
+        if (rightSibling != null && !rightSibling.is2Node()) { // Borrow from right sibling
+          hole.leftNode = parentNode.rightNode;
+          parentNode.rightNode = rightSibling.leftNode;
+          rightSibling.leftNode = rightSibling.rightNode;
+          rightSibling.rightNode = null;
+          updateNodeLinkages(hole, onlyChild, rightSibling.leftChild, null);
+          updateNodeLinkages(rightSibling, rightSibling.middleChild, rightSibling.rightChild, null);
+          return;
+        }
+        // Merge into left sibling
+        leftSibling.rightNode = parentNode.leftNode;
+        updateNodeLinkages(leftSibling, leftSibling.leftChild, leftSibling.middleChild, onlyChild);
+        if (!parentNode.is2Node()) {
+          parentNode.leftNode = parentNode.rightNode;
+          parentNode.rightNode = null;
+          updateNodeLinkages(parentNode, leftSibling, rightSibling, null);
+          return;
+        }
+        merged = leftSibling;
+      }
+      // Case 3: hole is the right child of a 3Node parent
+      else {
+        TreeNode sibling = parentNode.middleChild;
+        if (!sibling.is2Node()) { // Borrow from middle sibling
+          hole.leftNode = parentNode.rightNode;
+          parentNode.rightNode = sibling.rightNode;
+          sibling.rightNode = null;
+          updateNodeLinkages(hole, sibling.rightChild, onlyChild, null);
+          sibling.rightChild = null;
+          return;
+        }
+        // Merge into middle sibling; parent drops back to a 2Node
+        sibling.rightNode = parentNode.rightNode;
+        updateNodeLinkages(sibling, sibling.leftChild, sibling.middleChild, onlyChild);
+        parentNode.rightNode = null;
+        parentNode.rightChild = null;
+        return;
       }
-      if (insertNode.leftNode.getKey().compareTo(target.leftNode.getKey()) > 0) {
-        target.rightNode = insertNode.leftNode;
+      // parent was a 2Node and gave its InnerNode to the merge -> parent is now the empty node
+      parentNode.leftNode = null;
+      hole = parentNode;
+      onlyChild = merged;
+    }
+  }
 
-        target.middleChild = insertNode.leftChild;
-        target.rightChild = insertNode.middleChild;
+  /**
+   * Descends a non-empty tree towards key, comparing key at most twice per TreeNode. The outcome
+   * of the comparisons at the last TreeNode is passed back in found so that the insert or remove
+   * that follows does not have to compare again.
+   * 
+   * @param key   - key to search for
+   * @param found - receives in found[0] the index of the matching InnerNode (0 or 1), else
+   *              -(insert position) - 1 in the leaf where key belongs
+   * @return the TreeNode containing key, else the leaf where key would be inserted
+   */
+  private TreeNode findNode(K key, int[] found) {
+    TreeNode curNode = root;
+    while (true) {
+      int slot;
+      int cmp = key.compareTo(curNode.leftNode.getKey());
+      if (cmp == 0) {
+        found[0] = 0;
+        return curNode;
       }
-      insertNode.middleChild.parent = target;
-      insertNode.leftChild.parent = target;
-      return;
+      if (cmp < 0) {
+        slot = 0;
+      } else if (curNode.is2Node()) {
+        slot = 1;
+      } else {
+        cmp = key.compareTo(curNode.rightNode.getKey());
+        if (cmp == 0) {
+          found[0] = 1;
+          return curNode;
+        }
+        slot = cmp < 0 ? 1 : 2;
+      }
+      if (curNode.leftChild == null) { // curNode is a leaf
+        found[0] = -slot - 1;
+        return curNode;
+      }
+      curNode = childAt(curNode, slot);
     }
-    // Inserting into a 3Node -> create another temporary 4Node and continue recursive insert
-    if (!target.is2Node()) {
-      tmp = createTempFourNode(target, insertNode.leftNode);
-      // insertNode is leftmost node
-      if (insertNode.leftNode.getKey().compareTo(target.leftNode.getKey()) < 0) {
-        tmp = updateNodeLinkages(tmp, insertNode.leftChild, insertNode.middleChild,
-            target.middleChild, target.rightChild);
-        insertFourNode(target.parent, tmp);
-        return;
-      } else if (insertNode.leftNode.getKey().compareTo(target.rightNode.getKey()) < 0) {
-        tmp = updateNodeLinkages(tmp, target.leftChild, insertNode.leftChild,
-            insertNode.middleChild, target.rightChild);
-        insertFourNode(target.parent, tmp);
+  }
+
+  /**
+   * @param node  - TreeNode returned by findNode
+   * @param found - slot findNode passed back with node
+   * @return the InnerNode of node that findNode matched, else null
+   */
+  private InnerNode<K, V> matchingEntry(TreeNode node, int found) {
+    if (found == 0) {
+      return node.leftNode;
+    }
+    if (found == 1) {
+      return node.rightNode;
+    }
+    return null;
+  }
+
+  /**
+   * @param node - TreeNode
+   * @param slot - 0 for the left child, 1 for the middle child, 2 for the right child
+   * @return the child of node in the given slot
+   */
+  private TreeNode childAt(TreeNode node, int slot) {
+    if (slot == 0) {
+      return node.leftChild;
+    }
+    return slot == 1 ? node.middleChild : node.rightChild;
+  }
+
+  /**
+   * Inserts an InnerNode into a leaf and splits full TreeNodes back up the tree. A full TreeNode
+   * keeps its smallest InnerNode, moves its largest into a new TreeNode to its right and pushes
+   * the middle one up into its parent. The position of each TreeNode in its parent is found
+   * through the parent pointers, so no keys are compared on the way up.
+   * 
+   * @param node    - leaf TreeNode to insert into
+   * @param slot    - position of newNode among the InnerNodes of the leaf (0 to 2)
+   * @param newNode - InnerNode to insert
+   */
+  private void insertAt(TreeNode node, int slot, InnerNode<K, V> newNode) {
+    size++;
+    InnerNode<K, V> upNode = newNode;
+    TreeNode upChild = null; // new TreeNode to the right of upNode
+    while (true) {
+      // Case 1: 2Node -> room for one more InnerNode
+      if (node.is2Node()) {
+        if (slot == 0) {
+          node.rightNode = node.leftNode;
+          node.leftNode = upNode;
+          updateNodeLinkages(node, node.leftChild, upChild, node.middleChild);
+        } else {
+          node.rightNode = upNode;
+          updateNodeLinkages(node, node.leftChild, node.middleChild, upChild);
+        }
         return;
+      }
+      // Case 2: 3Node -> split
+      InnerNode<K, V> promoted;
+      TreeNode newRight;
+      if (slot == 0) {
+        promoted = node.leftNode;
+        newRight = updateNodeLinkages(new TreeNode(node.rightNode), node.middleChild,
+            node.rightChild, null);
+        node.leftNode = upNode;
+        updateNodeLinkages(node, node.leftChild, upChild, null);
+      } else if (slot == 1) {
+        promoted = upNode;
+        newRight = updateNodeLinkages(new TreeNode(node.rightNode), upChild, node.rightChild, null);
       } else {
-        tmp = updateNodeLinkages(tmp, target.leftChild, target.middleChild, insertNode.leftChild,
-            insertNode.middleChild);
-        insertFourNode(target.parent, tmp);
+        promoted = node.rightNode;
+        newRight = updateNodeLinkages(new TreeNode(upNode), node.rightChild, upChild, null);
+      }
+      node.rightNode = null;
+      node.rightChild = null;
+      TreeNode parentNode = node.parent;
+      // Special case: the root was split -> grow the tree by one level
+      if (parentNode == null) {
+        root = updateNodeLinkages(new TreeNode(promoted), node, newRight, null);
         return;
       }
+      if (parentNode.leftChild == node) {
+        slot = 0;
+      } else {
+        slot = (parentNode.middleChild == node) ? 1 : 2;
+      }
+      upNode = promoted;
+      upChild = newRight;
+      node = parentNode;
     }
   }
 
   /**
    * Updates linkages for a TreeNode
    * 
-   * @param node    - Node whose linkages need to be updated
-   * @param lChild  - TreeNode that should be attached as node's left child
-   * @param m1Child - TreeNode that should be attached as node's middle child
-   * @param m2Child - TreeNode that should be attached as node's temporary middle child
-   * @param rChild  - TreeNode that should be attached as node's right child
+   * @param node   - Node whose linkages need to be updated
+   * @param lChild - TreeNode that should be attached as node's left child
+   * @param mChild - TreeNode that should be attached as node's middle child
+   * @param rChild - TreeNode that should be attached as node's right child
    * @return TreeNode with updated child and parent pointers
    */
-  private TreeNode updateNodeLinkages(TreeNode node, TreeNode lChild, TreeNode m1Child,
-      TreeNode m2Child, TreeNode rChild) {
+  private TreeNode updateNodeLinkages(TreeNode node, TreeNode lChild, TreeNode mChild,
+      TreeNode rChild) {
     // Update node's child node pointers
     node.leftChild = lChild;
-    node.middleChild = m1Child;
-    node.tempMiddleChild = m2Child;
+    node.middleChild = mChild;
     node.rightChild = rChild;
     // Update child nodes' parent pointers
     if (lChild != null) {
-      node.leftChild.parent = node;
-    }
-    if (m1Child != null) {
-      node.middleChild.parent = node;
+      lChild.parent = node;
     }
-    if (m2Child != null) {
-      node.tempMiddleChild.parent = node;
+    if (mChild != null) {
+      mChild.parent = node;
     }
     if (rChild != null) {
-      node.rightChild.parent = node;
+      rChild.parent = node;
     }
     return node;
   }
 
   /**
-   * Creates a temporary four node for use in the recursive insertFourNode method
+   * Searches the tree for a node with the specified key
    * 
-   * @param node         - three node to turn into a four node
-   * @param newInnerNode - new InnerNode to add to the four node
-   * @return - four node
+   * @param key - key to search for
+   * @return - value of the node with specified key, else null
    */
-  private TreeNode createTempFourNode(TreeNode node, InnerNode<K, V> newInnerNode) {    
-    InnerNode<K, V>[] nodeAry = sortInnerNodes(node.leftNode, node.rightNode, newInnerNode);
-    TreeNode temp = new TreeNode(nodeAry[0]);
-    temp.leftChild = node.leftChild;
-    temp.middleChild = node.middleChild;
-    temp.rightChild = node.rightChild;
-    temp.tempMiddleNode = nodeAry[1];
-    temp.rightNode = nodeAry[2];
-    return temp;
+  public V get(K key) {
+    TreeNode curNode = root;
+    while (curNode != null) {
+      int cmp = key.compareTo(curNode.leftNode.getKey());
+      if (cmp == 0) {
+        return curNode.leftNode.getValue();
+      }
+      if (cmp < 0) {
+        curNode = curNode.leftChild;
+      } else if (curNode.is2Node()) {
+        curNode = curNode.middleChild;
+      } else {
+        cmp = key.compareTo(curNode.rightNode.getKey());
+        if (cmp == 0) {
+          return curNode.rightNode.getValue();
+        }
+        curNode = (cmp < 0) ? curNode.middleChild : curNode.rightChild;
+      }
+    }
+    return null;
   }
 
   /**
-   * Splits a four node into two new TreeNodes and links them to a new parent TreeNode
-   * 
-   * @param node
-   * @return parent TreeNode of the split four node
-   */
-  private TreeNode splitFourNode(TreeNode node) {
-    // Create parent from temp middle node
-    TreeNode newParent = new TreeNode(node.tempMiddleNode);
-    // Split off new left and right child nodes
-    TreeNode newLeftNode = new TreeNode(node.leftNode);
-    newLeftNode.parent = newParent;
-    TreeNode newRightNode = new TreeNode(node.rightNode);
-    newRightNode.parent = newParent;
-    newParent.leftChild = newLeftNode;
-    newParent.middleChild = newRightNode;
-    // Copy over linkages
-    if (node.leftChild != null) {
-      newLeftNode.leftChild = node.leftChild;
-      newLeftNode.leftChild.parent = newLeftNode;
-    }
-    if (node.middleChild != null) {
-      newLeftNode.middleChild = node.middleChild;
-      newLeftNode.middleChild.parent = newLeftNode;
-    }
-    if (node.tempMiddleChild != null) {
-      newRightNode.leftChild = node.tempMiddleChild;
-      newRightNode.leftChild.parent = newRightNode;
-    }
-    if (node.rightChild != null) {
-      newRightNode.middleChild = node.rightChild;
-      newRightNode.middleChild.parent = newRightNode;
+   * Traverses the tree in order and adds all objects to an ArrayList 
+   * @return ArrayList containing all objects in the tree
+   */
+  public ArrayList<V> traverse() {
+    ArrayList<V> list = new ArrayList<V>(size);
+    for (V value : this) {
+      list.add(value);
     }
-    return newParent;
+    return list;
   }
 
   /**
-   * Creates a sorted array of three InnerNodes
+   * Returns the values whose keys lie between from and to, in ascending key order. Only the part
+   * of the tree between the two bounds is visited.
    * 
-   * @param n1 - InnerNode<K, V>
-   * @param n2 - InnerNode<K, V>
-   * @param n3 - InnerNode<K, V>
-   * @return array of InnerNode<K, V> objects in ascending order of <K>
+   * @param from          - lower bound, null for no lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound, null for no upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return ArrayList of the values in the range
    */
-  private InnerNode<K, V>[] sortInnerNodes(InnerNode<K, V> n1, InnerNode<K, V> n2,
-      InnerNode<K, V> n3) {
-    @SuppressWarnings("unchecked")
-    InnerNode<K, V>[] nodeAry = (InnerNode<K, V>[]) new InnerNode[] {n1, n2, n3};
-    int i = 0;
-    boolean swap = true;
-    while (swap) {
-      swap = false;
-      i++;
-      for (int n = 0; n < nodeAry.length - i; n++) {
-        if (nodeAry[n].getKey().compareTo(nodeAry[n + 1].getKey()) > 0) {
-          InnerNode<K, V> tmp = nodeAry[n];
-          nodeAry[n] = nodeAry[n + 1];
-          nodeAry[n + 1] = tmp;
-          swap = true;
-        }
-      }
+  public ArrayList<V> range(K from, boolean fromInclusive, K to, boolean toInclusive) {
+    ArrayList<V> list = new ArrayList<V>();
+    Iterator<InnerNode<K, V>> itr = rangeIterator(from, fromInclusive, to, toInclusive);
+    while (itr.hasNext()) {
+      list.add(itr.next().getValue());
     }
-    return nodeAry;
+    return list;
   }
 
   /**
-   * Searches the tree for a node with the specified key
+   * Returns a lazy in-order iterator over the key/value pairs whose keys lie between from and to.
    * 
-   * @param key - key to search for
-   * @return - value of the node with specified key, else null
+   * @param from          - lower bound, null for no lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound, null for no upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return Iterator over the InnerNodes in the range in ascending key order
    */
-  public V get(K key) {
-    // Empty tree
-    if (root == null) {
-      return null;
-    }
-    // Start recursive search
-    InnerNode<K,V> node = getInnerNode(key, root);
-    if (node != null) {
-      return node.getValue();
-    }
-    return null;
+  public Iterator<InnerNode<K, V>> rangeIterator(K from, boolean fromInclusive, K to,
+      boolean toInclusive) {
+    return new TreeIterator(from, fromInclusive, to, toInclusive);
   }
-  
+
   /**
-   * Recursive helper method for get(K key).
+   * Returns the values of every String key that starts with the given prefix, in ascending key
+   * order. Costs one descent to the first match plus one step per match.
    * 
-   * @param key     - key to search for
-   * @param curNode - current node in search stack
-   * @return - InnerNode with the specified key, else null
-   */
-  private InnerNode<K, V> getInnerNode(K key, TreeNode curNode) {
-    InnerNode<K, V> value = null;
-    // Check for match
-    // 2Node or match in leftNode of 3Node
-    if (curNode.leftNode.getKey().compareTo(key) == 0) {
-      return curNode.leftNode;
-    }
-    // 3Node and match in rightNode
-    else if ((!curNode.is2Node()) && curNode.rightNode.getKey().compareTo((key)) == 0) {
-      return curNode.rightNode;
-    }
-    // At a leaf and key not found -> return null
-    else if ((curNode.leftChild == null)) {
-      return value;
-    }
-    // Not at leaf so keep searching
-    // Search left
-    else if (key.compareTo(curNode.leftNode.getKey()) < 0) {
-      value = getInnerNode(key, curNode.leftChild);
-    }
-    // Search middle
-    // If 2Node and greater than leftNode
-    else if ((curNode.is2Node() && key.compareTo(curNode.leftNode.getKey()) > 0)) {
-      value = getInnerNode(key, curNode.middleChild);
-    }
-    // threeNode and less than rightNode
-    else if ((!curNode.is2Node() && (key.compareTo(curNode.rightNode.getKey()) < 0))) {
-      value = getInnerNode(key, curNode.middleChild);
-    }
-    // Search right
-    else if (((!curNode.is2Node())) && ((key.compareTo(curNode.rightNode.getKey()) > 0))) {
-      value = getInnerNode(key, curNode.rightChild);
+   * @param tree   - tree with String keys to search
+   * @param prefix - prefix to search for
+   * @return ArrayList of values whose keys start with prefix
+   */
+  public static <V> ArrayList<V> prefixScan(B2_3Tree<String, V> tree, String prefix) {
+    ArrayList<V> list = new ArrayList<V>();
+    Iterator<InnerNode<String, V>> itr = tree.rangeIterator(prefix, true, null, false);
+    while (itr.hasNext()) {
+      InnerNode<String, V> node = itr.next();
+      if (!node.getKey().startsWith(prefix)) {
+        break;
+      }
+      list.add(node.getValue());
     }
-    return value;
+    return list;
   }
 
   /**
-   * Recursively searches tree for a TreeNode containing the specified key
    * @param key - key to search for
-   * @param curNode - current TreeNode
-   * @return - TreeNode with the given key, else null
-   */
-  private TreeNode getTreeNode(K key, TreeNode curNode) {
-    TreeNode value = null;
-    // Check for match
-    // 2Node or match in leftNode of 3Node
-    if (curNode.leftNode.getKey().compareTo(key) == 0) {
-      return curNode;
-    }
-    // 3Node and match in rightNode
-    else if ((!curNode.is2Node()) && curNode.rightNode.getKey().compareTo((key)) == 0) {
-      return curNode;
-    }
-    // At a leaf and key not found -> return null
-    else if ((curNode.leftChild == null)) {
-      return null;
-    }
-    // Not at leaf so keep searching
-    // Search left
-    else if (key.compareTo(curNode.leftNode.getKey()) < 0) {
-      value = getTreeNode(key, curNode.leftChild);
-    }
-    // Search middle
-    // If 2Node and greater than leftNode
-    else if ((curNode.is2Node() && key.compareTo(curNode.leftNode.getKey()) > 0)) {
-      value = getTreeNode(key, curNode.middleChild);
-    }
-    // threeNode and less than rightNode
-    else if ((!curNode.is2Node() && (key.compareTo(curNode.rightNode.getKey()) < 0))) {
-      value = getTreeNode(key, curNode.middleChild);
-    }
-    // Search right
-    else if (((!curNode.is2Node())) && ((key.compareTo(curNode.rightNode.getKey()) > 0))) {
-      value = getTreeNode(key, curNode.rightChild);
+   * @return the InnerNode with the greatest key less than or equal to key, else null
+   */
+  public InnerNode<K, V> floorEntry(K key) {
+    return lowerOrFloor(key, true);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return the InnerNode with the greatest key strictly less than key, else null
+   */
+  public InnerNode<K, V> lowerEntry(K key) {
+    return lowerOrFloor(key, false);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return the InnerNode with the least key greater than or equal to key, else null
+   */
+  public InnerNode<K, V> ceilingEntry(K key) {
+    return higherOrCeiling(key, true);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return the InnerNode with the least key strictly greater than key, else null
+   */
+  public InnerNode<K, V> higherEntry(K key) {
+    return higherOrCeiling(key, false);
+  }
+
+  /**
+   * Helper method for floorEntry and lowerEntry. Descends the tree once, remembering the closest
+   * InnerNode to the left of key seen so far.
+   * 
+   * @param key       - key to search for
+   * @param inclusive - true if an InnerNode with a key equal to key may be returned
+   * @return closest InnerNode at or below key, else null
+   */
+  private InnerNode<K, V> lowerOrFloor(K key, boolean inclusive) {
+    InnerNode<K, V> best = null;
+    TreeNode node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.leftNode.getKey());
+      if (cmp < 0 || (cmp == 0 && !inclusive)) {
+        node = node.leftChild;
+        continue;
+      }
+      if (cmp == 0) {
+        return node.leftNode;
+      }
+      best = node.leftNode;
+      if (node.is2Node()) {
+        node = node.middleChild;
+        continue;
+      }
+      cmp = key.compareTo(node.rightNode.getKey());
+      if (cmp < 0 || (cmp == 0 && !inclusive)) {
+        node = node.middleChild;
+      } else if (cmp == 0) {
+        return node.rightNode;
+      } else {
+        best = node.rightNode;
+        node = node.rightChild;
+      }
     }
-    return value;
+    return best;
   }
 
   /**
-   * Traverses the tree in order and adds all objects to an ArrayList 
-   * @return ArrayList containing all objects in the tree
+   * Helper method for ceilingEntry and higherEntry. Descends the tree once, remembering the
+   * closest InnerNode to the right of key seen so far.
+   * 
+   * @param key       - key to search for
+   * @param inclusive - true if an InnerNode with a key equal to key may be returned
+   * @return closest InnerNode at or above key, else null
    */
-  public ArrayList<V> traverse() {
-    ArrayList<V> list = new ArrayList<V>();
-    if (root == null) {
-      return list;
+  private InnerNode<K, V> higherOrCeiling(K key, boolean inclusive) {
+    InnerNode<K, V> best = null;
+    TreeNode node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.leftNode.getKey());
+      if (cmp == 0 && inclusive) {
+        return node.leftNode;
+      }
+      if (cmp < 0) {
+        best = node.leftNode;
+        node = node.leftChild;
+        continue;
+      }
+      if (node.is2Node()) {
+        node = node.middleChild;
+        continue;
+      }
+      cmp = key.compareTo(node.rightNode.getKey());
+      if (cmp == 0 && inclusive) {
+        return node.rightNode;
+      }
+      if (cmp < 0) {
+        best = node.rightNode;
+        node = node.middleChild;
+      } else {
+        node = node.rightChild;
+      }
     }
-    list = traverseHelper(list, root);
-    return list;
+    return best;
   }
-  
+
   /**
-   * Recursive helper method for traverse
-   * @param list - ArrayList to add objects to
-   * @param node - Current TreeNode in the recursion stack
-   * @return - ArrayList of objects
-   */
-  private ArrayList<V> traverseHelper(ArrayList<V> list, TreeNode node) {
-    if (node.leftChild == null) {
-      list.add(node.leftNode.getValue());
-      if (node.rightNode != null) {
-        list.add(node.rightNode.getValue());
-      }
-    } // End leaf
-    else if (node.is2Node()) {
-      traverseHelper(list,node.leftChild);
-      list.add(node.leftNode.getValue());
-      traverseHelper(list,node.middleChild);
-    } else if (!node.is2Node()) {
-      traverseHelper(list,node.leftChild);
-      list.add(node.leftNode.getValue());
-      traverseHelper(list,node.middleChild);
-      list.add(node.rightNode.getValue());
-      traverseHelper(list,node.rightChild);
-    }    
-    return list;
+   * Returns a lazy in-order iterator over the values in the tree. Unlike traverse(), no list is
+   * built up front, so callers that stop after a few elements only pay for what they read.
+   * 
+   * @return Iterator over the values of the tree in ascending key order
+   */
+  @Override
+  public Iterator<V> iterator() {
+    return new Iterator<V>() {
+      private final TreeIterator itr = new TreeIterator(root);
+
+      @Override
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      @Override
+      public V next() {
+        return itr.next().getValue();
+      }
+    };
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the keys in the tree.
+   * 
+   * @return Iterator over the keys of the tree in ascending order
+   */
+  public Iterator<K> keyIterator() {
+    return new Iterator<K>() {
+      private final TreeIterator itr = new TreeIterator(root);
+
+      @Override
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      @Override
+      public K next() {
+        return itr.next().getKey();
+      }
+    };
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the key/value pairs in the tree.
+   * 
+   * @return Iterator over the InnerNodes of the tree in ascending key order
+   */
+  public Iterator<InnerNode<K, V>> entryIterator() {
+    return new TreeIterator(root);
   }
 
+  /**
+   * Creates an array of TreeNodes
+   * 
+   * @param length - length of the array
+   * @return new TreeNode array
+   */
+  @SuppressWarnings("unchecked")
+  private TreeNode[] newNodeArray(int length) {
+    return (TreeNode[]) new B2_3Tree<?, ?>.TreeNode[length];
+  }
+
+  /**
+   * In-order iterator over the InnerNodes of the tree. Uses an explicit stack of (TreeNode, index)
+   * frames instead of recursion; index is the position of the next InnerNode to return from that
+   * TreeNode (0 for leftNode, 1 for rightNode).
+   * 
+   * @author fvanorde
+   *
+   */
+  private class TreeIterator implements Iterator<InnerNode<K, V>> {
+    private TreeNode[] nodeStack;
+    private int[] indexStack;
+    private int depth;
+    private K hi;
+    private boolean hiInclusive;
+
+    /**
+     * Constructor for a TreeIterator over every InnerNode below start
+     * 
+     * @param start - TreeNode to start iterating from, null for an empty iterator
+     */
+    private TreeIterator(TreeNode start) {
+      nodeStack = newNodeArray(16);
+      indexStack = new int[16];
+      depth = 0;
+      hi = null;
+      pushLeftPath(start);
+    }
+
+    /**
+     * Constructor for a TreeIterator over the InnerNodes of the tree whose keys lie between lo and
+     * hi. Only the TreeNodes on the path to lo are visited up front.
+     * 
+     * @param lo          - lower bound, null for no lower bound
+     * @param loInclusive - true if a key equal to lo should be returned
+     * @param hi          - upper bound, null for no upper bound
+     * @param hiInclusive - true if a key equal to hi should be returned
+     */
+    private TreeIterator(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+      nodeStack = newNodeArray(16);
+      indexStack = new int[16];
+      depth = 0;
+      this.hi = hi;
+      this.hiInclusive = hiInclusive;
+      if (lo == null) {
+        pushLeftPath(root);
+      } else {
+        seek(lo, loInclusive);
+      }
+    }
+
+    /**
+     * Builds the stack so that the next InnerNode returned is the first one whose key is greater
+     * than (or equal to, if inclusive) lo
+     * 
+     * @param lo        - lower bound
+     * @param inclusive - true if a key equal to lo should be returned
+     */
+    private void seek(K lo, boolean inclusive) {
+      TreeNode node = root;
+      while (node != null) {
+        int cmp = lo.compareTo(node.leftNode.getKey());
+        if (cmp < 0 || (cmp == 0 && inclusive)) {
+          push(node, 0);
+          if (cmp == 0) {
+            return;
+          }
+          node = node.leftChild;
+        } else if (node.is2Node()) {
+          node = node.middleChild;
+        } else {
+          cmp = lo.compareTo(node.rightNode.getKey());
+          if (cmp < 0 || (cmp == 0 && inclusive)) {
+            push(node, 1);
+            if (cmp == 0) {
+              return;
+            }
+            node = node.middleChild;
+          } else {
+            node = node.rightChild;
+          }
+        }
+      }
+    }
 
+    /**
+     * Pushes node and all of its leftmost descendants onto the stack
+     * 
+     * @param node - TreeNode to start from
+     */
+    private void pushLeftPath(TreeNode node) {
+      while (node != null) {
+        push(node, 0);
+        node = node.leftChild;
+      }
+    }
+
+    /**
+     * Pushes a frame onto the stack, growing the stack if needed
+     * 
+     * @param node  - TreeNode of the frame
+     * @param index - index of the next InnerNode to return from node
+     */
+    private void push(TreeNode node, int index) {
+      if (depth == nodeStack.length) {
+        TreeNode[] newNodes = newNodeArray(depth * 2);
+        int[] newIndexes = new int[depth * 2];
+        System.arraycopy(nodeStack, 0, newNodes, 0, depth);
+        System.arraycopy(indexStack, 0, newIndexes, 0, depth);
+        nodeStack = newNodes;
+        indexStack = newIndexes;
+      }
+      nodeStack[depth] = node;
+      indexStack[depth] = index;
+      depth++;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (depth == 0) {
+        return false;
+      }
+      if (hi == null) {
+        return true;
+      }
+      TreeNode node = nodeStack[depth - 1];
+      K key = indexStack[depth - 1] == 0 ? node.leftNode.getKey() : node.rightNode.getKey();
+      int cmp = key.compareTo(hi);
+      return cmp < 0 || (cmp == 0 && hiInclusive);
+    }
+
+    @Override
+    public InnerNode<K, V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      depth--;
+      TreeNode node = nodeStack[depth];
+      int index = indexStack[depth];
+      nodeStack[depth] = null;
+      if (index == 0) {
+        // Come back for the rightNode of a 3Node once the middle subtree is done
+        if (!node.is2Node()) {
+          push(node, 1);
+        }
+        pushLeftPath(node.middleChild);
+        return node.leftNode;
+      }
+      pushLeftPath(node.rightChild);
+      return node.rightNode;
+    }
+  }
 
   /**
    * @param args
@@ -580,6 +1106,54 @@ public class B2_3Tree<K extends Comparable<? super K>, V> {
       while (itr.hasNext()) {
         System.out.println(itr.next()); 
       }
+      System.out.println("\n--------------------------------------------------");
+      System.out.println("Iterator test:");
+      Iterator<Integer> keyItr = tree.keyIterator();
+      for (String value : tree) {
+        System.out.println(keyItr.next() + ": " + value);
+      }
+      System.out.println("\n--------------------------------------------------");
+      System.out.println("Range test:");
+      System.out.println("[10, 15) -> " + tree.range(10, true, 15, false));
+      System.out.println("floor(40) -> " + tree.floorEntry(40).getValue());
+      System.out.println("lower(0) -> " + tree.lowerEntry(0));
+      System.out.println("ceiling(41) -> " + tree.ceilingEntry(41));
+      System.out.println("higher(29) -> " + tree.higherEntry(29).getValue());
+      System.out.println("\n--------------------------------------------------");
+      System.out.println("Put test:");
+      System.out.println("put(40) replaced " + tree.put(40, "Forty"));
+      System.out.println("putIfAbsent(41) -> " + tree.putIfAbsent(41, "Forty One"));
+      System.out.println("compute(41) -> " + tree.compute(41, (k, v) -> v.toUpperCase()));
+      System.out.println("\n--------------------------------------------------");
+      System.out.println("Remove test:");
+      for (int i = 0; i < 40; i += 3) {
+        tree.remove(i);
+      }
+      System.out.println("size " + tree.size() + " -> " + tree.traverse());
+
+      System.out.println("\n--------------------------------------------------");
+      System.out.println("Bulk load test:");
+      int n = 1000000;
+      ArrayList<InnerNode<Integer, String>> entries = new ArrayList<InnerNode<Integer, String>>();
+      java.util.Random rand = new java.util.Random(42);
+      for (int i = 0; i < n; i++) {
+        int key = rand.nextInt();
+        entries.add(new InnerNode<Integer, String>(key, Integer.toString(key)));
+      }
+      long start = System.nanoTime();
+      B2_3Tree<Integer, String> incremental = new B2_3Tree<Integer, String>();
+      for (InnerNode<Integer, String> entry : entries) {
+        incremental.insert(entry.getKey(), entry.getValue());
+      }
+      long incrementalTime = System.nanoTime() - start;
+      start = System.nanoTime();
+      B2_3Tree<Integer, String> bulk = new B2_3Tree<Integer, String>(entries);
+      long bulkTime = System.nanoTime() - start;
+      System.out.println("Incremental insert of " + n + " entries: " + incrementalTime / 1000000
+          + " ms");
+      System.out.println("Bulk load of " + n + " entries: " + bulkTime / 1000000 + " ms");
+      System.out.println("Time saved: " + (incrementalTime - bulkTime) / 1000000 + " ms");
+      System.out.println("Same contents: " + incremental.traverse().equals(bulk.traverse()));
     } catch (IllegalKeyException e) {
       // TODO Auto-generated catch block
       e.printStackTrace();
@@ -0,0 +1,490 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Scanner;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: CSVReader
+// Files: CSVReader.java, CSVRecord.java, EnemyDataParser.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Streaming CSV tokenizer. Reads the input in large byte blocks and copies each record into one
+ * reusable byte buffer, recording where every field starts and ends. Nothing is decoded until a
+ * field is asked for, so the only Strings created are the fields the caller actually uses.
+ *
+ * Fields are separated by commas and records by \n or \r\n. A field may be wrapped in double
+ * quotes to hold commas, line breaks or "" (an escaped quote). Unquoted fields are trimmed of
+ * surrounding whitespace; quoted fields keep everything between the quotes.
+ *
+ * @author fvanorde
+ *
+ */
+public class CSVReader implements CSVRecord, Closeable {
+  private static final int BLOCK_SIZE = 1 << 16;
+
+  private final InputStream in;
+  private final byte[] block;
+  private int pos; // next unread byte of block
+  private int limit; // number of valid bytes in block
+  private boolean eof;
+  private boolean started; // true once the byte order mark check has run
+  private byte[] record; // bytes of the current record, quotes and separators removed
+  private int recordLength;
+  private int[] fieldStarts;
+  private int[] fieldEnds;
+  private int fieldCount;
+
+  /**
+   * Constructor for a CSVReader
+   *
+   * @param in - stream of UTF-8 encoded CSV text
+   */
+  public CSVReader(InputStream in) {
+    this.in = in;
+    block = new byte[BLOCK_SIZE];
+    pos = 0;
+    limit = 0;
+    eof = false;
+    started = false;
+    record = new byte[256];
+    recordLength = 0;
+    fieldStarts = new int[16];
+    fieldEnds = new int[16];
+    fieldCount = 0;
+  }
+
+  /**
+   * Moves to the next record of the input.
+   *
+   * @return true if a record was read, false at the end of the input
+   * @throws IOException
+   */
+  public boolean nextRecord() throws IOException {
+    recordLength = 0;
+    fieldCount = 0;
+    if (!started) {
+      started = true;
+      skipByteOrderMark();
+    }
+    if (pos == limit && !fill()) {
+      return false;
+    }
+    int fieldStart = 0;
+    int quotedEnd = -1; // end of the text inside quotes, -1 if the field is not quoted
+    while (true) {
+      if (pos == limit && !fill()) {
+        endField(fieldStart, quotedEnd);
+        return true;
+      }
+      // Copy the run of plain bytes up to the next special character in one go
+      int runStart = pos;
+      while (pos < limit) {
+        byte b = block[pos];
+        if (b == ',' || b == '\n' || b == '\r' || b == '"') {
+          break;
+        }
+        pos++;
+      }
+      append(block, runStart, pos - runStart);
+      if (pos == limit) {
+        continue;
+      }
+      byte b = block[pos++];
+      if (b == ',') {
+        endField(fieldStart, quotedEnd);
+        fieldStart = recordLength;
+        quotedEnd = -1;
+      } else if (b == '\n') {
+        endField(fieldStart, quotedEnd);
+        return true;
+      } else if (b == '\r') {
+        // Part of a \r\n line ending, or a stray carriage return
+        continue;
+      } else if (quotedEnd == -1 && isBlank(record, fieldStart, recordLength)) {
+        // Opening quote -> drop the whitespace before it and read up to the closing quote
+        recordLength = fieldStart;
+        readQuoted();
+        quotedEnd = recordLength;
+      } else {
+        // A quote in the middle of an unquoted field is kept as text
+        append(block, pos - 1, 1);
+      }
+    }
+  }
+
+  /**
+   * Reads the inside of a quoted field into the record, stopping after the closing quote
+   *
+   * @throws IOException
+   */
+  private void readQuoted() throws IOException {
+    while (true) {
+      if (pos == limit && !fill()) {
+        return; // Unterminated quote -> the field runs to the end of the input
+      }
+      int runStart = pos;
+      while (pos < limit && block[pos] != '"') {
+        pos++;
+      }
+      append(block, runStart, pos - runStart);
+      if (pos == limit) {
+        continue;
+      }
+      pos++;
+      if (pos == limit && !fill()) {
+        return;
+      }
+      if (block[pos] != '"') {
+        return;
+      }
+      // "" inside quotes is an escaped quote
+      append(block, pos, 1);
+      pos++;
+    }
+  }
+
+  /**
+   * Records the bounds of the field that ends at the current end of the record
+   *
+   * @param start     - index of the first byte of the field in the record
+   * @param quotedEnd - end of the quoted text of the field, -1 if the field is not quoted
+   */
+  private void endField(int start, int quotedEnd) {
+    int end = recordLength;
+    if (quotedEnd == -1) {
+      while (start < end && isSpace(record[start])) {
+        start++;
+      }
+      while (end > start && isSpace(record[end - 1])) {
+        end--;
+      }
+    } else {
+      while (end > quotedEnd && isSpace(record[end - 1])) {
+        end--;
+      }
+    }
+    if (fieldCount == fieldStarts.length) {
+      fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+      fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+    }
+    fieldStarts[fieldCount] = start;
+    fieldEnds[fieldCount] = end;
+    fieldCount++;
+  }
+
+  /**
+   * Appends bytes to the record, growing the record buffer if needed
+   *
+   * @param src    - array to copy from
+   * @param offset - index of the first byte to copy
+   * @param length - number of bytes to copy
+   */
+  private void append(byte[] src, int offset, int length) {
+    if (recordLength + length > record.length) {
+      record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + length));
+    }
+    System.arraycopy(src, offset, record, recordLength, length);
+    recordLength += length;
+  }
+
+  /**
+   * Reads the next block of the input
+   *
+   * @return true if at least one byte was read, false at the end of the input
+   * @throws IOException
+   */
+  private boolean fill() throws IOException {
+    if (eof) {
+      return false;
+    }
+    int read = in.read(block, 0, block.length);
+    while (read == 0) {
+      read = in.read(block, 0, block.length);
+    }
+    if (read < 0) {
+      eof = true;
+      pos = 0;
+      limit = 0;
+      return false;
+    }
+    pos = 0;
+    limit = read;
+    return true;
+  }
+
+  /**
+   * Skips the UTF-8 byte order mark that some spreadsheet programs write at the start of a file
+   *
+   * @throws IOException
+   */
+  private void skipByteOrderMark() throws IOException {
+    if (!fill()) {
+      return;
+    }
+    while (limit < 3 && !eof) { // Make sure the first three bytes are in the block
+      int read = in.read(block, limit, block.length - limit);
+      if (read < 0) {
+        eof = true;
+      } else {
+        limit += read;
+      }
+    }
+    if (limit >= 3 && (block[0] & 0xFF) == 0xEF && (block[1] & 0xFF) == 0xBB
+        && (block[2] & 0xFF) == 0xBF) {
+      pos = 3;
+    }
+  }
+
+  /**
+   * Tells whether a byte is whitespace to trim, as String.trim would. Bytes are signed, so the
+   * bytes of non-ASCII UTF-8 characters are negative and must not count as whitespace.
+   *
+   * @param b - byte of UTF-8 text
+   * @return true if the byte is an ASCII space or control character, else false
+   */
+  static boolean isSpace(byte b) {
+    return (b & 0xFF) <= ' ';
+  }
+
+  /**
+   * @param bytes - array to check
+   * @param from  - first index to check
+   * @param to    - index after the last one to check
+   * @return true if every byte in the range is whitespace, else false
+   */
+  private static boolean isBlank(byte[] bytes, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (!isSpace(bytes[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the number of fields in the current record
+   */
+  @Override
+  public int fieldCount() {
+    return fieldCount;
+  }
+
+  /**
+   * Hashes the fields of the current record, as they would be decoded, with 64-bit FNV-1a. Two
+   * records with the same fields get the same fingerprint however they are quoted or padded, and
+   * records that differ in any field almost surely get different ones. Nothing is decoded.
+   *
+   * @return the fingerprint of the current record
+   */
+  public long fingerprint() {
+    long hash = 0xCBF29CE484222325L;
+    for (int i = 0; i < fieldCount; i++) {
+      for (int b = fieldStarts[i]; b < fieldEnds[i]; b++) {
+        hash = (hash ^ (record[b] & 0xFF)) * 0x100000001B3L;
+      }
+      hash = (hash ^ 0x100) * 0x100000001B3L; // End of field, a value no byte can take
+    }
+    return hash;
+  }
+
+  /**
+   * Decodes a field of the current record
+   *
+   * @param index - index of the field, starting at 0
+   * @return the field as a String
+   */
+  @Override
+  public String field(int index) {
+    checkIndex(index);
+    int start = fieldStarts[index];
+    return new String(record, start, fieldEnds[index] - start, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Decodes a field of the current record through a pool
+   *
+   * @param index - index of the field, starting at 0
+   * @param pool  - pool of the strings of the current load
+   * @return the field as a pooled String
+   */
+  @Override
+  public String field(int index, StringPool pool) {
+    checkIndex(index);
+    int start = fieldStarts[index];
+    return pool.intern(record, start, fieldEnds[index] - start);
+  }
+
+  /**
+   * Splits a field of the current record on the given separator and adds each trimmed piece to
+   * out. Follows String.split: empty pieces at the end of the field are dropped, and an empty
+   * field gives a single empty piece.
+   *
+   * @param index     - index of the field, starting at 0
+   * @param separator - ASCII character separating the pieces
+   * @param out       - collection to add the pieces to
+   */
+  @Override
+  public void splitField(int index, char separator, Collection<String> out) {
+    checkIndex(index);
+    splitBytes(record, fieldStarts[index], fieldEnds[index], separator, out, null);
+  }
+
+  /**
+   * Same as splitField, but takes each piece from a pool
+   *
+   * @param index     - index of the field, starting at 0
+   * @param separator - ASCII character separating the pieces
+   * @param out       - collection to add the pieces to
+   * @param pool      - pool of the strings of the current load
+   */
+  @Override
+  public void splitField(int index, char separator, Collection<String> out, StringPool pool) {
+    checkIndex(index);
+    splitBytes(record, fieldStarts[index], fieldEnds[index], separator, out, pool);
+  }
+
+  /**
+   * Splits a range of UTF-8 bytes on the given separator and adds each trimmed piece to out,
+   * following the rules of splitField.
+   *
+   * @param bytes     - array holding the text
+   * @param start     - index of the first byte of the text
+   * @param end       - index after the last byte of the text
+   * @param separator - ASCII character separating the pieces
+   * @param out       - collection to add the pieces to
+   * @param pool      - pool to take the pieces from, or null to decode each one
+   */
+  static void splitBytes(byte[] bytes, int start, int end, char separator,
+      Collection<String> out, StringPool pool) {
+    if (start == end) {
+      out.add("");
+      return;
+    }
+    // Drop the separators (and blank pieces) at the end of the text
+    int last = end;
+    while (last > start && (bytes[last - 1] == separator || isSpace(bytes[last - 1]))) {
+      last--;
+    }
+    int pieceStart = start;
+    while (pieceStart < last) {
+      int pieceEnd = pieceStart;
+      while (pieceEnd < last && bytes[pieceEnd] != separator) {
+        pieceEnd++;
+      }
+      int from = pieceStart;
+      int to = pieceEnd;
+      while (from < to && isSpace(bytes[from])) {
+        from++;
+      }
+      while (to > from && isSpace(bytes[to - 1])) {
+        to--;
+      }
+      out.add((pool == null) ? new String(bytes, from, to - from, StandardCharsets.UTF_8)
+          : pool.intern(bytes, from, to - from));
+      pieceStart = pieceEnd + 1;
+    }
+  }
+
+  /**
+   * @param index - field index to check
+   */
+  private void checkIndex(int index) {
+    if (index < 0 || index >= fieldCount) {
+      throw new IndexOutOfBoundsException("Field " + index + " of " + fieldCount);
+    }
+  }
+
+  /**
+   * Closes the underlying stream
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Compares the throughput of CSVReader against Scanner with String.split on a generated file
+   * built from repeated copies of the enemy CSV.
+   *
+   * @param args - optional path of the CSV to repeat, defaults to EnemiesCSV.csv
+   */
+  public static void main(String[] args) {
+    String source = (args.length > 0) ? args[0] : "EnemiesCSV.csv";
+    try {
+      File big = File.createTempFile("enemies", ".csv");
+      big.deleteOnExit();
+      String text = new String(java.nio.file.Files.readAllBytes(new File(source).toPath()),
+          StandardCharsets.UTF_8);
+      String body = text.substring(text.indexOf('\n') + 1);
+      BufferedWriter writer = new BufferedWriter(new FileWriter(big));
+      writer.write(text.substring(0, text.indexOf('\n') + 1));
+      while (big.length() < 100L * 1024 * 1024) {
+        for (int i = 0; i < 100; i++) {
+          writer.write(body);
+        }
+        writer.flush();
+      }
+      writer.close();
+      double megabytes = big.length() / (1024.0 * 1024.0);
+      System.out.printf("Input: %.1f MB%n", megabytes);
+      for (int round = 0; round < 3; round++) { // First round warms up the JIT
+        long start = System.nanoTime();
+        long fields = 0;
+        Scanner scnr = new Scanner(big);
+        while (scnr.hasNextLine()) {
+          String[] data = scnr.nextLine().split(",");
+          for (int i = 0; i < data.length; i++) {
+            HashSet<String> set = new HashSet<String>();
+            for (String piece : data[i].split(";")) {
+              set.add(piece.trim());
+            }
+            fields += set.size();
+          }
+        }
+        scnr.close();
+        double scannerSeconds = (System.nanoTime() - start) / 1e9;
+        start = System.nanoTime();
+        long readerFields = 0; // Kept so the JIT cannot drop the work
+        CSVReader reader = new CSVReader(new FileInputStream(big));
+        while (reader.nextRecord()) {
+          for (int i = 0; i < reader.fieldCount(); i++) {
+            HashSet<String> set = new HashSet<String>();
+            reader.splitField(i, ';', set);
+            readerFields += set.size();
+          }
+        }
+        reader.close();
+        double readerSeconds = (System.nanoTime() - start) / 1e9;
+        // Tokenizing alone, without decoding any field
+        start = System.nanoTime();
+        reader = new CSVReader(new FileInputStream(big));
+        while (reader.nextRecord()) {
+          readerFields += reader.fieldCount();
+        }
+        reader.close();
+        double tokenizeSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Round %d: Scanner + split %.0f MB/s, CSVReader %.0f MB/s, CSVReader"
+            + " tokenize only %.0f MB/s%n", round, megabytes / scannerSeconds,
+            megabytes / readerSeconds, megabytes / tokenizeSeconds);
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,65 @@
+import java.util.Collection;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: CSVRecord
+// Files: CSVRecord.java, CSVReader.java, MappedCSVReader.java, StringPool.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * The current record of a CSV reader. Lets EnemyDataParser turn records into enemies the same way
+ * whichever reader produced them.
+ *
+ * @author fvanorde
+ *
+ */
+public interface CSVRecord {
+
+  /**
+   * @return the number of fields in the current record
+   */
+  int fieldCount();
+
+  /**
+   * Decodes a field of the current record
+   *
+   * @param index - index of the field, starting at 0
+   * @return the field as a String
+   */
+  String field(int index);
+
+  /**
+   * Decodes a field of the current record through a pool, so that a value seen before comes back
+   * as the same String
+   *
+   * @param index - index of the field, starting at 0
+   * @param pool  - pool of the strings of the current load
+   * @return the field as a pooled String
+   */
+  String field(int index, StringPool pool);
+
+  /**
+   * Splits a field of the current record on the given separator and adds each trimmed piece to
+   * out. Follows String.split: empty pieces at the end of the field are dropped, and an empty
+   * field gives a single empty piece.
+   *
+   * @param index     - index of the field, starting at 0
+   * @param separator - ASCII character separating the pieces
+   * @param out       - collection to add the pieces to
+   */
+  void splitField(int index, char separator, Collection<String> out);
+
+  /**
+   * Same as splitField, but takes each piece from a pool
+   *
+   * @param index     - index of the field, starting at 0
+   * @param separator - ASCII character separating the pieces
+   * @param out       - collection to add the pieces to
+   * @param pool      - pool of the strings of the current load
+   */
+  void splitField(int index, char separator, Collection<String> out, StringPool pool);
+}
@@ -0,0 +1,405 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: ConcurrentB2_3Tree
+// Files: ConcurrentB2_3Tree.java, PersistentB2_3Tree.java, InnerNode.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Thread-safe 2-3 tree for read-mostly use, with the same public API as B2_3Tree. Readers never
+ * lock: every read works on the snapshot that was current when it started, so a lookup or an
+ * iteration always sees one consistent version of the tree. Writers are serialized, build the
+ * next version off to the side and publish it with a single volatile write.
+ *
+ * Versions are PersistentB2_3Trees, so a write only copies the O(log n) nodes on its path and
+ * shares the rest with the version readers may still be using.
+ *
+ * @author fvanorde
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class ConcurrentB2_3Tree<K extends Comparable<? super K>, V> implements Iterable<V> {
+  private volatile PersistentB2_3Tree<K, V> current;
+  private final Object writeLock;
+
+  /**
+   * A group of changes applied to the current version of the tree and published together.
+   *
+   * @param <K>
+   * @param <V>
+   */
+  public interface Batch<K extends Comparable<? super K>, V> {
+    /**
+     * Applies the changes to the given version of the tree
+     *
+     * @param tree - current version of the tree
+     * @return the version to publish
+     * @throws IllegalKeyException
+     */
+    PersistentB2_3Tree<K, V> apply(PersistentB2_3Tree<K, V> tree) throws IllegalKeyException;
+  }
+
+  /**
+   * Constructor for a ConcurrentB2_3Tree
+   */
+  public ConcurrentB2_3Tree() {
+    current = new PersistentB2_3Tree<K, V>();
+    writeLock = new Object();
+  }
+
+  /**
+   * Constructor for a ConcurrentB2_3Tree starting from the given version
+   *
+   * @param tree - initial contents
+   */
+  public ConcurrentB2_3Tree(PersistentB2_3Tree<K, V> tree) {
+    current = tree;
+    writeLock = new Object();
+  }
+
+  /**
+   * Returns the current version of the tree. The snapshot never changes, so it can be read from
+   * any thread for as long as needed.
+   *
+   * @return the current snapshot of the tree
+   */
+  public PersistentB2_3Tree<K, V> snapshot() {
+    return current;
+  }
+
+  /**
+   * Applies a group of changes to the current version of the tree and publishes the result in one
+   * step. Readers see either none or all of the changes. If the batch throws, nothing is
+   * published.
+   *
+   * @param batch - changes to apply
+   * @throws IllegalKeyException
+   */
+  public void update(Batch<K, V> batch) throws IllegalKeyException {
+    synchronized (writeLock) {
+      current = batch.apply(current);
+    }
+  }
+
+  /**
+   * @return true if the tree is empty, else false
+   */
+  public boolean isEmpty() {
+    return current.isEmpty();
+  }
+
+  /**
+   * @return the number of keys stored in the tree
+   */
+  public int size() {
+    return current.size();
+  }
+
+  /**
+   * Removes every key from the tree.
+   */
+  public void clear() {
+    synchronized (writeLock) {
+      current = new PersistentB2_3Tree<K, V>();
+    }
+  }
+
+  /**
+   * Inserts the given key and value into the tree. If the key is already present the tree is left
+   * unchanged.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @throws IllegalKeyException
+   */
+  public void insert(K key, V value) throws IllegalKeyException {
+    putIfAbsent(key, value);
+  }
+
+  /**
+   * Inserts the given key and value into the tree, replacing the value if the key is already
+   * present.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @return the previous value stored under key, else null
+   * @throws IllegalKeyException
+   */
+  public V put(K key, V value) throws IllegalKeyException {
+    if (key == null) { // Null check
+      throw new IllegalKeyException("Cannot store a null value.");
+    }
+    synchronized (writeLock) {
+      V previous = current.get(key);
+      current = current.put(key, value);
+      return previous;
+    }
+  }
+
+  /**
+   * Inserts the given key and value into the tree only if the key is not already present.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @return the value already stored under key, else null
+   * @throws IllegalKeyException
+   */
+  public V putIfAbsent(K key, V value) throws IllegalKeyException {
+    if (key == null) { // Null check
+      throw new IllegalKeyException("Cannot store a null value.");
+    }
+    synchronized (writeLock) {
+      V existing = current.get(key);
+      if (existing == null) {
+        current = current.insert(key, value);
+      }
+      return existing;
+    }
+  }
+
+  /**
+   * Computes a new value for the given key from its current value (null if absent) and stores it.
+   * If the function returns null the key is removed, or not inserted if it was absent. The
+   * function runs while holding the write lock, so it should be short.
+   *
+   * @param key       - Key to identify the node
+   * @param remapping - function from the key and its current value to the new value
+   * @return the new value stored under key
+   * @throws IllegalKeyException
+   */
+  public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping)
+      throws IllegalKeyException {
+    if (key == null) { // Null check
+      throw new IllegalKeyException("Cannot store a null value.");
+    }
+    synchronized (writeLock) {
+      V value = remapping.apply(key, current.get(key));
+      current = (value == null) ? current.remove(key) : current.put(key, value);
+      return value;
+    }
+  }
+
+  /**
+   * Removes the given key from the tree.
+   *
+   * @param key - key to remove
+   * @return the value that was stored under key, else null
+   */
+  public V remove(K key) {
+    if (key == null) {
+      return null;
+    }
+    synchronized (writeLock) {
+      V removed = current.get(key);
+      if (removed != null) {
+        current = current.remove(key);
+      }
+      return removed;
+    }
+  }
+
+  /**
+   * Searches the tree for a node with the specified key. Never blocks.
+   *
+   * @param key - key to search for
+   * @return - value of the node with specified key, else null
+   */
+  public V get(K key) {
+    return current.get(key);
+  }
+
+  /**
+   * Traverses the current snapshot in order and adds all objects to an ArrayList
+   *
+   * @return ArrayList containing all objects in the tree
+   */
+  public ArrayList<V> traverse() {
+    return current.traverse();
+  }
+
+  /**
+   * Returns the values whose keys lie between from and to in the current snapshot, in ascending
+   * key order.
+   *
+   * @param from          - lower bound, null for no lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound, null for no upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return ArrayList of the values in the range
+   */
+  public ArrayList<V> range(K from, boolean fromInclusive, K to, boolean toInclusive) {
+    return current.range(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * Returns a lazy iterator over the key/value pairs between from and to in the current snapshot.
+   *
+   * @param from          - lower bound, null for no lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound, null for no upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return Iterator over copies of the entries in the range in ascending key order
+   */
+  public Iterator<InnerNode<K, V>> rangeIterator(K from, boolean fromInclusive, K to,
+      boolean toInclusive) {
+    return current.rangeIterator(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * Returns the values of every String key in the current snapshot that starts with the given
+   * prefix, in ascending key order.
+   *
+   * @param tree   - tree with String keys to search
+   * @param prefix - prefix to search for
+   * @return ArrayList of values whose keys start with prefix
+   */
+  public static <V> ArrayList<V> prefixScan(ConcurrentB2_3Tree<String, V> tree, String prefix) {
+    return PersistentB2_3Tree.prefixScan(tree.current, prefix);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return a copy of the entry with the greatest key less than or equal to key, else null
+   */
+  public InnerNode<K, V> floorEntry(K key) {
+    return current.floorEntry(key);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return a copy of the entry with the greatest key strictly less than key, else null
+   */
+  public InnerNode<K, V> lowerEntry(K key) {
+    return current.lowerEntry(key);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return a copy of the entry with the least key greater than or equal to key, else null
+   */
+  public InnerNode<K, V> ceilingEntry(K key) {
+    return current.ceilingEntry(key);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return a copy of the entry with the least key strictly greater than key, else null
+   */
+  public InnerNode<K, V> higherEntry(K key) {
+    return current.higherEntry(key);
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the values of the current snapshot. Changes published
+   * after the iterator was created are not seen by it.
+   *
+   * @return Iterator over the values of the tree in ascending key order
+   */
+  @Override
+  public Iterator<V> iterator() {
+    return current.iterator();
+  }
+
+  /**
+   * @return Iterator over the keys of the current snapshot in ascending order
+   */
+  public Iterator<K> keyIterator() {
+    return current.keyIterator();
+  }
+
+  /**
+   * @return Iterator over copies of the entries of the current snapshot in ascending key order
+   */
+  public Iterator<InnerNode<K, V>> entryIterator() {
+    return current.entryIterator();
+  }
+
+  /**
+   * Stress test: reader threads run lookups against the tree while a writer keeps publishing new
+   * versions. Prints reader throughput for growing thread counts.
+   *
+   * @param args
+   */
+  public static void main(String[] args) {
+    int n = 200000;
+    Random rand = new Random(42);
+    ArrayList<InnerNode<Integer, Integer>> entries = new ArrayList<InnerNode<Integer, Integer>>();
+    for (int i = 0; i < n; i++) {
+      entries.add(new InnerNode<Integer, Integer>(i, i));
+    }
+    ConcurrentB2_3Tree<Integer, Integer> tree;
+    try {
+      tree = new ConcurrentB2_3Tree<Integer, Integer>(
+          new PersistentB2_3Tree<Integer, Integer>(entries));
+    } catch (IllegalKeyException e) {
+      e.printStackTrace();
+      return;
+    }
+    int cores = Runtime.getRuntime().availableProcessors();
+    System.out.println("Available cores: " + cores);
+    for (int threads = 1; threads <= Math.max(4, cores); threads *= 2) {
+      AtomicLong lookups = new AtomicLong();
+      AtomicLong errors = new AtomicLong();
+      long deadline = System.nanoTime() + 1000000000L;
+      Thread[] readers = new Thread[threads];
+      for (int t = 0; t < threads; t++) {
+        int seed = rand.nextInt();
+        readers[t] = new Thread(() -> {
+          Random local = new Random(seed);
+          long count = 0;
+          while (System.nanoTime() < deadline) {
+            for (int i = 0; i < 1000; i++) {
+              // Every version keeps keys 0..n-1 mapped to themselves or their negation
+              int key = local.nextInt(n);
+              Integer value = tree.get(key);
+              if (value == null || Math.abs(value) != key) {
+                errors.incrementAndGet();
+              }
+            }
+            count += 1000;
+          }
+          lookups.addAndGet(count);
+        });
+        readers[t].start();
+      }
+      Thread writer = new Thread(() -> {
+        Random local = new Random(7);
+        while (System.nanoTime() < deadline) {
+          try {
+            tree.update(version -> {
+              for (int i = 0; i < 100; i++) {
+                int key = local.nextInt(n);
+                version = version.put(key, -version.get(key));
+              }
+              return version;
+            });
+            Thread.sleep(50);
+          } catch (IllegalKeyException | InterruptedException e) {
+            return;
+          }
+        }
+      });
+      writer.start();
+      try {
+        for (Thread reader : readers) {
+          reader.join();
+        }
+        writer.join();
+      } catch (InterruptedException e) {
+        return;
+      }
+      System.out.println(threads + " reader thread(s): " + lookups.get() / 1000 + "k lookups/s, "
+          + errors.get() + " inconsistent reads");
+    }
+  }
+}
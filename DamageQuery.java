@@ -0,0 +1,312 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: DamageQuery
+// Files: DamageQuery.java, DamageTypes.java, Enemy.java, EnemyDataParser.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Combined condition on the weaknesses, resistances and immunities of an enemy, such as "weak to
+ * Fire and not immune to Bleed". Each part of the condition becomes a bitmask over the
+ * DamageTypes registry of the enemies checked, so checking an enemy takes a few bitwise operations
+ * per 64 damage types. Damage types are matched ignoring case, like getEnemiesWeakTo and the
+ * FacetIndex of EnemyDataParser. The masks are worked out again only when an enemy of another
+ * registry comes along or the registry gains names.
+ *
+ * Condition methods return this query so they can be chained:
+ *    new DamageQuery().weakTo("Fire").notImmuneTo("Bleed")
+ *
+ * @author fvanorde
+ *
+ */
+public class DamageQuery {
+  // Damage type sets of an enemy
+  private static final int WEAKNESSES = 0;
+  private static final int RESISTANCES = 1;
+  private static final int IMMUNITIES = 2;
+
+  private ArrayList<String> weakTo;
+  private ArrayList<String> resistantTo;
+  private ArrayList<String> immuneTo;
+  private ArrayList<String> notWeakTo;
+  private ArrayList<String> notResistantTo;
+  private ArrayList<String> notImmuneTo;
+  private volatile Masks masks; // conditions as bitmasks of the last registry seen
+
+  /**
+   * Constructor for a DamageQuery that every enemy matches
+   */
+  public DamageQuery() {
+    weakTo = new ArrayList<String>();
+    resistantTo = new ArrayList<String>();
+    immuneTo = new ArrayList<String>();
+    notWeakTo = new ArrayList<String>();
+    notResistantTo = new ArrayList<String>();
+    notImmuneTo = new ArrayList<String>();
+    masks = null;
+  }
+
+  /**
+   * @param damageTypes - damage types the enemy must be weak to
+   * @return this query
+   */
+  public DamageQuery weakTo(String... damageTypes) {
+    return add(weakTo, damageTypes);
+  }
+
+  /**
+   * @param damageTypes - damage types the enemy must be resistant to
+   * @return this query
+   */
+  public DamageQuery resistantTo(String... damageTypes) {
+    return add(resistantTo, damageTypes);
+  }
+
+  /**
+   * @param damageTypes - damage types the enemy must be immune to
+   * @return this query
+   */
+  public DamageQuery immuneTo(String... damageTypes) {
+    return add(immuneTo, damageTypes);
+  }
+
+  /**
+   * @param damageTypes - damage types the enemy must not be weak to
+   * @return this query
+   */
+  public DamageQuery notWeakTo(String... damageTypes) {
+    return add(notWeakTo, damageTypes);
+  }
+
+  /**
+   * @param damageTypes - damage types the enemy must not be resistant to
+   * @return this query
+   */
+  public DamageQuery notResistantTo(String... damageTypes) {
+    return add(notResistantTo, damageTypes);
+  }
+
+  /**
+   * @param damageTypes - damage types the enemy must not be immune to
+   * @return this query
+   */
+  public DamageQuery notImmuneTo(String... damageTypes) {
+    return add(notImmuneTo, damageTypes);
+  }
+
+  /**
+   * @param enemy - enemy to check
+   * @return true if the enemy meets every condition of the query, else false
+   */
+  public boolean matches(Enemy enemy) {
+    Masks current = masks;
+    if (current == null || current.damageTypes != enemy.getDamageTypes()
+        || current.count != current.damageTypes.count()) { // New names may now have ids
+      current = new Masks(this, enemy.getDamageTypes());
+      masks = current;
+    }
+    if (current.unsatisfiable) {
+      return false;
+    }
+    for (int word = 0; word < current.words; word++) {
+      long weaknesses = enemy.getWeaknessMask(word);
+      long resistances = enemy.getResistanceMask(word);
+      long immunities = enemy.getImmunityMask(word);
+      if ((weaknesses & current.weakTo[word]) != current.weakTo[word]
+          || (resistances & current.resistantTo[word]) != current.resistantTo[word]
+          || (immunities & current.immuneTo[word]) != current.immuneTo[word]
+          || (weaknesses & current.notWeakTo[word]) != 0
+          || (resistances & current.notResistantTo[word]) != 0
+          || (immunities & current.notImmuneTo[word]) != 0) {
+        return false;
+      }
+    }
+    for (int i = 0; i < current.anyOf.size(); i++) { // Names with several spellings
+      if (!overlaps(enemy, current.anyOfSet.get(i), current.anyOf.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param enemy     - enemy to check
+   * @param set       - WEAKNESSES, RESISTANCES or IMMUNITIES
+   * @param spellings - bitmask of every spelling of one damage type
+   * @return true if that set of the enemy holds any of the spellings, else false
+   */
+  private static boolean overlaps(Enemy enemy, int set, long[] spellings) {
+    for (int word = 0; word < spellings.length; word++) {
+      long mask = (set == WEAKNESSES) ? enemy.getWeaknessMask(word)
+          : (set == RESISTANCES) ? enemy.getResistanceMask(word) : enemy.getImmunityMask(word);
+      if ((mask & spellings[word]) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds damage types to one part of the condition
+   *
+   * @param part        - names of that part of the condition
+   * @param damageTypes - damage types to add
+   * @return this query
+   */
+  private DamageQuery add(ArrayList<String> part, String[] damageTypes) {
+    for (String name : damageTypes) {
+      part.add(name);
+    }
+    masks = null;
+    return this;
+  }
+
+  /**
+   * The conditions of a query as bitmasks over one DamageTypes registry. A damage type stands for
+   * all of its spellings, so the conditions ignore case. A required damage type with one spelling
+   * goes into the mask of its set; one with several spellings, such as Fire and fire, is kept
+   * apart, since the enemy needs only one of them.
+   *
+   * @author fvanorde
+   *
+   */
+  private static class Masks {
+    private final DamageTypes damageTypes;
+    private final int count; // number of names registered when the masks were made
+    private final int words; // longs per mask
+    private final ArrayList<long[]> anyOf; // spellings of required names with several
+    private final ArrayList<Integer> anyOfSet; // set each of those is required in
+    private final long[] weakTo;
+    private final long[] resistantTo;
+    private final long[] immuneTo;
+    private final long[] notWeakTo;
+    private final long[] notResistantTo;
+    private final long[] notImmuneTo;
+    private boolean unsatisfiable; // true if a required damage type is not registered
+
+    /**
+     * @param query       - query to convert
+     * @param damageTypes - registry of the enemies to check
+     */
+    private Masks(DamageQuery query, DamageTypes damageTypes) {
+      this.damageTypes = damageTypes;
+      count = damageTypes.count();
+      words = Math.max(1, (count + 63) >>> 6);
+      anyOf = new ArrayList<long[]>();
+      anyOfSet = new ArrayList<Integer>();
+      unsatisfiable = false;
+      weakTo = required(query.weakTo, WEAKNESSES);
+      resistantTo = required(query.resistantTo, RESISTANCES);
+      immuneTo = required(query.immuneTo, IMMUNITIES);
+      notWeakTo = excluded(query.notWeakTo);
+      notResistantTo = excluded(query.notResistantTo);
+      notImmuneTo = excluded(query.notImmuneTo);
+    }
+
+    /**
+     * @param names - damage types an enemy must have
+     * @param set   - set they must be in
+     * @return bitmask of the damage types with one spelling
+     */
+    private long[] required(ArrayList<String> names, int set) {
+      long[] mask = new long[words];
+      for (String name : names) {
+        long[] spellings = new long[words];
+        int found = addSpellings(name, spellings);
+        if (found == 0) { // No enemy has this damage type
+          unsatisfiable = true;
+        } else if (found == 1) {
+          for (int word = 0; word < words; word++) {
+            mask[word] |= spellings[word];
+          }
+        } else {
+          anyOf.add(spellings);
+          anyOfSet.add(set);
+        }
+      }
+      return mask;
+    }
+
+    /**
+     * @param names - damage types an enemy must not have
+     * @return bitmask of every spelling of the damage types
+     */
+    private long[] excluded(ArrayList<String> names) {
+      long[] mask = new long[words];
+      for (String name : names) {
+        addSpellings(name, mask); // No enemy has an unregistered damage type
+      }
+      return mask;
+    }
+
+    /**
+     * Sets the bits of every spelling of a damage type in a mask
+     *
+     * @param name - damage type name, any case
+     * @param mask - bitmask to add to
+     * @return the number of spellings found
+     */
+    private int addSpellings(String name, long[] mask) {
+      int found = 0;
+      for (int id : damageTypes.lookupIgnoreCase(name)) {
+        if (id < count) { // Later names wait for the masks to be made again
+          mask[id >>> 6] |= 1L << id;
+          found++;
+        }
+      }
+      return found;
+    }
+  }
+
+  /**
+   * Compares a bitmask query against the same query on per-enemy String HashSets.
+   *
+   * @param args - optional path of the CSV, defaults to EnemiesCSV.csv
+   */
+  public static void main(String[] args) {
+    EnemyDataParser parser = new EnemyDataParser();
+    parser.parseCSV(new File((args.length > 0) ? args[0] : "EnemiesCSV.csv"));
+    DamageQuery query = new DamageQuery().weakTo("Fire").notImmuneTo("Bleed");
+    System.out.println("Weak to Fire and not immune to Bleed: " + parser.filter(query).size()
+        + " of " + parser.getTree().size() + " enemies");
+    // The same sets as String HashSets, as Enemy stored them before
+    ArrayList<Enemy> enemies = parser.getTree().traverse();
+    ArrayList<HashSet<String>> weaknessSets = new ArrayList<HashSet<String>>();
+    ArrayList<HashSet<String>> immunitySets = new ArrayList<HashSet<String>>();
+    for (Enemy enemy : enemies) {
+      weaknessSets.add(enemy.getWeaknesses());
+      immunitySets.add(enemy.getImmunities());
+    }
+    int rounds = 100000;
+    for (int round = 0; round < 3; round++) { // First rounds warm up the JIT
+      long start = System.nanoTime();
+      int found = 0;
+      for (int i = 0; i < rounds; i++) {
+        for (Enemy enemy : enemies) {
+          if (query.matches(enemy)) {
+            found++;
+          }
+        }
+      }
+      long maskNanos = (System.nanoTime() - start) / rounds;
+      start = System.nanoTime();
+      for (int i = 0; i < rounds; i++) {
+        for (int e = 0; e < enemies.size(); e++) {
+          if (weaknessSets.get(e).contains("Fire") && !immunitySets.get(e).contains("Bleed")) {
+            found++;
+          }
+        }
+      }
+      long setNanos = (System.nanoTime() - start) / rounds;
+      System.out.println("Round " + round + ": bitmask " + maskNanos + " ns, HashSet " + setNanos
+          + " ns per pass over all enemies (" + found + " hits)");
+    }
+  }
+}
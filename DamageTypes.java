@@ -0,0 +1,161 @@
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: DamageTypes
+// Files: DamageTypes.java, Enemy.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Registry of the damage types (Fire, Frost, Bleed, ...) that appear in enemy weaknesses,
+ * resistances and immunities. Each name seen is given the next id, and a set of damage types is
+ * stored as a bitmask over the ids, one long per 64 ids, so sets can be compared with a few
+ * bitwise operations instead of String hashing. Names are registered exactly as written, as in
+ * the weakness, resistance and immunity lists of EnemyDataParser; lookupIgnoreCase finds every
+ * spelling of a name for queries, which ignore case like the indexes of EnemyDataParser.
+ *
+ * Each EnemyDataParser owns one registry, so masks are only comparable between enemies of the
+ * same registry and the names of a load go away with it. A load that fails rolls the registry back
+ * to the names it had before, and a parser whose enemies no longer use many of the names moves
+ * them to a new registry. Safe to use from several threads, as the parallel CSV loader does.
+ *
+ * @author fvanorde
+ *
+ */
+public final class DamageTypes {
+  private static final int[] NO_IDS = new int[0];
+
+  private final ConcurrentHashMap<String, Integer> ids;
+  private final ConcurrentHashMap<String, int[]> idsIgnoreCase; // upper case -> every spelling
+  private volatile String[] names;
+
+  /**
+   * Constructor for an empty registry
+   */
+  public DamageTypes() {
+    ids = new ConcurrentHashMap<String, Integer>();
+    idsIgnoreCase = new ConcurrentHashMap<String, int[]>();
+    names = new String[0];
+  }
+
+  /**
+   * Returns the id of a damage type, registering the name if it is new. The id is a bit of the
+   * word id / 64 of a mask.
+   *
+   * @param name - damage type name
+   * @return the id of the damage type
+   */
+  public int id(String name) {
+    Integer id = ids.get(name);
+    return (id == null) ? register(name) : id;
+  }
+
+  /**
+   * Returns the id of a damage type without registering it
+   *
+   * @param name - damage type name, exact case
+   * @return the id of the damage type, or -1 if it is not registered
+   */
+  public int lookup(String name) {
+    Integer id = ids.get(name);
+    return (id == null) ? -1 : id;
+  }
+
+  /**
+   * Returns the ids of every registered spelling of a damage type, e.g. both Fire and fire.
+   * Meant for queries: a name no enemy has gives no ids.
+   *
+   * @param name - damage type name, any case
+   * @return the ids of the damage types equal to name ignoring case; do not change the array
+   */
+  public int[] lookupIgnoreCase(String name) {
+    int[] found = idsIgnoreCase.get(name.toUpperCase());
+    return (found == null) ? NO_IDS : found;
+  }
+
+  /**
+   * Adds the names of the damage types in one word of a mask to a set
+   *
+   * @param mask - word of a bitmask of damage types
+   * @param word - index of the word in the mask; bit b stands for id 64 * word + b
+   * @param set  - set to add the names to
+   */
+  public void addNames(long mask, int word, Set<String> set) {
+    String[] current = names;
+    while (mask != 0) {
+      set.add(current[64 * word + Long.numberOfTrailingZeros(mask)]);
+      mask &= mask - 1;
+    }
+  }
+
+  /**
+   * @param id - id of a registered damage type
+   * @return the name of the damage type
+   */
+  public String name(int id) {
+    return names[id];
+  }
+
+  /**
+   * @return the number of registered damage types
+   */
+  public int count() {
+    return names.length;
+  }
+
+  /**
+   * Forgets the names registered after the first count, for a load that failed after registering
+   * them. No mask in use may hold their ids.
+   *
+   * @param count - number of names to keep
+   */
+  public synchronized void rollback(int count) {
+    String[] current = names;
+    for (int id = current.length - 1; id >= count; id--) {
+      String name = current[id];
+      ids.remove(name);
+      String upper = name.toUpperCase();
+      int[] spellings = idsIgnoreCase.get(upper);
+      if (spellings.length == 1) {
+        idsIgnoreCase.remove(upper);
+      } else { // The newest spelling has the highest id, so it is last
+        idsIgnoreCase.put(upper, Arrays.copyOf(spellings, spellings.length - 1));
+      }
+    }
+    if (count < current.length) {
+      names = Arrays.copyOf(current, count);
+    }
+  }
+
+  /**
+   * Gives a new name the next id
+   *
+   * @param name - damage type name
+   * @return the id of the name
+   */
+  private synchronized int register(String name) {
+    Integer id = ids.get(name);
+    if (id != null) { // Registered by another thread in the meantime
+      return id;
+    }
+    String[] current = names;
+    int next = current.length;
+    String[] grown = Arrays.copyOf(current, next + 1);
+    grown[next] = name;
+    String upper = name.toUpperCase();
+    int[] spellings = idsIgnoreCase.get(upper);
+    spellings = (spellings == null) ? new int[1] : Arrays.copyOf(spellings, spellings.length + 1);
+    spellings[spellings.length - 1] = next;
+    // Publish the name before the ids so that any mask handed out can be decoded
+    names = grown;
+    idsIgnoreCase.put(upper, spellings);
+    ids.put(name, next);
+    return next;
+  }
+}
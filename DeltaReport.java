@@ -0,0 +1,159 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: DeltaReport
+// Files: DeltaReport.java, EnemyDataParser.java, EnemyCSVGenerator.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * What EnemyDataParser.applyDelta changed: the enemies inserted, updated and removed, each in the
+ * order they were applied, and the number of enemies left as they were.
+ *
+ * @author fvanorde
+ *
+ */
+public class DeltaReport {
+  private ArrayList<Enemy> inserted;
+  private ArrayList<Enemy> updated; // new versions
+  private ArrayList<Enemy> replaced; // old versions, in the same order as updated
+  private ArrayList<Enemy> removed;
+  private int unchanged;
+
+  /**
+   * Constructor for an empty DeltaReport
+   */
+  public DeltaReport() {
+    inserted = new ArrayList<Enemy>();
+    updated = new ArrayList<Enemy>();
+    replaced = new ArrayList<Enemy>();
+    removed = new ArrayList<Enemy>();
+    unchanged = 0;
+  }
+
+  /**
+   * @param enemy - enemy that was added
+   */
+  void addInserted(Enemy enemy) {
+    inserted.add(enemy);
+  }
+
+  /**
+   * @param oldEnemy - enemy that was replaced
+   * @param newEnemy - enemy that replaced it, with the same key
+   */
+  void addUpdated(Enemy oldEnemy, Enemy newEnemy) {
+    replaced.add(oldEnemy);
+    updated.add(newEnemy);
+  }
+
+  /**
+   * @param enemy - enemy that was removed
+   */
+  void addRemoved(Enemy enemy) {
+    removed.add(enemy);
+  }
+
+  /**
+   * @param count - number of enemies left as they were
+   */
+  void setUnchanged(int count) {
+    unchanged = count;
+  }
+
+  /**
+   * @return the enemies that were added
+   */
+  public ArrayList<Enemy> getInserted() {
+    return inserted;
+  }
+
+  /**
+   * @return the new versions of the enemies that were updated
+   */
+  public ArrayList<Enemy> getUpdated() {
+    return updated;
+  }
+
+  /**
+   * @return the old versions of the enemies that were updated, in the same order as getUpdated
+   */
+  public ArrayList<Enemy> getReplaced() {
+    return replaced;
+  }
+
+  /**
+   * @return the enemies that were removed
+   */
+  public ArrayList<Enemy> getRemoved() {
+    return removed;
+  }
+
+  /**
+   * @return the number of enemies left as they were
+   */
+  public int getUnchanged() {
+    return unchanged;
+  }
+
+  /**
+   * @return true if nothing was inserted, updated or removed, else false
+   */
+  public boolean isEmpty() {
+    return inserted.isEmpty() && updated.isEmpty() && removed.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return inserted.size() + " inserted, " + updated.size() + " updated, " + removed.size()
+        + " removed, " + unchanged + " unchanged";
+  }
+
+  /**
+   * Times applyDelta against parsing again on a generated export from EnemyCSVGenerator, patched by
+   * changing, removing and adding a few rows.
+   *
+   * @param args - optional number of copies of the CSV rows, defaults to 200
+   */
+  public static void main(String[] args) {
+    int copies = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+    try {
+      ArrayList<String> rows = EnemyCSVGenerator.lines(copies);
+      File original = EnemyCSVGenerator.write(rows);
+      ArrayList<String> patchedRows = new ArrayList<String>(rows);
+      for (int i = 1; i <= 5; i++) { // Change the souls of five enemies
+        String row = patchedRows.get(i * 1000);
+        patchedRows.set(i * 1000, row.substring(0, row.lastIndexOf(',') + 1) + "12345");
+      }
+      patchedRows.remove(2500); // Remove three
+      patchedRows.remove(3500);
+      patchedRows.remove(4500);
+      patchedRows.add("Patch Enemy,Patch Area,Boss,Fire,,,1000,2000"); // Add two
+      patchedRows.add("Patch Enemy 2,Patch Area,Boss,Lightning,,,1500,3000");
+      File patched = EnemyCSVGenerator.write(patchedRows);
+      System.out.println((rows.size() - 1) + " rows, 10 of them patched");
+      for (int round = 0; round < 5; round++) { // First rounds warm up the JIT
+        EnemyDataParser parser = new EnemyDataParser();
+        parser.parseCSV(original);
+        long start = System.nanoTime();
+        DeltaReport report = parser.applyDelta(patched);
+        long deltaMicros = (System.nanoTime() - start) / 1000;
+        start = System.nanoTime();
+        EnemyDataParser fresh = new EnemyDataParser();
+        fresh.parseCSV(patched);
+        long parseMicros = (System.nanoTime() - start) / 1000;
+        System.out.println("Round " + round + ": applyDelta " + deltaMicros + " us (" + report
+            + "), parseCSV " + parseMicros + " us, same size: "
+            + (parser.getTree().size() == fresh.getTree().size()));
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
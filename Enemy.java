@@ -1,9 +1,11 @@
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 
 ///////////////////////////////////////////////////////////////////////////////
 //
 // Title: Enemy
-// Files: Enemy.java
+// Files: Enemy.java, DamageTypes.java
 //
 // Author: Finn Van Order
 // Email: finnvanorder@gmail.com
@@ -19,16 +21,27 @@ import java.util.HashSet;
  */
 
 public class Enemy implements Comparable<Object> {
+  /** Value of HP or souls when the number is not known */
+  public static final int UNKNOWN = -1;
+  // Damage type sets, as indexes into the mask words
+  private static final int WEAKNESSES = 0;
+  private static final int RESISTANCES = 1;
+  private static final int IMMUNITIES = 2;
 
   private String key;
   private String name;
   private String area;
   private String type;
-  private HashSet<String> weaknesses;
-  private HashSet<String> resistances;
-  private HashSet<String> immunities;
-  private String HP;
-  private String souls;
+  private DamageTypes damageTypes; // registry of the bitmasks below
+  // Damage type sets as DamageTypes bitmasks; these hold ids 0 to 63
+  private long weaknesses;
+  private long resistances;
+  private long immunities;
+  // Words 1 and up of the three masks, interleaved: word w of set s is at 3 * (w - 1) + s. Null
+  // until an id of 64 or more is set, so the usual enemy needs no array.
+  private long[] moreMasks;
+  private int HP; // UNKNOWN if not known
+  private int souls; // UNKNOWN if not known
   private HashSet<String> drops;
 
 
@@ -41,47 +54,95 @@ public class Enemy implements Comparable<Object> {
    * @param weaknesses  - String HashSet of the sorts of damage this enemy is weak to
    * @param resistances - String HashSet of the sorts of damage this enemy is resistant to
    * @param immunities  - String HashSet of the sorts of damage this enemy is immune to
-   * @param HP          - Number of hit points this enemy has in NG (approx)
-   * @param souls       - Number of souls this enemy will give you in NG (approx)
+   * @param HP          - Number of hit points this enemy has in NG (approx), or UNKNOWN
+   * @param souls       - Number of souls this enemy will give you in NG (approx), or UNKNOWN
    * @param drops       - String HashSet of the items dropped by this enemy
    * @param tips        - ArrayList of types for fighting this enemy
    */
   public Enemy(String name, String area, String type, HashSet<String> weaknesses,
-      HashSet<String> resistances, HashSet<String> immunities, String HP, String souls) {
-    this.key = name.concat(" - " + area).toUpperCase();
+      HashSet<String> resistances, HashSet<String> immunities, int HP, int souls) {
+    this(name, area, type, weaknesses, resistances, immunities, HP, souls, new DamageTypes());
+  }
+
+  /**
+   * Constructor of an enemy object with all fields whose damage types are registered in a shared
+   * registry, as the enemies of one EnemyDataParser are.
+   * 
+   * @param name        - String name of the enemy
+   * @param area        - String area of the enemy
+   * @param type        - type of enemy (e.g. Hollow, Abyssal, Boss, etc)
+   * @param weaknesses  - String HashSet of the sorts of damage this enemy is weak to
+   * @param resistances - String HashSet of the sorts of damage this enemy is resistant to
+   * @param immunities  - String HashSet of the sorts of damage this enemy is immune to
+   * @param HP          - Number of hit points this enemy has in NG (approx), or UNKNOWN
+   * @param souls       - Number of souls this enemy will give you in NG (approx), or UNKNOWN
+   * @param damageTypes - registry to store the weaknesses, resistances and immunities in
+   */
+  public Enemy(String name, String area, String type, HashSet<String> weaknesses,
+      HashSet<String> resistances, HashSet<String> immunities, int HP, int souls,
+      DamageTypes damageTypes) {
+    this.key = composeKey(name, area);
     this.name = name;
     this.area = area;
     this.type = type;
-    this.weaknesses = weaknesses;
-    this.resistances = resistances;
-    this.immunities = immunities;
-    this.HP = HP;
-    this.souls = souls;
+    this.damageTypes = damageTypes;
+    this.moreMasks = null;
+    addDamageTypes(WEAKNESSES, weaknesses);
+    addDamageTypes(RESISTANCES, resistances);
+    addDamageTypes(IMMUNITIES, immunities);
+    this.HP = (HP < 0) ? UNKNOWN : HP;
+    this.souls = (souls < 0) ? UNKNOWN : souls;
     this.drops = null;
   }
 
   /**
    * Constructor of an enemy object with just the two required parameters. All other fields will be
    * set with default values: weaknesses, resistances, immunities; and drops will be initialized
-   * with an empty HashSet; HP and souls will be initialized to -1, and tips will be initialized
-   * with an empty ArrayList.
+   * with an empty HashSet; HP and souls will be initialized to UNKNOWN, and tips will be
+   * initialized with an empty ArrayList.
    * 
    * @param key   - String key of the enemy object (full name + area)
    * @param name- String name of the enemy
    */
   public Enemy(String name, String area) {
-    this.key = name.concat(" - " + area).toUpperCase();
+    this.key = composeKey(name, area);
     this.name = name;
     this.area = area;
     this.type = "Generic Enemy";
-    this.weaknesses = new HashSet<String>();
-    this.resistances = new HashSet<String>();
-    this.immunities = new HashSet<String>();
-    this.HP = "Unknown";
-    this.souls = "Unknown";
+    this.damageTypes = new DamageTypes();
+    this.weaknesses = 0;
+    this.resistances = 0;
+    this.immunities = 0;
+    this.moreMasks = null;
+    this.HP = UNKNOWN;
+    this.souls = UNKNOWN;
     this.drops = new HashSet<String>();
   }
 
+  /**
+   * Builds the key NAME - AREA in one pass. Gives the same result as
+   * name.concat(" - " + area).toUpperCase() without its intermediate strings; names with non-ASCII
+   * characters still go through toUpperCase for its locale and special case rules.
+   * 
+   * @param name - name of the enemy
+   * @param area - area of the enemy
+   * @return the key
+   */
+  private static String composeKey(String name, String area) {
+    StringBuilder key = new StringBuilder(name.length() + 3 + area.length());
+    key.append(name).append(" - ").append(area);
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      if (c >= 0x80) {
+        return name.concat(" - " + area).toUpperCase();
+      }
+      if (c >= 'a' && c <= 'z') {
+        key.setCharAt(i, (char) (c - ('a' - 'A')));
+      }
+    }
+    return key.toString();
+  }
+
   /**
    * Get the key of the enemy
    * 
@@ -152,10 +213,60 @@ public class Enemy implements Comparable<Object> {
    * Get the types of damage this enemy is weak to. An enemy is weak to a sort of damage if their
    * damage modifier for a particular type of damage is greater than 1.
    * 
-   * @return the weaknesses
+   * @return a new HashSet of the weaknesses; changing it does not change the enemy
    */
   public HashSet<String> getWeaknesses() {
-    return weaknesses;
+    return damageTypeNames(WEAKNESSES);
+  }
+
+  /**
+   * @return the registry of the damage type bitmasks of this enemy
+   */
+  public DamageTypes getDamageTypes() {
+    return damageTypes;
+  }
+
+  /**
+   * Moves the weaknesses, resistances and immunities of this enemy to another registry,
+   * registering any names it lacks there
+   *
+   * @param damageTypes - new registry
+   */
+  public void setDamageTypes(DamageTypes damageTypes) {
+    HashSet<String> weaknesses = getWeaknesses();
+    HashSet<String> resistances = getResistances();
+    HashSet<String> immunities = getImmunities();
+    this.damageTypes = damageTypes;
+    this.weaknesses = 0;
+    this.resistances = 0;
+    this.immunities = 0;
+    this.moreMasks = null;
+    addDamageTypes(WEAKNESSES, weaknesses);
+    addDamageTypes(RESISTANCES, resistances);
+    addDamageTypes(IMMUNITIES, immunities);
+  }
+
+  /**
+   * @return the number of longs in each damage type bitmask of this enemy; later words are 0
+   */
+  public int getMaskWords() {
+    return (moreMasks == null) ? 1 : 1 + moreMasks.length / 3;
+  }
+
+  /**
+   * @param word - index of the word; bit b stands for DamageTypes id 64 * word + b
+   * @return one word of the weaknesses as a DamageTypes bitmask
+   */
+  public long getWeaknessMask(int word) {
+    return mask(WEAKNESSES, word);
+  }
+
+  /**
+   * @param damageType - damage type name, any case
+   * @return true if this enemy is weak to the damage type, else false
+   */
+  public boolean isWeakTo(String damageType) {
+    return hasDamageType(WEAKNESSES, damageType);
   }
 
   /**
@@ -168,17 +279,33 @@ public class Enemy implements Comparable<Object> {
     if (weaknesses == null) {
       return;
     }
-    this.weaknesses.addAll(weaknesses);
+    addDamageTypes(WEAKNESSES, weaknesses);
   }
 
   /**
    * Get the types of damage that this enemy is resistant to. An enemy is resistant to a sort of
    * damage if their damage modifier for a particular type of damage is less than 0.5.
    * 
-   * @return the resistances
+   * @return a new HashSet of the resistances; changing it does not change the enemy
    */
   public HashSet<String> getResistances() {
-    return resistances;
+    return damageTypeNames(RESISTANCES);
+  }
+
+  /**
+   * @param word - index of the word; bit b stands for DamageTypes id 64 * word + b
+   * @return one word of the resistances as a DamageTypes bitmask
+   */
+  public long getResistanceMask(int word) {
+    return mask(RESISTANCES, word);
+  }
+
+  /**
+   * @param damageType - damage type name, any case
+   * @return true if this enemy is resistant to the damage type, else false
+   */
+  public boolean isResistantTo(String damageType) {
+    return hasDamageType(RESISTANCES, damageType);
   }
 
   /**
@@ -191,17 +318,33 @@ public class Enemy implements Comparable<Object> {
     if (resistances == null) {
       return;
     }
-    this.resistances.addAll(resistances);
+    addDamageTypes(RESISTANCES, resistances);
   }
 
   /**
    * Get the types of damage that this enemy is immune to. An enemy is immune to a sort of damage if
    * their damage modifier for a particular type of damage is 0.0.
    * 
-   * @return the immunities
+   * @return a new HashSet of the immunities; changing it does not change the enemy
    */
   public HashSet<String> getImmunities() {
-    return immunities;
+    return damageTypeNames(IMMUNITIES);
+  }
+
+  /**
+   * @param word - index of the word; bit b stands for DamageTypes id 64 * word + b
+   * @return one word of the immunities as a DamageTypes bitmask
+   */
+  public long getImmunityMask(int word) {
+    return mask(IMMUNITIES, word);
+  }
+
+  /**
+   * @param damageType - damage type name, any case
+   * @return true if this enemy is immune to the damage type, else false
+   */
+  public boolean isImmuneTo(String damageType) {
+    return hasDamageType(IMMUNITIES, damageType);
   }
 
   /**
@@ -214,49 +357,134 @@ public class Enemy implements Comparable<Object> {
     if (immunities == null) {
       return;
     }
-    this.immunities.addAll(immunities);
+    addDamageTypes(IMMUNITIES, immunities);
+  }
+
+  /**
+   * @param set  - WEAKNESSES, RESISTANCES or IMMUNITIES
+   * @param word - index of the word
+   * @return that word of the bitmask of the set
+   */
+  private long mask(int set, int word) {
+    if (word == 0) {
+      return (set == WEAKNESSES) ? weaknesses : (set == RESISTANCES) ? resistances : immunities;
+    }
+    int index = 3 * (word - 1) + set;
+    return (moreMasks == null || index >= moreMasks.length) ? 0 : moreMasks[index];
+  }
+
+  /**
+   * Registers damage types and adds them to one of the sets of this enemy
+   *
+   * @param set   - WEAKNESSES, RESISTANCES or IMMUNITIES
+   * @param names - damage type names
+   */
+  private void addDamageTypes(int set, Collection<String> names) {
+    for (String name : names) {
+      int id = damageTypes.id(name);
+      long bit = 1L << id; // Shifts are taken mod 64
+      int word = id >>> 6;
+      if (word == 0) {
+        if (set == WEAKNESSES) {
+          weaknesses |= bit;
+        } else if (set == RESISTANCES) {
+          resistances |= bit;
+        } else {
+          immunities |= bit;
+        }
+      } else {
+        if (moreMasks == null || moreMasks.length < 3 * word) {
+          moreMasks = (moreMasks == null) ? new long[3 * word]
+              : Arrays.copyOf(moreMasks, 3 * word);
+        }
+        moreMasks[3 * (word - 1) + set] |= bit;
+      }
+    }
+  }
+
+  /**
+   * @param set - WEAKNESSES, RESISTANCES or IMMUNITIES
+   * @return a new HashSet of the names in the set
+   */
+  private HashSet<String> damageTypeNames(int set) {
+    HashSet<String> names = new HashSet<String>();
+    for (int word = 0; word < getMaskWords(); word++) {
+      damageTypes.addNames(mask(set, word), word, names);
+    }
+    return names;
+  }
+
+  /**
+   * @param set        - WEAKNESSES, RESISTANCES or IMMUNITIES
+   * @param damageType - damage type name, any case
+   * @return true if the set holds any spelling of the damage type, else false
+   */
+  private boolean hasDamageType(int set, String damageType) {
+    for (int id : damageTypes.lookupIgnoreCase(damageType)) {
+      if ((mask(set, id >>> 6) & (1L << id)) != 0) {
+        return true;
+      }
+    }
+    return false;
   }
 
   /**
    * Returns the approximate number of hit points this enemy has in new game (NG).
    * 
-   * @return the number of hit points that this enemy has
+   * @return the number of hit points that this enemy has, or UNKNOWN
    */
-  public String getHP() {
+  public int getHP() {
     return HP;
   }
 
   /**
    * Sets the approximate number of hit points this enemy has in new game (NG).
    * 
-   * @param HP - the number of hit points that this enemy has
+   * @param HP - the number of hit points that this enemy has; negative means UNKNOWN
    */
-  public void setHP(String HP) {
-    if (HP == null) {
-      return;
-    }
-    this.HP = HP;
+  public void setHP(int HP) {
+    this.HP = (HP < 0) ? UNKNOWN : HP;
   }
 
   /**
    * Returns the approximate number of souls this enemy will give the PC in new game (NG).
    * 
-   * @return the number of souls the PC gets for defeating this enemy in NG
+   * @return the number of souls the PC gets for defeating this enemy in NG, or UNKNOWN
    */
-  public String getSouls() {
+  public int getSouls() {
     return souls;
   }
 
   /**
    * Sets the approximate number of souls this enemy will give the PC in new game (NG).
    * 
-   * @param souls - the number of souls this enemy will give in NG
+   * @param souls - the number of souls this enemy will give in NG; negative means UNKNOWN
    */
-  public void setSouls(String souls) {
-    if (souls == null) {
-      return;
+  public void setSouls(int souls) {
+    this.souls = (souls < 0) ? UNKNOWN : souls;
+  }
+
+  /**
+   * Parses an HP or souls value as written in the enemy CSV. The CSV writes -1 for values that
+   * are not known; anything that is not a whole number, such as "Unknown", is also taken as not
+   * known.
+   * 
+   * @param value - text of the value
+   * @return the number, or UNKNOWN
+   */
+  public static int parseStat(String value) {
+    if (value == null || value.isEmpty() || value.length() > 9) { // 9 digits cannot overflow
+      return UNKNOWN;
+    }
+    int number = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return UNKNOWN;
+      }
+      number = number * 10 + (c - '0');
     }
-    this.souls = souls;
+    return number;
   }
 
   /**
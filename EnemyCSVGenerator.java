@@ -0,0 +1,147 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: EnemyCSVGenerator
+// Files: EnemyCSVGenerator.java, EnemyDataParser.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Generates large enemy exports for benchmarks and checks: the rows of EnemiesCSV.csv repeated,
+ * with the copy number added to the names of every copy after the first so that each row has its
+ * own key.
+ *
+ * @author fvanorde
+ *
+ */
+public class EnemyCSVGenerator {
+  /** CSV file the rows are copied from */
+  public static final File SOURCE = new File("EnemiesCSV.csv");
+
+  /**
+   * Not instantiable
+   */
+  private EnemyCSVGenerator() {
+  }
+
+  /**
+   * @param copies - number of copies of the rows of SOURCE
+   * @return the lines of the generated CSV, header first
+   * @throws IOException if SOURCE cannot be read
+   */
+  public static ArrayList<String> lines(int copies) throws IOException {
+    List<String> source = Files.readAllLines(SOURCE.toPath());
+    ArrayList<String> lines = new ArrayList<String>(1 + copies * (source.size() - 1));
+    lines.add(source.get(0));
+    for (int copy = 0; copy < copies; copy++) {
+      for (int i = 1; i < source.size(); i++) {
+        String line = source.get(i);
+        int comma = line.indexOf(',');
+        lines.add((copy == 0) ? line : line.substring(0, comma) + " " + copy
+            + line.substring(comma));
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * @param bytes - size the generated CSV should reach
+   * @return the number of copies of the rows of SOURCE that make a CSV of at least that size
+   */
+  public static int copiesFor(long bytes) {
+    return (int) Math.max(1, (bytes + SOURCE.length() - 1) / SOURCE.length());
+  }
+
+  /**
+   * @param lines - lines of a CSV file
+   * @return a temporary file holding the lines, deleted on exit
+   * @throws IOException
+   */
+  public static File write(List<String> lines) throws IOException {
+    File file = File.createTempFile("enemies", ".csv");
+    file.deleteOnExit();
+    Files.write(file.toPath(), lines);
+    return file;
+  }
+
+  /**
+   * Writes lines to a temporary file next to the target and moves it into place, so a reader of
+   * the target never sees it half written
+   *
+   * @param lines  - lines of a CSV file
+   * @param target - file to replace
+   * @throws IOException
+   */
+  public static void replace(List<String> lines, File target) throws IOException {
+    File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+    Files.write(temp.toPath(), lines);
+    temp.deleteOnExit();
+    target.deleteOnExit();
+    Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Compares the streaming, memory-mapped and parallel loaders of EnemyDataParser on a generated
+   * export.
+   *
+   * @param args - optional size of the export in MB, defaults to 32
+   */
+  public static void main(String[] args) {
+    long targetBytes = ((args.length > 0) ? Long.parseLong(args[0]) : 32) * 1024 * 1024;
+    File big;
+    try {
+      big = write(lines(copiesFor(targetBytes)));
+    } catch (IOException e) {
+      e.printStackTrace();
+      return;
+    }
+    System.out.println("Input: " + big.length() / (1024 * 1024) + " MB, "
+        + Runtime.getRuntime().availableProcessors() + " cores");
+    for (int round = 0; round < 2; round++) { // First round warms up the JIT
+      for (int mode = 0; mode < 3; mode++) {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+          pool.resetPeakUsage();
+        }
+        long start = System.nanoTime();
+        EnemyDataParser parser = new EnemyDataParser();
+        try {
+          if (mode == 0) {
+            parser.loadCSV(big);
+          } else if (mode == 1) {
+            parser.parseCSVMapped(big);
+          } else {
+            parser.parseCSVParallel(big);
+          }
+        } catch (IOException e) {
+          e.printStackTrace();
+          return;
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+          if (pool.getType() == MemoryType.HEAP) {
+            peak += pool.getPeakUsage().getUsed();
+          }
+        }
+        String[] names = {"parseCSV        ", "parseCSVMapped  ", "parseCSVParallel"};
+        String name = names[mode];
+        System.out.println("Round " + round + ": " + name + " " + parser.getTree().size()
+            + " enemies in " + millis + " ms, peak heap " + peak / (1024 * 1024) + " MB");
+      }
+    }
+  }
+}
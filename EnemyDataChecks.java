@@ -0,0 +1,491 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: EnemyDataChecks
+// Files: EnemyDataChecks.java, CSVReader.java, MappedCSVReader.java, EnemyDataParser.java,
+//        DamageTypes.java, EnemyDataReloader.java, EnemyCSVGenerator.java, DeltaReport.java,
+//        FacetIndex.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Behavior checks for the CSV readers and loaders. Run main(); each check throws an
+ * IllegalStateException naming what went wrong, and the run ends with "All checks passed" when
+ * none did.
+ *
+ * @author fvanorde
+ *
+ */
+public class EnemyDataChecks {
+  // Names with non-ASCII characters at their edges, written as escapes to keep the source ASCII
+  private static final String CAFE = "Old Caf\u00e9";
+  private static final String NANDU = "\u00d1and\u00fa";
+  private static final String AREA = "\u00c1rea \u00d1";
+  private static final String TYPE = "Boss\u00e9";
+  private static final String GELE = "Gel\u00e9";
+  private static final String ECLAIR = "\u00c9clair";
+  private static final String E = "\u00e9";
+  private static final String NON_ASCII_CSV = "Enemy,Area,Type,Weaknesses,Resistances,"
+      + "Immunities,HP,Souls\n"
+      + CAFE + "," + AREA + "," + TYPE + ",Fire;" + GELE + "," + ECLAIR + " ; \u00d1,,100,200\n"
+      + "  " + NANDU + "  ," + AREA + "," + TYPE + ",\"Fire, Frost\",, " + E + " ,300,400\n";
+  // A quote after non-ASCII text is literal text, so the commas after it still split fields
+  private static final String QUOTE_CSV = "\u00d1\"a,b\"\u00e9,\u00e9 \"c\" , \"d\" \u00e9\n";
+
+  /**
+   * Runs every check
+   *
+   * @param args - unused
+   */
+  public static void main(String[] args) {
+    try {
+      checkNonAsciiFields();
+      checkLoadModes();
+      checkApplyDelta();
+      checkDamageTypes();
+      checkDamageTypeChurn();
+      checkRejectedReloads();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    System.out.println("All checks passed");
+  }
+
+  /**
+   * Checks that non-ASCII characters at the edges of fields survive both readers and every loader
+   *
+   * @throws IOException
+   */
+  private static void checkNonAsciiFields() throws IOException {
+    File csv = writeTemp(NON_ASCII_CSV);
+    CSVReader reader = new CSVReader(new FileInputStream(csv));
+    reader.nextRecord(); // Header row
+    reader.nextRecord();
+    check(Arrays.asList(CAFE, AREA, TYPE, "Fire;" + GELE, ECLAIR + " ; \u00d1", "", "100", "200")
+        .equals(fields(reader)), "CSVReader trims non-ASCII text: " + fields(reader));
+    HashSet<String> pieces = new HashSet<String>();
+    reader.splitField(4, ';', pieces);
+    check(pieces.equals(new HashSet<String>(Arrays.asList(ECLAIR, "\u00d1"))),
+        "CSVReader.splitField trims non-ASCII text: " + pieces);
+    reader.nextRecord();
+    check(Arrays.asList(NANDU, AREA, TYPE, "Fire, Frost", "", E, "300", "400")
+        .equals(fields(reader)), "CSVReader trims non-ASCII text: " + fields(reader));
+    reader.close();
+    EnemyDataParser parser = new EnemyDataParser();
+    parser.parseCSV(csv);
+    checkNonAsciiEnemies(parser, "parseCSV");
+    MappedCSVReader mapped = new MappedCSVReader(csv);
+    reader = new CSVReader(new FileInputStream(csv));
+    while (reader.nextRecord()) {
+      check(mapped.nextRecord() && fields(reader).equals(fields(mapped)),
+          "MappedCSVReader disagrees with CSVReader: " + fields(mapped));
+    }
+    reader.close();
+    mapped.close();
+    parser = new EnemyDataParser();
+    parser.parseCSVMapped(csv);
+    checkNonAsciiEnemies(parser, "parseCSVMapped");
+    parser = new EnemyDataParser();
+    parser.parseCSVParallel(csv);
+    checkNonAsciiEnemies(parser, "parseCSVParallel");
+    csv = writeTemp(QUOTE_CSV);
+    List<String> expected = Arrays.asList("\u00d1\"a", "b\"\u00e9", "\u00e9 \"c\"", "d \u00e9");
+    reader = new CSVReader(new FileInputStream(csv));
+    check(reader.nextRecord() && fields(reader).equals(expected),
+        "CSVReader read a quote after non-ASCII text as an opening quote: " + fields(reader));
+    reader.close();
+    mapped = new MappedCSVReader(csv);
+    check(mapped.nextRecord() && fields(mapped).equals(expected),
+        "MappedCSVReader read a quote after non-ASCII text as an opening quote: "
+            + fields(mapped));
+    mapped.close();
+  }
+
+  /**
+   * Checks that parseCSV, parseCSVMapped, parseCSVParallel and a snapshot round trip all load a
+   * generated export of several parallel chunks into the same enemies and lists, and that the
+   * mapped and parallel loaders fail on a file they cannot read without changing anything
+   *
+   * @throws IOException
+   */
+  private static void checkLoadModes() throws IOException {
+    File csv = EnemyCSVGenerator.write(EnemyCSVGenerator.lines(EnemyCSVGenerator.copiesFor(
+        3 * 1024 * 1024)));
+    EnemyDataParser streamed = new EnemyDataParser();
+    streamed.parseCSV(csv);
+    String expected = dump(streamed);
+    EnemyDataParser mapped = new EnemyDataParser();
+    mapped.parseCSVMapped(csv);
+    check(dump(mapped).equals(expected), "parseCSVMapped and parseCSV disagree");
+    EnemyDataParser parallel = new EnemyDataParser();
+    parallel.parseCSVParallel(csv);
+    check(dump(parallel).equals(expected), "parseCSVParallel and parseCSV disagree");
+    File missing = new File(csv.getPath() + ".missing");
+    for (EnemyDataParser parser : Arrays.asList(mapped, parallel)) {
+      String loader = (parser == mapped) ? "parseCSVMapped" : "parseCSVParallel";
+      boolean failed = false;
+      try {
+        if (parser == mapped) {
+          parser.parseCSVMapped(missing);
+        } else {
+          parser.parseCSVParallel(missing);
+        }
+      } catch (IOException e) {
+        failed = true;
+      }
+      check(failed && dump(parser).equals(expected),
+          loader + " of a missing file did not fail or changed the enemies");
+    }
+    File snapshot = File.createTempFile("checks", ".snapshot");
+    snapshot.deleteOnExit();
+    streamed.writeSnapshot(snapshot);
+    EnemyDataParser loaded = new EnemyDataParser();
+    loaded.loadSnapshot(snapshot);
+    check(dump(loaded).equals(expected), "loadSnapshot and parseCSV disagree");
+  }
+
+  /**
+   * Checks that applyDelta leaves the enemies, lists and indexes exactly as parsing the new file
+   * from scratch would, both with the row fingerprints of parseCSV and without them, including a
+   * row whose area and weakness change only in case. Only the order of the area list may differ,
+   * since applyDelta keeps the areas it has where they are.
+   *
+   * @throws IOException
+   */
+  private static void checkApplyDelta() throws IOException {
+    ArrayList<String> rows = EnemyCSVGenerator.lines(3);
+    rows.add("Case Enemy,Case Area,Boss,Case Damage,,,100,200");
+    File original = EnemyCSVGenerator.write(rows);
+    ArrayList<String> patchedRows = new ArrayList<String>(rows);
+    patchedRows.set(rows.size() - 1, "Case Enemy,CASE AREA,Boss,case damage,,,100,200");
+    String changed = patchedRows.get(10); // New HP
+    String[] fields = changed.split(",", -1);
+    fields[6] = "12345";
+    patchedRows.set(10, String.join(",", fields));
+    patchedRows.add(1, patchedRows.remove(300)); // Moved to the top
+    patchedRows.remove(20);
+    patchedRows.remove(400);
+    patchedRows.add(patchedRows.get(30).replace(",", " , ")); // Later row of the same key
+    patchedRows.add("Patch Enemy,Patch Area,Boss,Patch Damage;Fire,,,1000,2000");
+    File patched = EnemyCSVGenerator.write(patchedRows);
+    EnemyDataParser fresh = new EnemyDataParser();
+    fresh.parseCSV(patched);
+    String expected = deltaDump(fresh);
+    for (String loader : Arrays.asList("parseCSV", "parseCSVMapped")) {
+      EnemyDataParser parser = new EnemyDataParser();
+      if (loader.equals("parseCSV")) {
+        parser.parseCSV(original);
+      } else {
+        parser.parseCSVMapped(original);
+      }
+      DeltaReport report = parser.applyDelta(patched);
+      check(report.getInserted().size() == 1 && report.getUpdated().size() == 2
+          && report.getRemoved().size() == 2, "applyDelta after " + loader + " reported "
+              + report);
+      check(deltaDump(parser).equals(expected),
+          "applyDelta after " + loader + " and a fresh parseCSV disagree");
+      check(parser.getFacetIndex().isKeyOrdered(), "applyDelta after " + loader
+          + " left the facet index ids out of key order");
+      report = parser.applyDelta(patched);
+      check(report.isEmpty(), "applyDelta of the same file again after " + loader
+          + " reported " + report);
+      parser.applyDelta(original);
+      EnemyDataParser back = new EnemyDataParser();
+      back.parseCSV(original);
+      check(deltaDump(parser).equals(deltaDump(back)),
+          "applyDelta back to the original after " + loader + " and a fresh parseCSV disagree");
+    }
+  }
+
+  /**
+   * Checks that each parser has its own damage type registry, that more than 64 damage types load
+   * and match in every loader, and that the damage type lists keep each spelling while queries
+   * ignore case like the indexes
+   *
+   * @throws IOException
+   */
+  private static void checkDamageTypes() throws IOException {
+    String header = "Enemy,Area,Type,Weaknesses,Resistances,Immunities,HP,Souls\n";
+    StringBuilder first = new StringBuilder(header);
+    StringBuilder second = new StringBuilder(header);
+    StringBuilder many = new StringBuilder(header);
+    for (int i = 0; i < 70; i++) {
+      if (i < 40) {
+        first.append("A" + i + ",Area,Boss,Type A" + i + ",,,100,200\n");
+        second.append("B" + i + ",Area,Boss,Type B" + i + ",,,100,200\n");
+      }
+      many.append("C" + i + ",Area,Boss,Type C" + i + ";Shared,,,100,200\n");
+    }
+    EnemyDataParser parser = new EnemyDataParser();
+    parser.parseCSV(writeTemp(first.toString()));
+    EnemyDataParser other = new EnemyDataParser();
+    other.parseCSV(writeTemp(second.toString()));
+    check(parser.getTree().size() == 40 && other.getTree().size() == 40,
+        "Two parsers with 80 damage types between them dropped rows");
+    File csv = writeTemp(many.toString());
+    for (String loader : Arrays.asList("parseCSV", "parseCSVMapped", "parseCSVParallel")) {
+      parser = new EnemyDataParser();
+      if (loader.equals("parseCSV")) {
+        parser.parseCSV(csv);
+      } else if (loader.equals("parseCSVMapped")) {
+        parser.parseCSVMapped(csv);
+      } else {
+        parser.parseCSVParallel(csv);
+      }
+      check(parser.getTree().size() == 70 && parser.getWeaknessList().size() == 71,
+          loader + " loaded " + parser.getTree().size() + " enemies with 71 damage types");
+      Enemy last = parser.nameSearch("C69");
+      check(last.getWeaknesses().equals(new HashSet<String>(Arrays.asList("Type C69", "Shared")))
+          && last.isWeakTo("TYPE C69") && !last.isWeakTo("Type C68")
+          && parser.filter(new DamageQuery().weakTo("type c69")).equals(Arrays.asList(last))
+          && parser.filter(new DamageQuery().weakTo("Shared").notWeakTo("Type C68")).size() == 69,
+          loader + " lost the damage types past 64: " + last.getWeaknesses());
+    }
+    parser = new EnemyDataParser();
+    parser.parseCSV(writeTemp(header + "Knight,Area,Boss,Fire,,,100,200\n"
+        + "Hollow,Area,Boss,fire,,,100,200\n"));
+    check(parser.getWeaknessList().equals(Arrays.asList("Fire", "fire"))
+        && parser.nameSearch("Hollow").getWeaknesses().equals(new HashSet<String>(
+            Arrays.asList("fire"))),
+        "Damage types and the weakness list disagree on case: " + parser.getWeaknessList());
+    int facet = parser.getFacetIndex().bitmap(FacetIndex.Facet.WEAKNESS, "Fire").cardinality();
+    check(parser.filter(new DamageQuery().weakTo("Fire")).size() == 2
+        && parser.getEnemiesWeakTo("Fire").size() == 2 && facet == 2
+        && parser.nameSearch("Hollow").isWeakTo("Fire")
+        && parser.filter(new DamageQuery().notWeakTo("FIRE")).isEmpty(),
+        "DamageQuery, isWeakTo, getEnemiesWeakTo and FacetIndex disagree on case");
+  }
+
+  /**
+   * Checks that a load that fails partway leaves no damage types behind, and that a file whose
+   * damage types keep changing does not grow the damage type registry of the parser
+   *
+   * @throws IOException
+   */
+  private static void checkDamageTypeChurn() throws IOException {
+    ArrayList<String> rows = new ArrayList<String>();
+    rows.add("Enemy,Area,Type,Weaknesses,Resistances,Immunities,HP,Souls");
+    for (int i = 0; i < 60; i++) {
+      rows.add("D" + i + ",Area,Boss,Type D" + i + ",,,100,200");
+    }
+    EnemyDataParser parser = new EnemyDataParser();
+    parser.parseCSV(EnemyCSVGenerator.write(rows));
+    String loaded = deltaDump(parser);
+    int registered = parser.nameSearch("D0").getDamageTypes().count();
+    ArrayList<String> more = new ArrayList<String>(rows.subList(0, 1));
+    for (int i = 0; i < 150000; i++) { // Several chunks, each with 10 new damage types
+      more.add("E" + i + ",Area,Boss,Type E" + (i % 10) + ",,,100,200");
+    }
+    boolean failed = false;
+    try { // The size probe and one chunk open the file; the other chunks find it gone
+      parser.parseCSVParallel(new VanishingFile(EnemyCSVGenerator.write(more), 2));
+    } catch (IOException e) {
+      failed = true;
+    }
+    check(failed && deltaDump(parser).equals(loaded)
+        && parser.nameSearch("D0").getDamageTypes().count() == registered,
+        "A failed parseCSVParallel left " + parser.nameSearch("D0").getDamageTypes().count()
+            + " damage types instead of " + registered);
+    rows.add("D60,Area,Boss,Type D60,,,100,200");
+    parser.applyDelta(EnemyCSVGenerator.write(rows));
+    check(parser.nameSearch("D60").isWeakTo("Type D60")
+        && parser.nameSearch("D0").getDamageTypes().count() == registered + 1,
+        "applyDelta after a failed load registered "
+            + parser.nameSearch("D0").getDamageTypes().count() + " damage types instead of "
+            + (registered + 1));
+    for (int i = 0; i < 100; i++) { // One damage type renamed per delta
+      rows.set(1, "D0,Area,Boss,Renamed " + i + ",,,100,200");
+      parser.applyDelta(EnemyCSVGenerator.write(rows));
+      Enemy renamed = parser.nameSearch("D0");
+      check(renamed.isWeakTo("Renamed " + i) && renamed.getDamageTypes().count() <= 64,
+          "Rename " + i + " left " + renamed.getDamageTypes().count() + " damage types");
+    }
+    EnemyDataParser fresh = new EnemyDataParser();
+    fresh.parseCSV(EnemyCSVGenerator.write(rows));
+    check(deltaDump(parser).equals(deltaDump(fresh)),
+        "applyDelta after renaming damage types and a fresh parseCSV disagree");
+  }
+
+  /**
+   * Checks that a reload that fails in any way keeps the data already published
+   *
+   * @throws IOException
+   */
+  private static void checkRejectedReloads() throws IOException {
+    File csv = writeTemp(NON_ASCII_CSV);
+    EnemyDataReloader reloader = new EnemyDataReloader(csv);
+    EnemyDataParser loaded = reloader.current();
+    check(reloader.getVersion() == 1 && loaded.getTree().size() == 2,
+        "EnemyDataReloader did not load " + csv);
+    loaded.writeSnapshot(csv);
+    byte[] bytes = Files.readAllBytes(csv.toPath());
+    bytes[bytes.length / 2] ^= 1; // Breaks the checksum
+    Files.write(csv.toPath(), bytes);
+    check(!reloader.reload() && reloader.current() == loaded,
+        "EnemyDataReloader published a corrupt snapshot");
+    csv.delete();
+    check(!reloader.reload() && reloader.current() == loaded && reloader.getVersion() == 1,
+        "EnemyDataReloader published a load of a missing file");
+    reloader.close();
+  }
+
+  /**
+   * Checks the enemies loaded from NON_ASCII_CSV
+   *
+   * @param parser - parser the CSV was loaded into
+   * @param loader - name of the loader, for messages
+   */
+  private static void checkNonAsciiEnemies(EnemyDataParser parser, String loader) {
+    check(parser.getTree().size() == 2, loader + " loaded " + parser.getTree().size()
+        + " enemies instead of 2");
+    Enemy cafe = parser.nameSearch(CAFE);
+    check(cafe != null && cafe.getName().equals(CAFE) && cafe.getArea().equals(AREA)
+        && cafe.getType().equals(TYPE), loader + " garbled " + cafe);
+    check(cafe.getWeaknesses().equals(new HashSet<String>(Arrays.asList("Fire", GELE))),
+        loader + " garbled the weaknesses " + cafe.getWeaknesses());
+    check(parser.getAreaList().equals(Arrays.asList(AREA)),
+        loader + " garbled the areas " + parser.getAreaList());
+    Enemy nandu = parser.nameSearch(NANDU);
+    check(nandu != null && nandu.getImmunities().equals(new HashSet<String>(Arrays.asList(E))),
+        loader + " garbled " + nandu);
+  }
+
+  /**
+   * @param parser - loaded parser
+   * @return the enemies of the parser in key order, field by field, followed by its area,
+   *         weakness, resistance and immunity lists
+   */
+  private static String dump(EnemyDataParser parser) {
+    return dump(parser, parser.getAreaList());
+  }
+
+  /**
+   * @param parser - loaded parser
+   * @param areas  - area list to include, for when its order does not matter
+   * @return the enemies of the parser in key order, field by field, followed by the area list
+   *         and its weakness, resistance and immunity lists
+   */
+  private static String dump(EnemyDataParser parser, Collection<String> areas) {
+    StringBuilder dump = new StringBuilder();
+    for (Enemy enemy : parser.getTree()) {
+      dump.append(enemy.getKey()).append('|').append(enemy.getName()).append('|')
+          .append(enemy.getArea()).append('|').append(enemy.getType()).append('|')
+          .append(new TreeSet<String>(enemy.getWeaknesses())).append('|')
+          .append(new TreeSet<String>(enemy.getResistances())).append('|')
+          .append(new TreeSet<String>(enemy.getImmunities())).append('|').append(enemy.getHP())
+          .append('|').append(enemy.getSouls()).append('\n');
+    }
+    return dump.append(areas).append(parser.getWeaknessList())
+        .append(parser.getResistancesList()).append(parser.getImmunitiesList()).toString();
+  }
+
+  /**
+   * @param parser - loaded parser
+   * @return dump and indexDump of the parser, with the areas sorted
+   */
+  private static String deltaDump(EnemyDataParser parser) {
+    return dump(parser, new TreeSet<String>(parser.getAreaList())) + indexDump(parser);
+  }
+
+  /**
+   * @param parser - loaded parser
+   * @return the answers of the indexes of the parser to a few queries on every value
+   */
+  private static String indexDump(EnemyDataParser parser) {
+    StringBuilder dump = new StringBuilder();
+    for (String area : new TreeSet<String>(parser.getAreaList())) {
+      dump.append(area).append(parser.getEnemiesInArea(area)).append('\n');
+    }
+    for (String weakness : parser.getWeaknessList()) {
+      dump.append(weakness).append(parser.getEnemiesWeakTo(weakness)).append('\n');
+    }
+    for (Enemy enemy : parser.getTree()) {
+      dump.append(parser.nameSearch(enemy.getName())).append(',');
+    }
+    FacetIndex facets = parser.getFacetIndex();
+    return dump.append(facets.enemies(facets.all())).append(facets.size())
+        .append(parser.getEnemiesWithHPBetween(0, Integer.MAX_VALUE))
+        .append(parser.getTopSoulsPerHP(20)).toString();
+  }
+
+  /**
+   * @param record - record to read
+   * @return every field of the record
+   */
+  private static ArrayList<String> fields(CSVRecord record) {
+    ArrayList<String> fields = new ArrayList<String>();
+    for (int i = 0; i < record.fieldCount(); i++) {
+      fields.add(record.field(i));
+    }
+    return fields;
+  }
+
+  /**
+   * @param text - file contents
+   * @return a temporary file holding the text as UTF-8, deleted on exit
+   * @throws IOException
+   */
+  private static File writeTemp(String text) throws IOException {
+    File file = File.createTempFile("checks", ".csv");
+    file.deleteOnExit();
+    Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  /**
+   * File that is gone once it has been opened a given number of times, to fail a load partway
+   *
+   * @author fvanorde
+   *
+   */
+  private static class VanishingFile extends File {
+    private static final long serialVersionUID = 1L;
+    private final AtomicInteger reads; // getPath calls left before the file is gone
+
+    /**
+     * @param file  - existing file
+     * @param opens - number of times the file can be opened
+     * @throws IOException
+     */
+    private VanishingFile(File file, int opens) throws IOException {
+      super(file.getPath());
+      reads = new AtomicInteger(Integer.MAX_VALUE);
+      new RandomAccessFile(this, "r").close(); // Counts the getPath calls of one open
+      reads.set(opens * (Integer.MAX_VALUE - reads.get()));
+    }
+
+    /**
+     * @return the path of the file while reads are left, then a path that does not exist
+     */
+    @Override
+    public String getPath() {
+      return (reads.getAndDecrement() > 0) ? super.getPath() : super.getPath() + ".gone";
+    }
+  }
+
+  /**
+   * @param condition - condition that must hold
+   * @param message   - what went wrong if it does not
+   */
+  private static void check(boolean condition, String message) {
+    if (!condition) {
+      throw new IllegalStateException(message);
+    }
+  }
+}
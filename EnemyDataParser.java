@@ -1,15 +1,26 @@
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Scanner;
-import java.util.stream.Collectors;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 ///////////////////////////////////////////////////////////////////////////////
 //
 // Title: EnemyDataParser
-// Files: Enemy.java, B2_3Tree.java, EnemyDataParser.java
+// Files: Enemy.java, B2_3Tree.java, EnemyDataParser.java, CSVReader.java, MappedCSVReader.java,
+//        EnemySnapshot.java, EnemyIndex.java, DamageQuery.java, FacetIndex.java,
+//        StatIndex.java, NameAutocomplete.java, StringPool.java, ValueRegistry.java,
+//        DeltaReport.java
 //
 // Author: Finn Van Order
 // Email: finnvanorder@gmail.com
@@ -24,57 +35,83 @@ import java.util.stream.Collectors;
  *
  */
 public class EnemyDataParser {
+  // Smallest piece of a file handed to one parser thread by parseCSVParallel
+  private static final long MIN_CHUNK_SIZE = 1 << 20;
 
-  private ArrayList<String> areaList;
-  private HashSet<String> weaknessSet;
-  private HashSet<String> resistancesSet;
-  private HashSet<String> immunitiesSet;
+  private ValueRegistry areas;
+  private ValueRegistry weaknesses;
+  private ValueRegistry resistances;
+  private ValueRegistry immunities;
+  private boolean valuesCounted; // true while the holder counts of the value lists fit the tree
+  private DamageTypes damageTypes; // registry of the damage type bitmasks of the enemies parsed
   private B2_3Tree<String, Enemy> tree;
+  // Inverted indexes from attribute values to the enemies that have them
+  private EnemyIndex nameIndex;
+  private NameAutocomplete autocomplete; // null until first needed after a change
+  private EnemyIndex areaIndex;
+  private EnemyIndex typeIndex;
+  private EnemyIndex weaknessIndex;
+  private EnemyIndex resistanceIndex;
+  private EnemyIndex immunityIndex;
+  private FacetIndex facetIndex;
+  private StatIndex hpIndex;
+  private StatIndex soulsIndex;
+  private StatIndex soulsPerHPIndex;
+  // Fingerprints of the CSV rows behind the enemies, for applyDelta; null when not known
+  private HashMap<String, RowFingerprint> rowsByKey;
+  private HashMap<Long, RowFingerprint> rowsByFingerprint;
+  private int deltaCount; // number of applyDelta calls, marks the rows seen by the current one
 
   public EnemyDataParser() {
-    areaList = new ArrayList<String>();
-    weaknessSet = new HashSet<String>();
-    resistancesSet = new HashSet<String>();
-    immunitiesSet = new HashSet<String>();
+    areas = new ValueRegistry();
+    weaknesses = new ValueRegistry();
+    resistances = new ValueRegistry();
+    immunities = new ValueRegistry();
+    valuesCounted = true;
+    damageTypes = new DamageTypes();
     tree = new B2_3Tree<String, Enemy>();
+    nameIndex = EnemyIndex.byName();
+    areaIndex = EnemyIndex.byArea();
+    typeIndex = EnemyIndex.byType();
+    weaknessIndex = EnemyIndex.byWeakness();
+    resistanceIndex = EnemyIndex.byResistance();
+    immunityIndex = EnemyIndex.byImmunity();
+    facetIndex = new FacetIndex();
+    hpIndex = StatIndex.byHP();
+    soulsIndex = StatIndex.bySouls();
+    soulsPerHPIndex = StatIndex.bySoulsPerHP();
+    rowsByKey = new HashMap<String, RowFingerprint>();
+    rowsByFingerprint = new HashMap<Long, RowFingerprint>();
+    deltaCount = 0;
   }
 
 
   /**
-   * @return the areaSet
+   * @return an unmodifiable list of the areas, in the order they first appear in the data
    */
-  public ArrayList<String> getAreaList() {
-    return areaList;
+  public List<String> getAreaList() {
+    return areas.inInsertionOrder();
   }
   
   /**
-   * @return an ArrayList of enemy weaknesses
+   * @return an unmodifiable sorted list of enemy weaknesses
    */
-  public ArrayList<String> getWeaknessList() {
-    ArrayList<String> list = new ArrayList<String>();
-    list.addAll(weaknessSet);
-    list.sort(null);
-    return list;
+  public List<String> getWeaknessList() {
+    return weaknesses.inSortedOrder();
   }
   
   /**
-   * @return an ArrayList of enemy resistances
+   * @return an unmodifiable sorted list of enemy resistances
    */
-  public ArrayList<String> getResistancesList() {
-    ArrayList<String> list = new ArrayList<String>();
-    list.addAll(resistancesSet);
-    list.sort(null);
-    return list;
+  public List<String> getResistancesList() {
+    return resistances.inSortedOrder();
   }
   
   /**
-   * @return an ArrayList of enemy immunities
+   * @return an unmodifiable sorted list of enemy immunities
    */
-  public ArrayList<String> getImmunitiesList() {
-    ArrayList<String> list = new ArrayList<String>();
-    list.addAll(immunitiesSet);
-    list.sort(null);
-    return list;
+  public List<String> getImmunitiesList() {
+    return immunities.inSortedOrder();
   }
 
   /**
@@ -85,10 +122,223 @@ public class EnemyDataParser {
   }
   
   /*
-   * Sets the tree field of this parser to the given 2-3 tree
+   * Sets the tree field of this parser to the given 2-3 tree and rebuilds the indexes from it
    */
   public void setTree(B2_3Tree<String, Enemy> tree) {
     this.tree = tree;
+    valuesCounted = false;
+    forgetRows();
+    rebuildIndexes();
+  }
+
+  /**
+   * @param area - area name, any case
+   * @return the enemies in the given area, in key order
+   */
+  public ArrayList<Enemy> getEnemiesInArea(String area) {
+    return areaIndex.get(area);
+  }
+
+  /**
+   * @param type - enemy type, any case
+   * @return the enemies of the given type, in key order
+   */
+  public ArrayList<Enemy> getEnemiesOfType(String type) {
+    return typeIndex.get(type);
+  }
+
+  /**
+   * @param weakness - damage type, any case
+   * @return the enemies weak to the given damage type, in key order
+   */
+  public ArrayList<Enemy> getEnemiesWeakTo(String weakness) {
+    return weaknessIndex.get(weakness);
+  }
+
+  /**
+   * @param resistance - damage type, any case
+   * @return the enemies resistant to the given damage type, in key order
+   */
+  public ArrayList<Enemy> getEnemiesResistantTo(String resistance) {
+    return resistanceIndex.get(resistance);
+  }
+
+  /**
+   * @param immunity - damage type, any case
+   * @return the enemies immune to the given damage type, in key order
+   */
+  public ArrayList<Enemy> getEnemiesImmuneTo(String immunity) {
+    return immunityIndex.get(immunity);
+  }
+
+  /**
+   * Finds the enemies matching every given attribute value, e.g. all enemies weak to Fire in
+   * Irithyll Dungeon. Only the enemies of the rarest given value are visited, and each is checked
+   * against the other indexes, so the cost follows the size of the smallest matching list rather
+   * than the size of the tree.
+   * @param area - area name, null for any
+   * @param type - enemy type, null for any
+   * @param weakness - damage type the enemies must be weak to, null for any
+   * @param resistance - damage type the enemies must resist, null for any
+   * @param immunity - damage type the enemies must be immune to, null for any
+   * @return the matching enemies, in key order
+   */
+  public ArrayList<Enemy> filter(String area, String type, String weakness, String resistance,
+      String immunity) {
+    EnemyIndex[] indexes = {areaIndex, typeIndex, weaknessIndex, resistanceIndex, immunityIndex};
+    String[] values = {area, type, weakness, resistance, immunity};
+    // Look up the enemies of each given value once, keeping the smallest list apart
+    ArrayList<B2_3Tree<String, Enemy>> others = new ArrayList<B2_3Tree<String, Enemy>>();
+    B2_3Tree<String, Enemy> smallest = null;
+    for (int i = 0; i < indexes.length; i++) {
+      if (values[i] == null) {
+        continue;
+      }
+      B2_3Tree<String, Enemy> posting = indexes[i].posting(values[i]);
+      if (posting == null) { // No enemy has this value
+        return new ArrayList<Enemy>();
+      }
+      if (smallest == null) {
+        smallest = posting;
+      } else if (posting.size() < smallest.size()) {
+        others.add(smallest);
+        smallest = posting;
+      } else {
+        others.add(posting);
+      }
+    }
+    if (smallest == null) { // No filters given
+      return tree.traverse();
+    }
+    ArrayList<Enemy> result = new ArrayList<Enemy>();
+    for (Enemy enemy : smallest) {
+      boolean matches = true;
+      for (int i = 0; i < others.size() && matches; i++) {
+        matches = others.get(i).get(enemy.getKey()) != null;
+      }
+      if (matches) {
+        result.add(enemy);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Finds the enemies whose weaknesses, resistances and immunities meet a combined condition, such
+   * as weak to Fire and not immune to Bleed. Each enemy is checked with a few bitwise operations on
+   * its damage type bitmasks.
+   * @param query - condition to check
+   * @return the matching enemies, in key order
+   */
+  public ArrayList<Enemy> filter(DamageQuery query) {
+    ArrayList<Enemy> result = new ArrayList<Enemy>();
+    for (Enemy enemy : tree) {
+      if (query.matches(enemy)) {
+        result.add(enemy);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param min - lowest HP to include
+   * @param max - highest HP to include
+   * @return the enemies with known HP between min and max inclusive, from the lowest HP up
+   */
+  public ArrayList<Enemy> getEnemiesWithHPBetween(int min, int max) {
+    return hpIndex.range(min, max);
+  }
+
+  /**
+   * @param min - lowest number of souls to include
+   * @param max - highest number of souls to include
+   * @return the enemies with known souls between min and max inclusive, from the fewest souls up
+   */
+  public ArrayList<Enemy> getEnemiesWithSoulsBetween(int min, int max) {
+    return soulsIndex.range(min, max);
+  }
+
+  /**
+   * @param k - largest number of enemies to return
+   * @return up to k enemies giving the most souls per hit point, best first
+   */
+  public ArrayList<Enemy> getTopSoulsPerHP(int k) {
+    return soulsPerHPIndex.top(k);
+  }
+
+  /**
+   * @return the bitmap index for combining area, type, weakness, resistance and immunity filters
+   *         with AND, OR and NOT
+   */
+  public FacetIndex getFacetIndex() {
+    return facetIndex;
+  }
+
+  /**
+   * Rebuilds every index from the tree
+   */
+  private void rebuildIndexes() {
+    nameIndex.rebuild(tree);
+    autocomplete = null;
+    areaIndex.rebuild(tree);
+    typeIndex.rebuild(tree);
+    weaknessIndex.rebuild(tree);
+    resistanceIndex.rebuild(tree);
+    immunityIndex.rebuild(tree);
+    facetIndex.rebuild(tree);
+    hpIndex.rebuild(tree);
+    soulsIndex.rebuild(tree);
+    soulsPerHPIndex.rebuild(tree);
+  }
+
+  /**
+   * Builds everything that is otherwise built on first use: the autocomplete index and the value
+   * lists. Once this has run, a parser that is no longer changed can be read from any number of
+   * threads.
+   */
+  public void buildLazyIndexes() {
+    getAutocomplete();
+    getAreaList();
+    getWeaknessList();
+    getResistancesList();
+    getImmunitiesList();
+  }
+
+  /**
+   * Removes an enemy that was just removed from the tree from every index
+   * @param enemy - removed enemy
+   */
+  private void unindexEnemy(Enemy enemy) {
+    nameIndex.remove(enemy);
+    autocomplete = null;
+    areaIndex.remove(enemy);
+    typeIndex.remove(enemy);
+    weaknessIndex.remove(enemy);
+    resistanceIndex.remove(enemy);
+    immunityIndex.remove(enemy);
+    facetIndex.remove(enemy.getKey());
+    hpIndex.remove(enemy);
+    soulsIndex.remove(enemy);
+    soulsPerHPIndex.remove(enemy);
+  }
+
+  /**
+   * Adds an enemy that was just inserted into the tree to every index
+   * @param enemy - new enemy
+   * @throws IllegalKeyException
+   */
+  private void indexEnemy(Enemy enemy) throws IllegalKeyException {
+    nameIndex.add(enemy);
+    autocomplete = null;
+    areaIndex.add(enemy);
+    typeIndex.add(enemy);
+    weaknessIndex.add(enemy);
+    resistanceIndex.add(enemy);
+    immunityIndex.add(enemy);
+    facetIndex.add(enemy);
+    hpIndex.add(enemy);
+    soulsIndex.add(enemy);
+    soulsPerHPIndex.add(enemy);
   }
 
 
@@ -97,101 +347,716 @@ public class EnemyDataParser {
    * Valid CSV format:
    *    Header: Enemy,Area,Type,Weaknesses,Resistances,Immunities,HP,Souls
    *    Body: (Values corresponding to header row)
+   * A file that cannot be read is skipped; see loadCSV to find out about it.
    * @param file
    */
   public void parseCSV(File file) {
+    try {
+      loadCSV(file);
+    } catch (FileNotFoundException e) { // File issues handled in Main.java
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  /**
+   * Parses a CSV file in the format of parseCSV, passing on any error reading it. The whole file
+   * is read before anything is changed, so a read that fails partway leaves the enemies as they
+   * were rather than loading the rows before the failure.
+   * @param file - CSV file to parse
+   * @throws IOException if the file cannot be read; nothing is changed then
+   */
+  public void loadCSV(File file) throws IOException {
+    boolean empty = tree.isEmpty();
     int ln = 0;
+    int registered = damageTypes.count();
+    ParsedChunk chunk = new ParsedChunk(damageTypes);
+    long[] fingerprints = new long[256]; // fingerprint of the row of each entry, for applyDelta
     // parse csv
+    CSVReader reader = new CSVReader(new FileInputStream(file));
     try {
-      Scanner csvScnr = new Scanner(file);
-      while (csvScnr.hasNextLine()) {
-        String row = csvScnr.nextLine();
-        String[] data = row.split(",");
+      while (reader.nextRecord()) {
         ln++;
         if (ln == 1) { // Strip off the header row
           continue;
-        } 
-        if (data.length < 8) { // Sanity check to prevent ArrayIndexOutOfBounds exceptions
+        }
+        int parsed = chunk.entries.size();
+        addRecord(reader, chunk);
+        if (chunk.entries.size() > parsed) {
+          if (parsed == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, parsed * 2);
+          }
+          fingerprints[parsed] = reader.fingerprint();
+        }
+      }
+    } catch (IOException | RuntimeException e) { // Names of the rows read so far are not used
+      damageTypes.rollback(registered);
+      throw e;
+    } finally {
+      reader.close();
+    }
+    mergeChunk(chunk);
+    buildTree(chunk.entries);
+    if (empty) { // The tree holds exactly the first row of each key
+      rowsByKey = new HashMap<String, RowFingerprint>();
+      rowsByFingerprint = new HashMap<Long, RowFingerprint>();
+      for (int i = 0; i < chunk.entries.size(); i++) {
+        String key = chunk.entries.get(i).getKey();
+        if (!rowsByKey.containsKey(key)) {
+          rememberRow(key, fingerprints[i]);
+        }
+      }
+    } else {
+      forgetRows();
+    }
+  }
+
+  /**
+   * Parses a CSV file in the same format as parseCSV by memory-mapping it. Records are scanned in
+   * place and only the fields an Enemy needs are decoded, so the text of the file never has to be
+   * read into the heap. Meant for very large exports; files over 2 GB are mapped in chunks.
+   * @param file
+   * @throws IOException if the file cannot be read; nothing is changed then
+   */
+  public void parseCSVMapped(File file) throws IOException {
+    ParsedChunk chunk;
+    int registered = damageTypes.count();
+    try {
+      chunk = new ChunkTask(file, 0, -1, damageTypes).compute();
+    } catch (UncheckedIOException e) {
+      damageTypes.rollback(registered);
+      throw e.getCause();
+    } catch (RuntimeException e) {
+      damageTypes.rollback(registered);
+      throw e;
+    }
+    mergeChunk(chunk);
+    buildTree(chunk.entries);
+    forgetRows();
+  }
+
+  /**
+   * Parses a CSV file in the same format as parseCSV on all cores. The file is cut at line breaks
+   * into a few chunks per worker, each chunk is parsed by a memory-mapped reader on the common
+   * ForkJoinPool, and the chunk results are merged in file order so the area list and the choice
+   * between duplicate keys come out exactly as with parseCSV. The tree is then built in one step.
+   * Quoted fields must not contain line breaks, since chunks are cut at any line break.
+   * @param file
+   * @throws IOException if the file cannot be read; nothing is changed then
+   */
+  public void parseCSVParallel(File file) throws IOException {
+    ArrayList<ChunkTask> tasks = new ArrayList<ChunkTask>();
+    int registered = damageTypes.count();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      long chunkSize = Math.max(MIN_CHUNK_SIZE,
+          size / (4L * ForkJoinPool.getCommonPoolParallelism()) + 1);
+      long start = 0;
+      while (start < size) {
+        long end = MappedCSVReader.nextLineStart(channel, Math.min(size, start + chunkSize));
+        tasks.add(new ChunkTask(file, start, end, damageTypes));
+        start = end;
+      }
+    }
+    for (ChunkTask task : tasks) {
+      ForkJoinPool.commonPool().execute(task);
+    }
+    ArrayList<ParsedChunk> chunks = new ArrayList<ParsedChunk>();
+    RuntimeException failure = null;
+    for (ChunkTask task : tasks) { // Every chunk must parse before anything is changed
+      try {
+        chunks.add(task.join());
+      } catch (RuntimeException e) { // Still wait for the other chunks before failing
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (failure != null) {
+      damageTypes.rollback(registered); // The chunks that did parse are thrown away
+      for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+      }
+      throw failure;
+    }
+    ArrayList<InnerNode<String, Enemy>> entries = new ArrayList<InnerNode<String, Enemy>>();
+    for (ParsedChunk chunk : chunks) {
+      mergeChunk(chunk);
+      entries.addAll(chunk.entries);
+    }
+    buildTree(entries);
+    forgetRows();
+  }
+
+  /**
+   * Writes the tree and the area, weakness, resistance and immunity lists to a binary snapshot
+   * that loadSnapshot can read back much faster than parsing the CSV.
+   * @param file - snapshot file to write
+   * @throws IOException
+   */
+  public void writeSnapshot(File file) throws IOException {
+    EnemySnapshot.write(file, areas.inInsertionOrder(), weaknesses.inInsertionOrder(),
+        resistances.inInsertionOrder(), immunities.inInsertionOrder(), tree);
+  }
+
+  /**
+   * Loads a snapshot written by writeSnapshot, as if the CSV it was made from had been parsed.
+   * The enemies are stored in key order, so the tree is bulk-built without sorting.
+   * @param file - snapshot file to read
+   * @throws IOException if the file cannot be read or is not a valid snapshot
+   */
+  public void loadSnapshot(File file) throws IOException {
+    int registered = damageTypes.count();
+    EnemySnapshot snapshot;
+    try {
+      snapshot = EnemySnapshot.read(file, damageTypes);
+    } catch (IOException | RuntimeException e) {
+      damageTypes.rollback(registered);
+      throw e;
+    }
+    ParsedChunk chunk = new ParsedChunk(damageTypes);
+    chunk.entries = snapshot.getEntries();
+    chunk.areas.addAll(snapshot.getAreas());
+    chunk.weaknesses.addAll(snapshot.getWeaknesses());
+    chunk.resistances.addAll(snapshot.getResistances());
+    chunk.immunities.addAll(snapshot.getImmunities());
+    mergeChunk(chunk);
+    buildTree(chunk.entries);
+    forgetRows();
+  }
+
+  /**
+   * Brings the enemies in line with a new version of a CSV file in the format of parseCSV, changing
+   * only what differs: enemies whose rows are new are inserted, those whose rows changed are
+   * updated and those whose rows are gone are removed, along with their index entries and any
+   * area or damage type no other enemy has. As with parseCSV, the first row of a key wins.
+   *
+   * Every row is fingerprinted, and a row whose fingerprint the parser already holds is skipped
+   * without decoding it, so after parseCSV or an earlier applyDelta a small patch costs one pass
+   * over the bytes plus work in proportion to the rows that changed. The first applyDelta after
+   * a load also walks the enemies once to count the holders of each value, so that a value is
+   * dropped only once no enemy has exactly that spelling. After the other loaders and setTree the
+   * fingerprints are not known, and the first applyDelta parses every row and compares it with
+   * the enemy it has. New areas are added at the end of the area list rather than where they
+   * first appear in the file. A read that fails leaves no new damage types behind.
+   * @param file - new version of the CSV file
+   * @return the enemies inserted, updated and removed
+   * @throws IOException if the file cannot be read; nothing is changed then
+   */
+  public DeltaReport applyDelta(File file) throws IOException {
+    int delta = ++deltaCount;
+    // Read the whole file before changing anything, so a failed read leaves the enemies as they
+    // were. Rows with known fingerprints are only marked; the others are parsed.
+    int registered = damageTypes.count();
+    ParsedChunk chunk = new ParsedChunk(damageTypes);
+    long[] fingerprints = new long[16];
+    int[] lines = new int[16]; // row of each parsed entry, to pick the first row of a key
+    CSVReader reader = new CSVReader(new FileInputStream(file));
+    try {
+      int line = 0;
+      while (reader.nextRecord()) {
+        line++;
+        if (line == 1) { // Strip off the header row
           continue;
         }
-        try {
-          String name = data[0].trim();
-          String area = data[1].trim();
-          String type = data[2].trim();
-          HashSet<String> weaknesses = generateSetFromString(data[3]);
-          HashSet<String> resistances = generateSetFromString(data[4]);
-          HashSet<String> immunities = generateSetFromString(data[5]);
-          String hp = data[6].trim();
-          String souls = data[7].trim();
-          Enemy enemy = new Enemy(name, area, type, weaknesses, resistances, immunities, hp, souls);
-          tree.insert(enemy.getKey(), enemy);
-          // Keep running list of areas/weaknesses/resistances/immunities for faster access in 
-          // drawing the GUI
-          if (!areaList.contains(area)) {
-            areaList.add(area);
+        long fingerprint = reader.fingerprint();
+        RowFingerprint row = (rowsByFingerprint == null) ? null
+            : rowsByFingerprint.get(fingerprint);
+        if (row != null) {
+          if (row.delta != delta) { // Else an exact repeat of an earlier row
+            row.delta = delta;
+            row.line = line;
           }
-          weaknessSet.addAll(weaknesses);
-          resistancesSet.addAll(resistances);
-          immunitiesSet.addAll(immunities);
-        } catch (Exception e) {
-          System.out.println(e.getMessage());
+          continue;
+        }
+        int parsed = chunk.entries.size();
+        addRecord(reader, chunk);
+        if (chunk.entries.size() > parsed) {
+          if (parsed == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, parsed * 2);
+            lines = Arrays.copyOf(lines, parsed * 2);
+          }
+          fingerprints[parsed] = fingerprint;
+          lines[parsed] = line;
         }
       }
-      csvScnr.close();
-    } catch (FileNotFoundException e) { // File issues handled in Main.java
+    } catch (IOException | RuntimeException e) { // Names of the rows read so far are not used
+      damageTypes.rollback(registered);
+      throw e;
+    } finally {
+      reader.close();
+    }
+    if (!valuesCounted) {
+      countValues();
+    }
+    boolean known = rowsByKey != null;
+    if (!known) {
+      rowsByKey = new HashMap<String, RowFingerprint>();
+      rowsByFingerprint = new HashMap<Long, RowFingerprint>();
+    }
+    // Keep the first row of each key among the parsed rows and the unchanged ones
+    HashMap<String, Integer> claimed = new HashMap<String, Integer>(); // key -> entry
+    for (int i = 0; i < chunk.entries.size(); i++) {
+      String key = chunk.entries.get(i).getKey();
+      RowFingerprint unchanged = rowsByKey.get(key);
+      if (!claimed.containsKey(key)
+          && (unchanged == null || unchanged.delta != delta || unchanged.line > lines[i])) {
+        claimed.put(key, i);
+      }
+    }
+    DeltaReport report = new DeltaReport();
+    ArrayList<Enemy> dropped = new ArrayList<Enemy>(); // enemies whose values may now be unused
+    try {
+      ArrayList<String> gone = new ArrayList<String>();
+      if (known) {
+        for (RowFingerprint row : rowsByKey.values()) {
+          if (row.delta != delta && !claimed.containsKey(row.key)) {
+            gone.add(row.key);
+          }
+        }
+      } else {
+        for (Enemy enemy : tree) {
+          if (!claimed.containsKey(enemy.getKey())) {
+            gone.add(enemy.getKey());
+          }
+        }
+      }
+      for (String key : gone) {
+        Enemy enemy = tree.remove(key);
+        unindexEnemy(enemy);
+        forgetRow(key);
+        dropped.add(enemy);
+        report.addRemoved(enemy);
+      }
+      for (int i = 0; i < chunk.entries.size(); i++) {
+        String key = chunk.entries.get(i).getKey();
+        Integer first = claimed.get(key);
+        if (first == null || first != i) { // A later row of the same key
+          continue;
+        }
+        Enemy enemy = chunk.entries.get(i).getValue();
+        Enemy old = tree.get(key);
+        if (old == null) {
+          tree.insert(key, enemy);
+          indexEnemy(enemy);
+          addValues(enemy);
+          report.addInserted(enemy);
+        } else if (!sameData(old, enemy)) {
+          unindexEnemy(old);
+          tree.put(key, enemy);
+          indexEnemy(enemy);
+          addValues(enemy);
+          dropped.add(old);
+          report.addUpdated(old, enemy);
+        }
+        forgetRow(key);
+        rememberRow(key, fingerprints[i]);
+      }
+    } catch (IllegalKeyException e) {
+      System.out.println(e.getMessage());
+    }
+    for (Enemy enemy : dropped) {
+      dropUnusedValues(enemy);
+    }
+    compactDamageTypes();
+    facetIndex.compact(tree); // Inserted enemies may have broken the key order of its ids
+    report.setUnchanged(tree.size() - report.getInserted().size()
+        - report.getUpdated().size());
+    return report;
+  }
+
+  /**
+   * CSV row behind an enemy of the tree, as recorded for applyDelta
+   *
+   * @author fvanorde
+   *
+   */
+  private static class RowFingerprint {
+    private final String key;
+    private final long fingerprint;
+    private int delta; // last applyDelta call that found the row unchanged
+    private int line; // row where that call found it
+
+    private RowFingerprint(String key, long fingerprint) {
+      this.key = key;
+      this.fingerprint = fingerprint;
+      delta = 0;
+      line = 0;
+    }
+  }
+
+  /**
+   * Records the fingerprint of the row behind an enemy
+   * @param key - key of the enemy
+   * @param fingerprint - fingerprint of its row
+   */
+  private void rememberRow(String key, long fingerprint) {
+    RowFingerprint row = new RowFingerprint(key, fingerprint);
+    rowsByKey.put(key, row);
+    rowsByFingerprint.put(fingerprint, row);
+  }
+
+  /**
+   * Drops the fingerprint of the row behind an enemy, if one is recorded
+   * @param key - key of the enemy
+   */
+  private void forgetRow(String key) {
+    RowFingerprint row = rowsByKey.remove(key);
+    if (row != null && rowsByFingerprint.get(row.fingerprint) == row) {
+      rowsByFingerprint.remove(row.fingerprint);
+    }
+  }
+
+  /**
+   * Drops every row fingerprint, for when the rows behind the tree are no longer known
+   */
+  private void forgetRows() {
+    rowsByKey = null;
+    rowsByFingerprint = null;
+  }
+
+  /**
+   * @param a - an enemy
+   * @param b - an enemy with the same key
+   * @return true if the enemies hold the same data, else false
+   */
+  private static boolean sameData(Enemy a, Enemy b) {
+    if (!a.getName().equals(b.getName()) || !a.getArea().equals(b.getArea())
+        || !a.getType().equals(b.getType()) || a.getHP() != b.getHP()
+        || a.getSouls() != b.getSouls()) {
+      return false;
+    }
+    if (a.getDamageTypes() == b.getDamageTypes()) {
+      for (int word = 0; word < Math.max(a.getMaskWords(), b.getMaskWords()); word++) {
+        if (a.getWeaknessMask(word) != b.getWeaknessMask(word)
+            || a.getResistanceMask(word) != b.getResistanceMask(word)
+            || a.getImmunityMask(word) != b.getImmunityMask(word)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    // An enemy from setTree -> its masks are over another registry
+    return a.getWeaknesses().equals(b.getWeaknesses())
+        && a.getResistances().equals(b.getResistances())
+        && a.getImmunities().equals(b.getImmunities());
+  }
+
+  /**
+   * Counts the enemies of the tree holding each area, weakness, resistance and immunity, for
+   * applyDelta to tell when a value is no longer used
+   */
+  private void countValues() {
+    areas.clearHolders();
+    weaknesses.clearHolders();
+    resistances.clearHolders();
+    immunities.clearHolders();
+    for (Enemy enemy : tree) {
+      holdValues(enemy);
+    }
+    valuesCounted = true;
+  }
+
+  /**
+   * Counts an enemy as a holder of each of its values
+   * @param enemy - enemy in the tree
+   */
+  private void holdValues(Enemy enemy) {
+    areas.hold(enemy.getArea());
+    for (String weakness : enemy.getWeaknesses()) {
+      weaknesses.hold(weakness);
+    }
+    for (String resistance : enemy.getResistances()) {
+      resistances.hold(resistance);
+    }
+    for (String immunity : enemy.getImmunities()) {
+      immunities.hold(immunity);
+    }
+  }
+
+  /**
+   * Adds the area, weaknesses, resistances and immunities of an enemy to the value lists
+   * @param enemy - enemy that was added
+   */
+  private void addValues(Enemy enemy) {
+    areas.add(enemy.getArea());
+    weaknesses.addAll(enemy.getWeaknesses());
+    resistances.addAll(enemy.getResistances());
+    immunities.addAll(enemy.getImmunities());
+    holdValues(enemy);
+  }
+
+  /**
+   * Drops the values of an enemy that was removed from the value lists, if no enemy left has them
+   * in exactly that case
+   * @param enemy - enemy that was removed
+   */
+  private void dropUnusedValues(Enemy enemy) {
+    areas.release(enemy.getArea());
+    for (String weakness : enemy.getWeaknesses()) {
+      weaknesses.release(weakness);
+    }
+    for (String resistance : enemy.getResistances()) {
+      resistances.release(resistance);
+    }
+    for (String immunity : enemy.getImmunities()) {
+      immunities.release(immunity);
+    }
+  }
+
+  /**
+   * Moves the enemies to a new damage type registry holding only the names they use, once the
+   * unused names outnumber the used ones or cost the masks a long. Names stay registered after
+   * the last enemy with them is gone, so without this a file whose damage types keep changing
+   * would grow the registry with every applyDelta. Enemies no longer in the tree keep the old
+   * registry, which is not changed again.
+   */
+  private void compactDamageTypes() {
+    int registered = damageTypes.count();
+    int used = 0;
+    for (int id = 0; id < registered; id++) {
+      String name = damageTypes.name(id);
+      if (weaknesses.holders(name) > 0 || resistances.holders(name) > 0
+          || immunities.holders(name) > 0) {
+        used++;
+      }
+    }
+    if (registered - used <= used && (registered + 63) >>> 6 <= Math.max(1, (used + 63) >>> 6)) {
+      return;
+    }
+    DamageTypes compacted = new DamageTypes();
+    for (Enemy enemy : tree) {
+      enemy.setDamageTypes(compacted);
+    }
+    damageTypes = compacted;
+  }
+
+  /**
+   * Enemies and attribute values parsed from one part of a CSV file
+   * 
+   * @author fvanorde
+   *
+   */
+  private static class ParsedChunk {
+    private ArrayList<InnerNode<String, Enemy>> entries;
+    private LinkedHashSet<String> areas; // in order of first appearance
+    private HashSet<String> weaknesses;
+    private HashSet<String> resistances;
+    private HashSet<String> immunities;
+    private DamageTypes damageTypes; // registry of the parser the chunk is for
+    private StringPool pool; // strings of this chunk, so repeated values share one String
+    private HashSet<String> rowWeaknesses; // sets of the row being parsed
+    private HashSet<String> rowResistances;
+    private HashSet<String> rowImmunities;
+
+    /**
+     * @param damageTypes - registry to store the damage types of the enemies in
+     */
+    private ParsedChunk(DamageTypes damageTypes) {
+      this.damageTypes = damageTypes;
+      entries = new ArrayList<InnerNode<String, Enemy>>();
+      areas = new LinkedHashSet<String>();
+      weaknesses = new HashSet<String>();
+      resistances = new HashSet<String>();
+      immunities = new HashSet<String>();
+      pool = new StringPool();
+      rowWeaknesses = new HashSet<String>();
+      rowResistances = new HashSet<String>();
+      rowImmunities = new HashSet<String>();
+    }
+  }
+
+  /**
+   * Parses the records between two byte offsets of a CSV file with a MappedCSVReader
+   * 
+   * @author fvanorde
+   *
+   */
+  private static class ChunkTask extends RecursiveTask<ParsedChunk> {
+    private static final long serialVersionUID = 1L;
+    private final File file;
+    private final long start;
+    private final long end;
+    private final DamageTypes damageTypes;
+
+    /**
+     * @param file - CSV file to parse
+     * @param start - file offset of the first record of the chunk; 0 also skips the header row
+     * @param end - file offset after the last byte of the chunk, -1 for the end of the file
+     * @param damageTypes - registry to store the damage types of the enemies in
+     */
+    private ChunkTask(File file, long start, long end, DamageTypes damageTypes) {
+      this.file = file;
+      this.start = start;
+      this.end = end;
+      this.damageTypes = damageTypes;
+    }
+
+    /**
+     * @return the enemies and values parsed from the chunk
+     * @throws UncheckedIOException if the chunk cannot be read
+     */
+    @Override
+    protected ParsedChunk compute() {
+      ParsedChunk chunk = new ParsedChunk(damageTypes);
+      try (MappedCSVReader reader = new MappedCSVReader(file, start, end)) {
+        if (start == 0) { // Strip off the header row
+          reader.nextRecord();
+        }
+        while (reader.nextRecord()) {
+          addRecord(reader, chunk);
+        }
+      } catch (IOException e) { // A chunk read partway must not be taken for the whole chunk
+        throw new UncheckedIOException(e);
+      }
+      return chunk;
     }
   }
 
   /**
-   * Generates a set from a semi-colon delimited string
-   * @param str
-   * @return HashSet<String> from the semi-colon delimited string
+   * Creates an Enemy from a CSV record and adds it to a chunk, along with its area, weaknesses,
+   * resistances and immunities. A malformed row is skipped.
+   * @param record - current record of a CSV reader
+   * @param chunk - chunk to add the enemy to
    */
-  private HashSet<String> generateSetFromString(String str) {
-    HashSet<String> set = new HashSet<String>();
-    if (str == null) {
-      return set;
+  private static void addRecord(CSVRecord record, ParsedChunk chunk) {
+    if (record.fieldCount() < 8) { // Sanity check to prevent IndexOutOfBounds exceptions
+      return;
     }
-    String[] data = str.split(";");
-    for (int i = 0; i < data.length; i++) {
-      set.add(data[i].trim());
+    try {
+      // Only the columns that repeat across rows go through the pool; names, HP and souls are
+      // almost all distinct, so pooling them would only grow the pool
+      StringPool pool = chunk.pool;
+      String name = record.field(0);
+      String area = record.field(1, pool);
+      String type = record.field(2, pool);
+      // Enemy only keeps the sets as bitmasks, so the same three sets are reused for every row
+      HashSet<String> weaknesses = generateSetFromField(record, 3, pool, chunk.rowWeaknesses);
+      HashSet<String> resistances = generateSetFromField(record, 4, pool, chunk.rowResistances);
+      HashSet<String> immunities = generateSetFromField(record, 5, pool, chunk.rowImmunities);
+      int hp = Enemy.parseStat(record.field(6));
+      int souls = Enemy.parseStat(record.field(7));
+      Enemy enemy = new Enemy(name, area, type, weaknesses, resistances, immunities, hp, souls,
+          chunk.damageTypes);
+      chunk.entries.add(new InnerNode<String, Enemy>(enemy.getKey(), enemy));
+      chunk.areas.add(area);
+      chunk.weaknesses.addAll(weaknesses);
+      chunk.resistances.addAll(resistances);
+      chunk.immunities.addAll(immunities);
+    } catch (Exception e) {
+      System.out.println(e.getMessage());
     }
+  }
+
+  /**
+   * Adds the areas and attribute values of a parsed chunk to the running lists kept for faster
+   * access in drawing the GUI
+   * @param chunk - parsed chunk
+   */
+  private void mergeChunk(ParsedChunk chunk) {
+    areas.addAll(chunk.areas);
+    weaknesses.addAll(chunk.weaknesses);
+    resistances.addAll(chunk.resistances);
+    immunities.addAll(chunk.immunities);
+  }
+
+  /**
+   * Adds parsed enemies to the tree and the indexes. Builds the tree and indexes in one pass when
+   * the parser is empty, else falls back to inserts.
+   * @param entries - list of parsed enemies keyed for the tree
+   */
+  private void buildTree(ArrayList<InnerNode<String, Enemy>> entries) {
+    valuesCounted = false;
+    try {
+      if (tree.isEmpty()) {
+        tree = new B2_3Tree<String, Enemy>(entries);
+        rebuildIndexes();
+      } else {
+        for (InnerNode<String, Enemy> entry : entries) {
+          if (tree.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+            indexEnemy(entry.getValue());
+          }
+        }
+        facetIndex.compact(tree);
+      }
+    } catch (IllegalKeyException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  /**
+   * Generates a set from a semi-colon delimited field of the current CSV record
+   * @param record - current record of a CSV reader
+   * @param index - index of the field
+   * @param pool - pool of the strings of the current load
+   * @param set - set to clear and fill
+   * @return set, holding the pieces of the semi-colon delimited field
+   */
+  private static HashSet<String> generateSetFromField(CSVRecord record, int index,
+      StringPool pool, HashSet<String> set) {
+    set.clear();
+    record.splitField(index, ';', set, pool);
     return set;
   }
   
   /**
-   * Searches the tree for an enemy with the given name. Searches all game areas for the enemy due
-   * to some enemies residing in multiple maps.
-   * @param key - name of the enemy to search for
-   * @return - ArrayList of all enemies with the given name
+   * Completes a partly typed enemy name, ignoring case: first the names that start with the text,
+   * then the names with a later word that does.
+   * @param prefix - text typed so far
+   * @param k - largest number of names to return
+   * @return up to k enemy names
    */
-  public ArrayList<Enemy> search(String key) {
-    ArrayList<Enemy> enemyList = new ArrayList<Enemy>();
-    Iterator<String> itr = areaList.iterator();
-    while (itr.hasNext()) {
-      String searchKey = key.toUpperCase().concat(" - " +itr.next().toUpperCase());
-      Enemy enemy = tree.get(searchKey);
-      if (enemy != null) {
-        enemyList.add(enemy);
+  public ArrayList<String> completeName(String prefix, int k) {
+    return getAutocomplete().complete(prefix, k);
+  }
+
+  /**
+   * Completes a partly typed enemy name that may contain typos, ignoring case.
+   * @param prefix - text typed so far
+   * @param k - largest number of names to return
+   * @param maxEdits - largest number of typos (inserted, missing, wrong or swapped characters)
+   * @return up to k enemy names, the closest first
+   */
+  public ArrayList<String> completeNameFuzzy(String prefix, int k, int maxEdits) {
+    return getAutocomplete().completeFuzzy(prefix, k, maxEdits);
+  }
+
+  /**
+   * @return the autocomplete index, built from the names in the tree if it is out of date
+   */
+  private NameAutocomplete getAutocomplete() {
+    if (autocomplete == null) {
+      ArrayList<String> names = new ArrayList<String>();
+      for (Enemy enemy : tree) {
+        names.add(enemy.getName());
       }
+      autocomplete = new NameAutocomplete(names);
     }
-    return enemyList;
+    return autocomplete;
+  }
+
+  /**
+   * Searches for an enemy with the given name, ignoring case. Searches all game areas for the
+   * enemy due to some enemies residing in multiple maps. Answered from the name index with one
+   * hash lookup.
+   * @param key - name of the enemy to search for
+   * @return - ArrayList of all enemies with the given name, in key order; empty if there are none
+   */
+  public ArrayList<Enemy> search(String key) {
+    return nameIndex.get(key);
   }
   
   /**
-   * Searches the tree for an enemy with the given name. 
+   * Searches for an enemy with the given name, ignoring case. Answered from the name index with
+   * one hash lookup.
    * @param name - name of the enemy to search for
-   * @return - enemy with the given name
+   * @return - the first enemy in key order with the given name, else null
    */
   public Enemy nameSearch(String name) {
-    Enemy enemy = null;
-    ArrayList<Enemy> enemyList = this.getTree().traverse();
-    ArrayList<Enemy> temp = (ArrayList<Enemy>) enemyList.stream()
-        .filter(e -> e.getName().equals(name))
-        .limit(1)
-        .collect((Collectors.toList()));
-    enemy = temp.get(0);
-    return enemy;
+    return nameIndex.first(name);
   }
 
   /**
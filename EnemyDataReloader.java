@@ -0,0 +1,247 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: EnemyDataReloader
+// Files: EnemyDataReloader.java, EnemyDataParser.java, EnemySnapshot.java, EnemyCSVGenerator.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Keeps the enemy data of a running process in step with a CSV file or snapshot on disk. Each
+ * load builds a complete new EnemyDataParser, tree and indexes included, off to the side and
+ * publishes it with a single atomic reference swap, so readers never lock and never wait for a
+ * load. A reader that holds on to the parser from current() keeps querying that one consistent
+ * version for as long as it likes; the next call to current() sees the new one.
+ *
+ * Once started, a background thread watches the file with a WatchService and reloads it after it
+ * has stopped changing for a moment. A file that cannot be read, is not a valid snapshot, holds
+ * no enemies or fails to load in any other way leaves the current data in place. Since a CSV that
+ * is still being written parses as a shorter CSV, the file is best replaced by writing a copy and
+ * moving it into place.
+ *
+ * The parsers handed out must not be changed, as other threads may be reading them.
+ *
+ * @author fvanorde
+ *
+ */
+public class EnemyDataReloader implements Closeable {
+  // Time the file must go without changes before it is reloaded
+  private static final long QUIET_MILLIS = 200;
+
+  private final File file;
+  private final AtomicReference<EnemyDataParser> current;
+  private final AtomicLong version; // number of loads published
+  private WatchService watcher; // null until started
+
+  /**
+   * Constructor for an EnemyDataReloader; loads the file once before returning
+   *
+   * @param file - CSV file in the format of EnemyDataParser.parseCSV, or a snapshot written by
+   *             EnemyDataParser.writeSnapshot
+   */
+  public EnemyDataReloader(File file) {
+    this.file = file.getAbsoluteFile();
+    current = new AtomicReference<EnemyDataParser>(new EnemyDataParser());
+    version = new AtomicLong();
+    reload();
+  }
+
+  /**
+   * Returns the enemy data as of the last load. The parser is never changed afterwards, so it can
+   * be read from any thread and gives the same answers for as long as it is kept.
+   *
+   * @return the current enemy data
+   */
+  public EnemyDataParser current() {
+    return current.get();
+  }
+
+  /**
+   * @return the number of loads published so far, the first one included
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * Loads the file into a new parser and publishes it if the load worked. Runs on the calling
+   * thread; readers carry on with the current data meanwhile. Loads are serialized. Any error
+   * during the load, including a read that fails partway, rejects it.
+   *
+   * @return true if new data was published, else false
+   */
+  public synchronized boolean reload() {
+    EnemyDataParser parser = new EnemyDataParser();
+    try {
+      if (EnemySnapshot.isSnapshot(file)) {
+        parser.loadSnapshot(file);
+      } else {
+        parser.loadCSV(file);
+      }
+      if (parser.getTree().isEmpty()) { // Empty or half written
+        return false;
+      }
+      parser.buildLazyIndexes(); // Readers must not build anything themselves
+    } catch (Exception e) {
+      System.out.println("Reload of " + file.getName() + " rejected: " + e);
+      return false;
+    }
+    current.set(parser);
+    version.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Starts watching the file and reloading it when it changes
+   *
+   * @throws IOException if the directory of the file cannot be watched
+   */
+  public synchronized void start() throws IOException {
+    if (watcher != null) {
+      return;
+    }
+    watcher = FileSystems.getDefault().newWatchService();
+    // A directory is watched, not the file, which editors and copies often replace
+    file.getParentFile().toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    Thread thread = new Thread(this::watch, "EnemyDataReloader " + file.getName());
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stops watching the file. The current data stays available.
+   *
+   * @throws IOException
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (watcher != null) {
+      watcher.close(); // Wakes the watch thread, which then ends
+      watcher = null;
+    }
+  }
+
+  /**
+   * Body of the watch thread: waits for changes to the file, lets them settle and reloads it
+   */
+  private void watch() {
+    WatchService service = watcher;
+    try {
+      while (true) {
+        if (!concernsFile(service.take())) {
+          continue;
+        }
+        // Wait for the writes to stop, so one save is one reload
+        WatchKey key;
+        while ((key = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          concernsFile(key);
+        }
+        try {
+          reload();
+        } catch (RuntimeException e) { // Keep watching; the next save may load
+          System.out.println("Reload of " + file.getName() + " failed: " + e);
+        }
+      }
+    } catch (ClosedWatchServiceException e) { // Closed by close()
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Takes the events of a watch key and readies the key for more
+   *
+   * @param key - signalled watch key
+   * @return true if any of the events may be about the file, else false
+   */
+  private boolean concernsFile(WatchKey key) {
+    boolean concerns = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      concerns |= event.kind() == StandardWatchEventKinds.OVERFLOW
+          || file.getName().equals(event.context().toString());
+    }
+    key.reset();
+    return concerns;
+  }
+
+  /**
+   * Rewrites a copy of EnemiesCSV.csv with more enemies each time while reader threads keep
+   * querying, and reports how long the longest query took and whether any reader saw a tree and
+   * indexes from different loads.
+   *
+   * @param args - optional number of rewrites, defaults to 5
+   */
+  public static void main(String[] args) {
+    int rewrites = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+    try {
+      Path directory = Files.createTempDirectory("enemies");
+      directory.toFile().deleteOnExit();
+      File csv = directory.resolve("enemies.csv").toFile();
+      EnemyCSVGenerator.replace(EnemyCSVGenerator.lines(1), csv);
+      EnemyDataReloader reloader = new EnemyDataReloader(csv);
+      reloader.start();
+      AtomicLong queries = new AtomicLong();
+      AtomicLong inconsistent = new AtomicLong();
+      AtomicLong longest = new AtomicLong();
+      Runnable reader = () -> {
+        while (!Thread.currentThread().isInterrupted()) {
+          long start = System.nanoTime();
+          EnemyDataParser data = reloader.current();
+          // Indexes from another load would disagree on the size or hold other Enemy objects
+          int size = data.getTree().size();
+          Enemy first = data.getTree().iterator().next();
+          if (data.getFacetIndex().all().cardinality() != size
+              || data.getEnemiesWithHPBetween(0, Integer.MAX_VALUE).size() > size
+              || data.nameSearch(first.getName()) != first) {
+            inconsistent.incrementAndGet();
+          }
+          data.completeName("Gund", 5);
+          longest.accumulateAndGet(System.nanoTime() - start, Math::max);
+          queries.incrementAndGet();
+        }
+      };
+      Thread[] readers = {new Thread(reader), new Thread(reader)};
+      for (Thread thread : readers) {
+        thread.start();
+      }
+      for (int rewrite = 2; rewrite <= rewrites + 1; rewrite++) {
+        long seen = reloader.getVersion();
+        long start = System.nanoTime();
+        EnemyCSVGenerator.replace(EnemyCSVGenerator.lines(rewrite * 20), csv);
+        while (reloader.getVersion() == seen) {
+          Thread.sleep(10);
+        }
+        System.out.println("Rewrite " + (rewrite - 1) + ": " + reloader.current().getTree().size()
+            + " enemies published " + (System.nanoTime() - start) / 1000000
+            + " ms after the write began");
+      }
+      for (Thread thread : readers) {
+        thread.interrupt();
+        thread.join();
+      }
+      reloader.close();
+      System.out.println(queries.get() + " queries during reloads, " + inconsistent.get()
+          + " saw inconsistent data, longest took " + longest.get() / 1000 + " us");
+    } catch (IOException | InterruptedException e) {
+      e.printStackTrace();
+    }
+  }
+}
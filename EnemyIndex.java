@@ -0,0 +1,241 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.function.Function;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: EnemyIndex
+// Files: EnemyIndex.java, EnemyDataParser.java, B2_3Tree.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Inverted index from the values of one enemy attribute (area, type, a weakness, ...) to the
+ * enemies that have them. Each value maps to a B2_3Tree of its enemies under their usual "NAME -
+ * AREA" keys, so the enemies of a value come back in the same order as in the main tree, and an
+ * enemy can be added or removed in O(log n). Values are matched ignoring case.
+ *
+ * @author fvanorde
+ *
+ */
+public class EnemyIndex {
+  private final Function<Enemy, Collection<String>> attribute;
+  private HashMap<String, B2_3Tree<String, Enemy>> postings;
+
+  /**
+   * Constructor for an EnemyIndex
+   *
+   * @param attribute - function giving the values of the indexed attribute for an enemy
+   */
+  public EnemyIndex(Function<Enemy, Collection<String>> attribute) {
+    this.attribute = attribute;
+    postings = new HashMap<String, B2_3Tree<String, Enemy>>();
+  }
+
+  /**
+   * @return an index on Enemy.getName()
+   */
+  public static EnemyIndex byName() {
+    return new EnemyIndex(enemy -> Collections.singleton(enemy.getName()));
+  }
+
+  /**
+   * @return an index on Enemy.getArea()
+   */
+  public static EnemyIndex byArea() {
+    return new EnemyIndex(enemy -> Collections.singleton(enemy.getArea()));
+  }
+
+  /**
+   * @return an index on Enemy.getType()
+   */
+  public static EnemyIndex byType() {
+    return new EnemyIndex(enemy -> Collections.singleton(enemy.getType()));
+  }
+
+  /**
+   * @return an index on Enemy.getWeaknesses()
+   */
+  public static EnemyIndex byWeakness() {
+    return new EnemyIndex(Enemy::getWeaknesses);
+  }
+
+  /**
+   * @return an index on Enemy.getResistances()
+   */
+  public static EnemyIndex byResistance() {
+    return new EnemyIndex(Enemy::getResistances);
+  }
+
+  /**
+   * @return an index on Enemy.getImmunities()
+   */
+  public static EnemyIndex byImmunity() {
+    return new EnemyIndex(Enemy::getImmunities);
+  }
+
+  /**
+   * Replaces the contents of the index with the enemies of the given tree. The tree is walked in
+   * key order, so every posting tree is bulk-built from already sorted entries.
+   *
+   * @param tree - tree of all enemies
+   */
+  public void rebuild(B2_3Tree<String, Enemy> tree) {
+    HashMap<String, ArrayList<InnerNode<String, Enemy>>> lists =
+        new HashMap<String, ArrayList<InnerNode<String, Enemy>>>();
+    for (Enemy enemy : tree) {
+      for (String value : attribute.apply(enemy)) {
+        lists.computeIfAbsent(normalize(value), v -> new ArrayList<InnerNode<String, Enemy>>())
+            .add(new InnerNode<String, Enemy>(enemy.getKey(), enemy));
+      }
+    }
+    postings = new HashMap<String, B2_3Tree<String, Enemy>>();
+    try {
+      for (String value : lists.keySet()) {
+        postings.put(value, new B2_3Tree<String, Enemy>(lists.get(value)));
+      }
+    } catch (IllegalKeyException e) { // Keys come from a tree, so none are null
+      System.out.println(e.getMessage());
+    }
+  }
+
+  /**
+   * Adds an enemy under each of its values
+   *
+   * @param enemy - enemy to add
+   * @throws IllegalKeyException
+   */
+  public void add(Enemy enemy) throws IllegalKeyException {
+    for (String value : attribute.apply(enemy)) {
+      postings.computeIfAbsent(normalize(value), v -> new B2_3Tree<String, Enemy>())
+          .insert(enemy.getKey(), enemy);
+    }
+  }
+
+  /**
+   * Removes an enemy from under each of its values. Values left without enemies are dropped.
+   *
+   * @param enemy - enemy to remove
+   */
+  public void remove(Enemy enemy) {
+    for (String value : attribute.apply(enemy)) {
+      String normalized = normalize(value);
+      B2_3Tree<String, Enemy> posting = postings.get(normalized);
+      if (posting != null) {
+        posting.remove(enemy.getKey());
+        if (posting.isEmpty()) {
+          postings.remove(normalized);
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes every enemy from the index
+   */
+  public void clear() {
+    postings.clear();
+  }
+
+  /**
+   * @param value - attribute value, any case
+   * @return the enemies with the given value in key order, empty if there are none
+   */
+  public ArrayList<Enemy> get(String value) {
+    B2_3Tree<String, Enemy> posting = posting(value);
+    return (posting == null) ? new ArrayList<Enemy>() : posting.traverse();
+  }
+
+  /**
+   * @param value - attribute value, any case
+   * @return the first enemy in key order with the given value, else null
+   */
+  public Enemy first(String value) {
+    B2_3Tree<String, Enemy> posting = posting(value);
+    return (posting == null) ? null : posting.iterator().next(); // Empty postings are dropped
+  }
+
+  /**
+   * @param value - attribute value, any case
+   * @return the number of enemies with the given value
+   */
+  public int count(String value) {
+    B2_3Tree<String, Enemy> posting = posting(value);
+    return (posting == null) ? 0 : posting.size();
+  }
+
+  /**
+   * @param value - attribute value, any case
+   * @param enemy - enemy to look for
+   * @return true if the enemy is indexed under the given value, else false
+   */
+  public boolean contains(String value, Enemy enemy) {
+    B2_3Tree<String, Enemy> posting = posting(value);
+    return posting != null && posting.get(enemy.getKey()) != null;
+  }
+
+  /**
+   * @return the indexed values, upper case
+   */
+  public Set<String> values() {
+    return Collections.unmodifiableSet(postings.keySet());
+  }
+
+  /**
+   * @param value - attribute value, any case
+   * @return the tree of enemies with the given value, else null
+   */
+  B2_3Tree<String, Enemy> posting(String value) {
+    return (value == null) ? null : postings.get(normalize(value));
+  }
+
+  /**
+   * @param value - attribute value
+   * @return the form values are stored under
+   */
+  private static String normalize(String value) {
+    return value.toUpperCase();
+  }
+
+  /**
+   * Compares an indexed filter against a full traverse-and-filter on the enemy CSV.
+   *
+   * @param args - optional path of the CSV, defaults to EnemiesCSV.csv
+   */
+  public static void main(String[] args) {
+    EnemyDataParser parser = new EnemyDataParser();
+    parser.parseCSV(new File((args.length > 0) ? args[0] : "EnemiesCSV.csv"));
+    ArrayList<Enemy> indexed = parser.filter("Irithyll Dungeon", null, "Fire", null, null);
+    for (Enemy enemy : indexed) {
+      System.out.println(enemy);
+    }
+    int rounds = 100000;
+    for (int round = 0; round < 3; round++) { // First rounds warm up the JIT
+      long start = System.nanoTime();
+      int found = 0;
+      for (int i = 0; i < rounds; i++) {
+        found += parser.filter("Irithyll Dungeon", null, "Fire", null, null).size();
+      }
+      long indexedNanos = (System.nanoTime() - start) / rounds;
+      start = System.nanoTime();
+      for (int i = 0; i < rounds; i++) {
+        for (Enemy enemy : parser.getTree().traverse()) {
+          if (enemy.getArea().equals("Irithyll Dungeon")
+              && enemy.getWeaknesses().contains("Fire")) {
+            found++;
+          }
+        }
+      }
+      long scanNanos = (System.nanoTime() - start) / rounds;
+      System.out.println("Round " + round + ": weak to Fire in Irithyll Dungeon, index "
+          + indexedNanos + " ns, traverse and filter " + scanNanos + " ns (" + found + " hits)");
+    }
+  }
+}
@@ -0,0 +1,466 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: EnemySnapshot
+// Files: EnemySnapshot.java, EnemyDataParser.java, Enemy.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Compact binary snapshot of a parsed enemy tree and its area, weakness, resistance and immunity
+ * lists, so a process can start without parsing the CSV again.
+ *
+ * Layout (all counts, ids and lengths are unsigned varints):
+ *    "DS3S", version
+ *    string dictionary: count, then length and UTF-8 bytes of each string
+ *    areas, weaknesses, resistances, immunities: count, then dictionary ids
+ *    enemies in key order: count, then for each enemy the ids of its name, area and type, its
+ *      weakness, resistance and immunity id lists, and its HP and souls
+ *    CRC32 of everything before it, 4 bytes big-endian
+ * HP and souls are stored as the number plus one, so Enemy.UNKNOWN is stored as 0.
+ *
+ * Since the enemies are stored in key order, loading them back runs the bulk loader of B2_3Tree
+ * without sorting.
+ *
+ * @author fvanorde
+ *
+ */
+public class EnemySnapshot {
+  private static final byte[] MAGIC = {'D', 'S', '3', 'S'};
+  private static final int VERSION = 2; // 1 stored HP and souls as strings
+
+  private ArrayList<String> areas;
+  private ArrayList<String> weaknesses;
+  private ArrayList<String> resistances;
+  private ArrayList<String> immunities;
+  private ArrayList<InnerNode<String, Enemy>> entries;
+
+  /**
+   * Constructor for an EnemySnapshot read from a file
+   */
+  private EnemySnapshot() {
+  }
+
+  /**
+   * @return the areas in the order they first appeared in the CSV
+   */
+  public ArrayList<String> getAreas() {
+    return areas;
+  }
+
+  /**
+   * @return the distinct enemy weaknesses
+   */
+  public ArrayList<String> getWeaknesses() {
+    return weaknesses;
+  }
+
+  /**
+   * @return the distinct enemy resistances
+   */
+  public ArrayList<String> getResistances() {
+    return resistances;
+  }
+
+  /**
+   * @return the distinct enemy immunities
+   */
+  public ArrayList<String> getImmunities() {
+    return immunities;
+  }
+
+  /**
+   * @return the enemies keyed for the tree, in ascending key order
+   */
+  public ArrayList<InnerNode<String, Enemy>> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Writes a snapshot of an enemy tree and its side lists to a file
+   *
+   * @param file        - file to write
+   * @param areas       - areas in the order they first appeared
+   * @param weaknesses  - distinct enemy weaknesses
+   * @param resistances - distinct enemy resistances
+   * @param immunities  - distinct enemy immunities
+   * @param tree        - tree of enemies
+   * @throws IOException
+   */
+  public static void write(File file, Collection<String> areas, Collection<String> weaknesses,
+      Collection<String> resistances, Collection<String> immunities, B2_3Tree<String, Enemy> tree)
+      throws IOException {
+    // First pass: give every distinct string an id
+    HashMap<String, Integer> ids = new HashMap<String, Integer>();
+    ArrayList<String> dictionary = new ArrayList<String>();
+    addStrings(areas, ids, dictionary);
+    addStrings(weaknesses, ids, dictionary);
+    addStrings(resistances, ids, dictionary);
+    addStrings(immunities, ids, dictionary);
+    for (Enemy enemy : tree) {
+      addString(enemy.getName(), ids, dictionary);
+      addString(enemy.getArea(), ids, dictionary);
+      addString(enemy.getType(), ids, dictionary);
+      addStrings(enemy.getWeaknesses(), ids, dictionary);
+      addStrings(enemy.getResistances(), ids, dictionary);
+      addStrings(enemy.getImmunities(), ids, dictionary);
+    }
+    // Second pass: encode
+    Encoder out = new Encoder();
+    out.writeBytes(MAGIC);
+    out.writeVarint(VERSION);
+    out.writeVarint(dictionary.size());
+    for (String str : dictionary) {
+      byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+      out.writeVarint(bytes.length);
+      out.writeBytes(bytes);
+    }
+    writeIds(out, areas, ids);
+    writeIds(out, sorted(weaknesses), ids);
+    writeIds(out, sorted(resistances), ids);
+    writeIds(out, sorted(immunities), ids);
+    out.writeVarint(tree.size());
+    for (Enemy enemy : tree) {
+      out.writeVarint(ids.get(enemy.getName()));
+      out.writeVarint(ids.get(enemy.getArea()));
+      out.writeVarint(ids.get(enemy.getType()));
+      writeIds(out, sorted(enemy.getWeaknesses()), ids);
+      writeIds(out, sorted(enemy.getResistances()), ids);
+      writeIds(out, sorted(enemy.getImmunities()), ids);
+      out.writeVarint(enemy.getHP() + 1);
+      out.writeVarint(enemy.getSouls() + 1);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(out.bytes, 0, out.length);
+    long checksum = crc.getValue();
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      out.writeByte((int) (checksum >>> shift));
+    }
+    FileOutputStream stream = new FileOutputStream(file);
+    try {
+      stream.write(out.bytes, 0, out.length);
+    } finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Checks whether a file starts like a snapshot, without reading the rest of it
+   *
+   * @param file - file to check
+   * @return true if the file starts with the snapshot magic bytes, else false
+   * @throws IOException if the file cannot be read
+   */
+  public static boolean isSnapshot(File file) throws IOException {
+    byte[] start = new byte[MAGIC.length];
+    FileInputStream stream = new FileInputStream(file);
+    try {
+      return stream.readNBytes(start, 0, start.length) == start.length
+          && Arrays.equals(start, MAGIC);
+    } finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Reads a snapshot written by write()
+   *
+   * @param file        - snapshot file
+   * @param damageTypes - registry to store the damage types of the enemies in
+   * @return the contents of the snapshot
+   * @throws IOException if the file cannot be read or is not a valid snapshot
+   */
+  public static EnemySnapshot read(File file, DamageTypes damageTypes) throws IOException {
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    if (bytes.length < MAGIC.length + 4
+        || !Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC)) {
+      throw new IOException(file.getName() + " is not an enemy snapshot.");
+    }
+    int end = bytes.length - 4;
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, end);
+    long checksum = 0;
+    for (int i = end; i < bytes.length; i++) {
+      checksum = (checksum << 8) | (bytes[i] & 0xFF);
+    }
+    if (crc.getValue() != checksum) {
+      throw new IOException(file.getName() + " is corrupt.");
+    }
+    Decoder in = new Decoder(bytes, MAGIC.length, end);
+    int version = in.readVarint();
+    if (version != VERSION) {
+      throw new IOException(file.getName() + " has unsupported snapshot version " + version + ".");
+    }
+    String[] dictionary = new String[in.readVarint()];
+    for (int i = 0; i < dictionary.length; i++) {
+      int length = in.readVarint();
+      dictionary[i] = new String(bytes, in.take(length), length, StandardCharsets.UTF_8);
+    }
+    EnemySnapshot snapshot = new EnemySnapshot();
+    snapshot.areas = readStrings(in, dictionary, new ArrayList<String>());
+    snapshot.weaknesses = readStrings(in, dictionary, new ArrayList<String>());
+    snapshot.resistances = readStrings(in, dictionary, new ArrayList<String>());
+    snapshot.immunities = readStrings(in, dictionary, new ArrayList<String>());
+    int count = in.readVarint();
+    snapshot.entries = new ArrayList<InnerNode<String, Enemy>>(count);
+    for (int i = 0; i < count; i++) {
+      String name = dictionary[in.readVarint()];
+      String area = dictionary[in.readVarint()];
+      String type = dictionary[in.readVarint()];
+      HashSet<String> weaknesses = readStrings(in, dictionary, new HashSet<String>());
+      HashSet<String> resistances = readStrings(in, dictionary, new HashSet<String>());
+      HashSet<String> immunities = readStrings(in, dictionary, new HashSet<String>());
+      int hp = in.readVarint() - 1;
+      int souls = in.readVarint() - 1;
+      Enemy enemy = new Enemy(name, area, type, weaknesses, resistances, immunities, hp, souls,
+          damageTypes);
+      snapshot.entries.add(new InnerNode<String, Enemy>(enemy.getKey(), enemy));
+    }
+    if (in.pos != end) {
+      throw new IOException(file.getName() + " is corrupt.");
+    }
+    return snapshot;
+  }
+
+  /**
+   * Gives a string a dictionary id if it does not have one yet
+   *
+   * @param str        - string to add
+   * @param ids        - ids of the strings added so far
+   * @param dictionary - strings in id order
+   */
+  private static void addString(String str, HashMap<String, Integer> ids,
+      ArrayList<String> dictionary) {
+    if (!ids.containsKey(str)) {
+      ids.put(str, dictionary.size());
+      dictionary.add(str);
+    }
+  }
+
+  /**
+   * Gives every string of a collection a dictionary id if it does not have one yet
+   *
+   * @param strs       - strings to add
+   * @param ids        - ids of the strings added so far
+   * @param dictionary - strings in id order
+   */
+  private static void addStrings(Collection<String> strs, HashMap<String, Integer> ids,
+      ArrayList<String> dictionary) {
+    for (String str : strs) {
+      addString(str, ids, dictionary);
+    }
+  }
+
+  /**
+   * @param strs - strings to sort
+   * @return a sorted copy of strs, so snapshots of the same data are identical
+   */
+  private static ArrayList<String> sorted(Collection<String> strs) {
+    ArrayList<String> list = new ArrayList<String>(strs);
+    list.sort(null);
+    return list;
+  }
+
+  /**
+   * Writes a count followed by the dictionary id of each string
+   *
+   * @param out  - encoder to write to
+   * @param strs - strings to write
+   * @param ids  - dictionary ids
+   */
+  private static void writeIds(Encoder out, Collection<String> strs, HashMap<String, Integer> ids) {
+    out.writeVarint(strs.size());
+    for (String str : strs) {
+      out.writeVarint(ids.get(str));
+    }
+  }
+
+  /**
+   * Reads a count followed by that many dictionary ids
+   *
+   * @param in         - decoder to read from
+   * @param dictionary - strings by id
+   * @param out        - collection to add the strings to
+   * @return out
+   * @throws IOException
+   */
+  private static <C extends Collection<String>> C readStrings(Decoder in, String[] dictionary,
+      C out) throws IOException {
+    int count = in.readVarint();
+    for (int i = 0; i < count; i++) {
+      out.add(dictionary[in.readVarint()]);
+    }
+    return out;
+  }
+
+  /**
+   * Growable byte buffer with varint encoding
+   *
+   * @author fvanorde
+   *
+   */
+  private static class Encoder {
+    private byte[] bytes = new byte[4096];
+    private int length = 0;
+
+    /**
+     * @param b - byte to append
+     */
+    private void writeByte(int b) {
+      if (length == bytes.length) {
+        bytes = Arrays.copyOf(bytes, length * 2);
+      }
+      bytes[length++] = (byte) b;
+    }
+
+    /**
+     * @param src - bytes to append
+     */
+    private void writeBytes(byte[] src) {
+      if (length + src.length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(length * 2, length + src.length));
+      }
+      System.arraycopy(src, 0, bytes, length, src.length);
+      length += src.length;
+    }
+
+    /**
+     * Appends a non-negative int, 7 bits per byte, low bits first
+     *
+     * @param value - value to append
+     */
+    private void writeVarint(int value) {
+      while ((value & ~0x7F) != 0) {
+        writeByte((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      writeByte(value);
+    }
+  }
+
+  /**
+   * Reader over the bytes of a snapshot
+   *
+   * @author fvanorde
+   *
+   */
+  private static class Decoder {
+    private final byte[] bytes;
+    private final int end;
+    private int pos;
+
+    /**
+     * @param bytes - snapshot bytes
+     * @param pos   - offset to start reading at
+     * @param end   - offset to stop reading at
+     */
+    private Decoder(byte[] bytes, int pos, int end) {
+      this.bytes = bytes;
+      this.pos = pos;
+      this.end = end;
+    }
+
+    /**
+     * @return the next varint
+     * @throws IOException if the snapshot ends in the middle of the varint
+     */
+    private int readVarint() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        if (pos == end) {
+          throw new IOException("Snapshot ends too early.");
+        }
+        byte b = bytes[pos++];
+        value |= (b & 0x7F) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw new IOException("Snapshot varint is too long.");
+    }
+
+    /**
+     * Skips over bytes
+     *
+     * @param length - number of bytes to skip
+     * @return offset of the first skipped byte
+     * @throws IOException if fewer than length bytes are left
+     */
+    private int take(int length) throws IOException {
+      if (length > end - pos) {
+        throw new IOException("Snapshot ends too early.");
+      }
+      int start = pos;
+      pos += length;
+      return start;
+    }
+  }
+
+  /**
+   * Compares cold-loading the enemy data from the CSV against loading it from a snapshot.
+   *
+   * @param args - optional path of the CSV, defaults to EnemiesCSV.csv
+   */
+  public static void main(String[] args) {
+    File csv = new File((args.length > 0) ? args[0] : "EnemiesCSV.csv");
+    try {
+      File snapshotFile = File.createTempFile("enemies", ".ds3s");
+      snapshotFile.deleteOnExit();
+      // First load of each kind in this JVM, as at process start
+      long start = System.nanoTime();
+      EnemyDataParser fromCsv = new EnemyDataParser();
+      fromCsv.parseCSV(csv);
+      long csvMicros = (System.nanoTime() - start) / 1000;
+      fromCsv.writeSnapshot(snapshotFile);
+      System.out.println("CSV: " + csv.length() + " bytes, snapshot: " + snapshotFile.length()
+          + " bytes, " + fromCsv.getTree().size() + " enemies");
+      start = System.nanoTime();
+      EnemyDataParser fromSnapshot = new EnemyDataParser();
+      fromSnapshot.loadSnapshot(snapshotFile);
+      long snapshotMicros = (System.nanoTime() - start) / 1000;
+      System.out.println("Cold load: parseCSV " + csvMicros + " us, loadSnapshot "
+          + snapshotMicros + " us");
+      for (int round = 0; round < 200; round++) { // Warm up the JIT
+        new EnemyDataParser().parseCSV(csv);
+        new EnemyDataParser().loadSnapshot(snapshotFile);
+      }
+      start = System.nanoTime();
+      new EnemyDataParser().parseCSV(csv);
+      csvMicros = (System.nanoTime() - start) / 1000;
+      start = System.nanoTime();
+      new EnemyDataParser().loadSnapshot(snapshotFile);
+      snapshotMicros = (System.nanoTime() - start) / 1000;
+      System.out.println("Warm load: parseCSV " + csvMicros + " us, loadSnapshot "
+          + snapshotMicros + " us");
+      Iterator<Enemy> a = fromCsv.getTree().iterator();
+      Iterator<Enemy> b = fromSnapshot.getTree().iterator();
+      boolean same = fromCsv.getAreaList().equals(fromSnapshot.getAreaList());
+      while (same && a.hasNext() && b.hasNext()) {
+        Enemy x = a.next();
+        Enemy y = b.next();
+        same = x.getKey().equals(y.getKey()) && x.getType().equals(y.getType())
+            && x.getWeaknesses().equals(y.getWeaknesses()) && x.getHP() == y.getHP()
+            && x.getSouls() == y.getSouls();
+      }
+      System.out.println("Snapshot matches CSV: " + (same && !a.hasNext() && !b.hasNext()));
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
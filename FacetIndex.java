@@ -0,0 +1,358 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PrimitiveIterator;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: FacetIndex
+// Files: FacetIndex.java, RoaringBitmap.java, EnemyDataParser.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Bitmap index for faceted filtering of enemies. Every enemy gets a dense int id, and every
+ * value of every facet (area, type, weakness, resistance, immunity) maps to a RoaringBitmap of
+ * the ids of the enemies that have it. Combining checkboxes is then a matter of RoaringBitmap.and,
+ * or and andNot, and enemies() turns the result back into enemies in key order.
+ *
+ * rebuild() hands out ids in key order, so results are already sorted. An enemy added under the
+ * key of an enemy that is or was in the index takes that enemy's id; other enemies added
+ * afterwards take the next free id, and results are only sorted again if one of them broke the
+ * key order. compact() numbers the enemies again after a batch of changes.
+ *
+ * @author fvanorde
+ *
+ */
+public class FacetIndex {
+
+  /**
+   * Enemy attributes that can be filtered on
+   *
+   * @author fvanorde
+   *
+   */
+  public enum Facet {
+    AREA, TYPE, WEAKNESS, RESISTANCE, IMMUNITY;
+
+    /**
+     * @param enemy - enemy to read
+     * @return the values of this facet for the enemy
+     */
+    private Collection<String> values(Enemy enemy) {
+      switch (this) {
+        case AREA:
+          return Collections.singleton(enemy.getArea());
+        case TYPE:
+          return Collections.singleton(enemy.getType());
+        case WEAKNESS:
+          return enemy.getWeaknesses();
+        case RESISTANCE:
+          return enemy.getResistances();
+        default:
+          return enemy.getImmunities();
+      }
+    }
+  }
+
+  private EnumMap<Facet, HashMap<String, RoaringBitmap>> bitmaps;
+  private HashMap<String, Integer> ids; // enemy key -> id
+  private HashMap<String, Integer> freedIds; // key of a removed enemy -> its unused id
+  private Enemy[] enemies; // id -> enemy, null for a removed enemy
+  private int nextId;
+  private String lastKey; // key given id nextId - 1, even if that enemy was removed
+  private RoaringBitmap all; // ids of every enemy in the index
+  private boolean keyOrdered; // true if ids increase with the enemy keys
+
+  /**
+   * Constructor for an empty FacetIndex
+   */
+  public FacetIndex() {
+    clear();
+  }
+
+  /**
+   * Removes every enemy from the index
+   */
+  public void clear() {
+    bitmaps = new EnumMap<Facet, HashMap<String, RoaringBitmap>>(Facet.class);
+    for (Facet facet : Facet.values()) {
+      bitmaps.put(facet, new HashMap<String, RoaringBitmap>());
+    }
+    ids = new HashMap<String, Integer>();
+    freedIds = new HashMap<String, Integer>();
+    enemies = new Enemy[16];
+    nextId = 0;
+    lastKey = null;
+    all = new RoaringBitmap();
+    keyOrdered = true;
+  }
+
+  /**
+   * Replaces the contents of the index with the enemies of the given tree, numbering them from 0
+   * in key order.
+   *
+   * @param tree - tree of all enemies
+   */
+  public void rebuild(B2_3Tree<String, Enemy> tree) {
+    clear();
+    enemies = new Enemy[Math.max(16, tree.size())];
+    for (Enemy enemy : tree) { // Ids are handed out in increasing order, so adds are appends
+      add(enemy);
+    }
+  }
+
+  /**
+   * Adds an enemy under the next free id. An enemy already in the index under the same key is
+   * replaced. An enemy whose key had an id before takes that id again, which keeps the ids in key
+   * order when an enemy is swapped for a new version.
+   *
+   * @param enemy - enemy to add
+   */
+  public void add(Enemy enemy) {
+    remove(enemy.getKey());
+    Integer freed = freedIds.remove(enemy.getKey());
+    if (freed != null) {
+      put(freed, enemy);
+      return;
+    }
+    if (nextId == enemies.length) {
+      enemies = Arrays.copyOf(enemies, nextId * 2);
+    }
+    if (lastKey != null && keyOrdered) {
+      keyOrdered = lastKey.compareTo(enemy.getKey()) < 0;
+    }
+    lastKey = enemy.getKey();
+    put(nextId++, enemy);
+  }
+
+  /**
+   * Numbers the enemies again from 0 in key order if enemies added since the last rebuild broke
+   * the key order, or if removed enemies have left more unused ids than there are enemies. Meant
+   * to be called after a batch of adds and removes, such as EnemyDataParser.applyDelta.
+   *
+   * @param tree - tree of all enemies, the same ones as in the index
+   * @return true if the enemies were numbered again, else false
+   */
+  public boolean compact(B2_3Tree<String, Enemy> tree) {
+    if (keyOrdered && nextId - ids.size() <= ids.size()) {
+      return false;
+    }
+    rebuild(tree);
+    return true;
+  }
+
+  /**
+   * Removes the enemy with the given key. Its id is only reused by an enemy with the same key,
+   * until the next rebuild or compact.
+   *
+   * @param key - key of the enemy to remove
+   * @return true if an enemy was removed, else false
+   */
+  public boolean remove(String key) {
+    Integer id = ids.remove(key);
+    if (id == null) {
+      return false;
+    }
+    Enemy enemy = enemies[id];
+    enemies[id] = null;
+    freedIds.put(key, id);
+    all.remove(id);
+    for (Facet facet : Facet.values()) {
+      HashMap<String, RoaringBitmap> facetBitmaps = bitmaps.get(facet);
+      for (String value : facet.values(enemy)) {
+        String normalized = normalize(value);
+        RoaringBitmap bitmap = facetBitmaps.get(normalized);
+        if (bitmap != null) {
+          bitmap.remove(id);
+          if (bitmap.isEmpty()) {
+            facetBitmaps.remove(normalized);
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the number of enemies in the index
+   */
+  public int size() {
+    return ids.size();
+  }
+
+  /**
+   * @return true if the ids increase with the enemy keys, so enemies() needs no sort, else false
+   */
+  public boolean isKeyOrdered() {
+    return keyOrdered;
+  }
+
+  /**
+   * @return a bitmap of every enemy in the index
+   */
+  public RoaringBitmap all() {
+    return all.copy();
+  }
+
+  /**
+   * @param facet - facet to look in
+   * @param value - facet value, any case
+   * @return a bitmap of the enemies with the value, empty if there are none
+   */
+  public RoaringBitmap bitmap(Facet facet, String value) {
+    RoaringBitmap bitmap = (value == null) ? null : bitmaps.get(facet).get(normalize(value));
+    return (bitmap == null) ? new RoaringBitmap() : bitmap.copy();
+  }
+
+  /**
+   * @param facet  - facet to look in
+   * @param values - facet values, any case
+   * @return a bitmap of the enemies with at least one of the values
+   */
+  public RoaringBitmap anyOf(Facet facet, Collection<String> values) {
+    RoaringBitmap result = new RoaringBitmap();
+    for (String value : values) {
+      RoaringBitmap bitmap = bitmaps.get(facet).get(normalize(value));
+      if (bitmap != null) {
+        result = RoaringBitmap.or(result, bitmap);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param facet  - facet to look in
+   * @param values - facet values, any case
+   * @return a bitmap of the enemies with every one of the values
+   */
+  public RoaringBitmap allOf(Facet facet, Collection<String> values) {
+    RoaringBitmap result = all;
+    for (String value : values) {
+      RoaringBitmap bitmap = bitmaps.get(facet).get(normalize(value));
+      if (bitmap == null) {
+        return new RoaringBitmap();
+      }
+      result = RoaringBitmap.and(result, bitmap);
+    }
+    return (result == all) ? all() : result;
+  }
+
+  /**
+   * @param bitmap - bitmap of enemies
+   * @return a bitmap of the enemies in the index that are not in the given bitmap
+   */
+  public RoaringBitmap not(RoaringBitmap bitmap) {
+    return RoaringBitmap.andNot(all, bitmap);
+  }
+
+  /**
+   * @param facet - facet to list
+   * @return the values of the facet that at least one enemy has, upper case
+   */
+  public HashSet<String> values(Facet facet) {
+    return new HashSet<String>(bitmaps.get(facet).keySet());
+  }
+
+  /**
+   * @param bitmap - bitmap of enemies, such as the result of combining facet bitmaps
+   * @return the enemies in the bitmap, in key order
+   */
+  public ArrayList<Enemy> enemies(RoaringBitmap bitmap) {
+    ArrayList<Enemy> result = new ArrayList<Enemy>();
+    PrimitiveIterator.OfInt iterator = bitmap.iterator();
+    while (iterator.hasNext()) {
+      int id = iterator.nextInt();
+      if (id < nextId && enemies[id] != null) {
+        result.add(enemies[id]);
+      }
+    }
+    if (!keyOrdered) {
+      result.sort(Comparator.comparing(Enemy::getKey));
+    }
+    return result;
+  }
+
+  /**
+   * Stores an enemy under an id and adds the id to the bitmaps of its values
+   *
+   * @param id    - free id, below nextId
+   * @param enemy - enemy to store
+   */
+  private void put(int id, Enemy enemy) {
+    enemies[id] = enemy;
+    ids.put(enemy.getKey(), id);
+    all.add(id);
+    for (Facet facet : Facet.values()) {
+      HashMap<String, RoaringBitmap> facetBitmaps = bitmaps.get(facet);
+      for (String value : facet.values(enemy)) {
+        facetBitmaps.computeIfAbsent(normalize(value), v -> new RoaringBitmap()).add(id);
+      }
+    }
+  }
+
+  /**
+   * @param value - facet value
+   * @return the form values are stored under
+   */
+  private static String normalize(String value) {
+    return value.toUpperCase();
+  }
+
+  /**
+   * Times a faceted query on a generated export of many enemies, against checking each enemy in
+   * turn.
+   *
+   * @param args - optional number of copies of the CSV rows, defaults to 500
+   */
+  public static void main(String[] args) {
+    int copies = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+    EnemyDataParser parser = new EnemyDataParser();
+    try {
+      parser.parseCSV(EnemyCSVGenerator.write(EnemyCSVGenerator.lines(copies)));
+    } catch (IOException e) {
+      e.printStackTrace();
+      return;
+    }
+    B2_3Tree<String, Enemy> tree = parser.getTree();
+    FacetIndex index = parser.getFacetIndex();
+    ArrayList<String> areas = new ArrayList<String>(
+        Arrays.asList("Irithyll Dungeon", "Cathedral of the Deep", "Undead Settlement"));
+    HashSet<String> areaSet = new HashSet<String>(areas);
+    System.out.println(index.size() + " enemies; (" + String.join(" OR ", areas)
+        + ") AND weak to Fire AND NOT immune to Bleed");
+    int rounds = 20;
+    for (int round = 0; round < 3; round++) { // First rounds warm up the JIT
+      long start = System.nanoTime();
+      int found = 0;
+      for (int i = 0; i < rounds; i++) {
+        RoaringBitmap result = RoaringBitmap.and(index.anyOf(Facet.AREA, areas),
+            index.bitmap(Facet.WEAKNESS, "Fire"));
+        result = RoaringBitmap.andNot(result, index.bitmap(Facet.IMMUNITY, "Bleed"));
+        found += index.enemies(result).size();
+      }
+      long bitmapMicros = (System.nanoTime() - start) / rounds / 1000;
+      start = System.nanoTime();
+      for (int i = 0; i < rounds; i++) {
+        for (Enemy enemy : tree) {
+          if (areaSet.contains(enemy.getArea()) && enemy.isWeakTo("Fire")
+              && !enemy.isImmuneTo("Bleed")) {
+            found++;
+          }
+        }
+      }
+      long scanMicros = (System.nanoTime() - start) / rounds / 1000;
+      System.out.println("Round " + round + ": bitmaps " + bitmapMicros + " us, scan "
+          + scanMicros + " us (" + found + " hits)");
+    }
+  }
+}
@@ -0,0 +1,338 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.function.Function;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: IntB2_3Tree
+// Files: IntB2_3Tree.java, PrimitiveB2_3Tree.java, InnerNode.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * 2-3 tree with primitive int keys, laid out like ArrayB2_3Tree. Keys live in an int[] with two
+ * slots per node and are compared directly, so no Integer objects are created or compared on
+ * insert or lookup. The node arrays and the tree algorithms are shared with LongB2_3Tree through
+ * PrimitiveB2_3Tree.
+ *
+ * Methods that hand out entries (the floor/ceiling methods and entryIterator) box the key into a
+ * new InnerNode; use get, range, iterator and keyIterator on hot paths.
+ *
+ * @author fvanorde
+ *
+ * @param <V>
+ */
+public class IntB2_3Tree<V> extends PrimitiveB2_3Tree<Integer, V> {
+  private int[] keys; // keys[2 * id] is the left key, keys[2 * id + 1] the right key
+
+  /**
+   * Constructor for an IntB2_3Tree
+   */
+  public IntB2_3Tree() {
+    this(16);
+  }
+
+  /**
+   * Constructor for an IntB2_3Tree with room for the given number of nodes
+   *
+   * @param capacity - number of nodes to allocate up front
+   */
+  private IntB2_3Tree(int capacity) {
+    super(capacity);
+    keys = new int[2 * capacity];
+  }
+
+  /**
+   * Bulk-load constructor for an IntB2_3Tree. Builds a balanced tree from parallel lists of keys
+   * and values in O(n) after sorting. As with insert, only the first value for a duplicate key is
+   * kept.
+   *
+   * @param entryKeys   - keys to load, in any order
+   * @param entryValues - entryValues.get(i) is the value for entryKeys[i]
+   */
+  public IntB2_3Tree(int[] entryKeys, List<V> entryValues) {
+    this(Math.max(16, entryKeys.length));
+    if (entryKeys.length != entryValues.size()) {
+      throw new java.lang.IllegalArgumentException("Key and value counts differ.");
+    }
+    load(sortedOrder(entryKeys), i -> entryKeys[i], entryValues);
+  }
+
+  /**
+   * Sorts the positions of the given keys by key without boxing. Each key is packed with its
+   * position into one long, so sorting the longs orders by key first and keeps equal keys in
+   * input order.
+   *
+   * @param entryKeys - keys to sort
+   * @return positions of the keys in ascending key order
+   */
+  private static int[] sortedOrder(int[] entryKeys) {
+    long[] packed = new long[entryKeys.length];
+    for (int i = 0; i < entryKeys.length; i++) {
+      packed[i] = ((long) entryKeys[i] << 32) | i;
+    }
+    Arrays.sort(packed);
+    int[] order = new int[entryKeys.length];
+    for (int i = 0; i < packed.length; i++) {
+      order[i] = (int) packed[i];
+    }
+    return order;
+  }
+
+  @Override
+  protected long keyAt(int slot) {
+    return keys[slot];
+  }
+
+  @Override
+  protected void setKey(int slot, long key) {
+    keys[slot] = (int) key;
+  }
+
+  @Override
+  protected Integer boxedKey(int slot) {
+    return keys[slot];
+  }
+
+  @Override
+  protected void growKeys(int slots) {
+    keys = Arrays.copyOf(keys, slots);
+  }
+
+  /**
+   * Inserts the given key and value into the tree. If the key is already present the tree is left
+   * unchanged.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   */
+  public void insert(int key, V value) {
+    putKey(key, value, false);
+  }
+
+  /**
+   * Inserts the given key and value into the tree, replacing the value if the key is already
+   * present.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @return the previous value stored under key, else null
+   */
+  public V put(int key, V value) {
+    return putKey(key, value, true);
+  }
+
+  /**
+   * Inserts the given key and value into the tree only if the key is not already present.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @return the value already stored under key, else null
+   */
+  public V putIfAbsent(int key, V value) {
+    return putKey(key, value, false);
+  }
+
+  /**
+   * Computes a new value for the given key from its current value (null if absent) and stores it,
+   * all in one descent of the tree. If the function returns null the key is removed, or not
+   * inserted if it was absent. The function takes only the value so the key is never boxed.
+   *
+   * @param key       - Key to identify the node
+   * @param remapping - function from the current value to the new value
+   * @return the new value stored under key
+   */
+  public V compute(int key, Function<? super V, ? extends V> remapping) {
+    return computeKey(key, remapping);
+  }
+
+  /**
+   * Removes the given key from the tree, merging with or borrowing from sibling nodes on the way
+   * back up so that every leaf stays at the same depth.
+   *
+   * @param key - key to remove
+   * @return the value that was stored under key, else null
+   */
+  public V remove(int key) {
+    return removeKey(key);
+  }
+
+  /**
+   * Searches the tree for a node with the specified key
+   *
+   * @param key - key to search for
+   * @return - value of the node with specified key, else null
+   */
+  public V get(int key) {
+    return valueOf(key);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return true if the key is in the tree, else false
+   */
+  public boolean containsKey(int key) {
+    return hasKey(key);
+  }
+
+  /**
+   * Returns the values whose keys lie between from and to, in ascending key order. Only the part
+   * of the tree between the two bounds is visited.
+   *
+   * @param from          - lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return ArrayList of the values in the range
+   */
+  public ArrayList<V> range(int from, boolean fromInclusive, int to, boolean toInclusive) {
+    return rangeOf(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the key/value pairs whose keys lie between from and to,
+   * like B2_3Tree.rangeIterator.
+   *
+   * @param from          - lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return Iterator over boxed copies of the entries in the range in ascending key order
+   */
+  public Iterator<InnerNode<Integer, V>> rangeIterator(int from, boolean fromInclusive, int to,
+      boolean toInclusive) {
+    return rangeEntries(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the values whose keys lie between from and to. Unlike
+   * rangeIterator it does not box the keys or create an entry per step.
+   *
+   * @param from          - lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return Iterator over the values in the range in ascending key order
+   */
+  public Iterator<V> rangeValueIterator(int from, boolean fromInclusive, int to,
+      boolean toInclusive) {
+    return rangeValues(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return the entry with the greatest key less than or equal to key, else null
+   */
+  public InnerNode<Integer, V> floorEntry(int key) {
+    return lowerOrFloor(key, true);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return the entry with the greatest key strictly less than key, else null
+   */
+  public InnerNode<Integer, V> lowerEntry(int key) {
+    return lowerOrFloor(key, false);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return the entry with the least key greater than or equal to key, else null
+   */
+  public InnerNode<Integer, V> ceilingEntry(int key) {
+    return higherOrCeiling(key, true);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return the entry with the least key strictly greater than key, else null
+   */
+  public InnerNode<Integer, V> higherEntry(int key) {
+    return higherOrCeiling(key, false);
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the keys in the tree. Keys are returned unboxed by
+   * nextInt().
+   *
+   * @return iterator over the keys of the tree in ascending order
+   */
+  public PrimitiveIterator.OfInt keyIterator() {
+    return new PrimitiveIterator.OfInt() {
+      private final TreeIterator itr = keySlots();
+
+      @Override
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      @Override
+      public int nextInt() {
+        return keys[itr.advance()];
+      }
+    };
+  }
+
+  /**
+   * Compares heap use and lookup latency of IntB2_3Tree against a B2_3Tree with Integer keys.
+   *
+   * @param args
+   */
+  public static void main(String[] args) {
+    int n = 1000000;
+    Random rand = new Random(42);
+    int[] probes = new int[n];
+    for (int i = 0; i < n; i++) {
+      probes[i] = rand.nextInt();
+    }
+    String value = "Value";
+    try {
+      // Keys are boxed inside the loop so the B2_3Tree pays for its own Integer objects
+      long before = usedMemory();
+      B2_3Tree<Integer, String> boxed = new B2_3Tree<Integer, String>();
+      for (int key : probes) {
+        boxed.insert(key, value);
+      }
+      long boxedBytes = usedMemory() - before;
+      before = usedMemory();
+      IntB2_3Tree<String> primitive = new IntB2_3Tree<String>();
+      for (int key : probes) {
+        primitive.insert(key, value);
+      }
+      long primitiveBytes = usedMemory() - before;
+      System.out.println("Entries: " + primitive.size());
+      System.out.println("B2_3Tree<Integer, V> heap: " + boxedBytes / primitive.size()
+          + " bytes/entry");
+      System.out.println("IntB2_3Tree<V> heap:       " + primitiveBytes / primitive.size()
+          + " bytes/entry");
+      for (int round = 0; round < 3; round++) { // First rounds warm up the JIT
+        long start = System.nanoTime();
+        int found = 0;
+        for (int key : probes) {
+          if (boxed.get(key) != null) {
+            found++;
+          }
+        }
+        long boxedTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int key : probes) {
+          if (primitive.get(key) != null) {
+            found++;
+          }
+        }
+        long primitiveTime = System.nanoTime() - start;
+        System.out.println("Round " + round + ": B2_3Tree get " + boxedTime / n
+            + " ns, IntB2_3Tree get " + primitiveTime / n + " ns (" + found + " hits)");
+      }
+    } catch (IllegalKeyException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,358 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.function.Function;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: LongB2_3Tree
+// Files: LongB2_3Tree.java, PrimitiveB2_3Tree.java, InnerNode.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * 2-3 tree with primitive long keys, laid out like ArrayB2_3Tree. Keys live in a long[] with two
+ * slots per node and are compared directly, so no Long objects are created or compared on
+ * insert or lookup. The node arrays and the tree algorithms are shared with IntB2_3Tree through
+ * PrimitiveB2_3Tree.
+ *
+ * Methods that hand out entries (the floor/ceiling methods and entryIterator) box the key into a
+ * new InnerNode; use get, range, iterator and keyIterator on hot paths.
+ *
+ * @author fvanorde
+ *
+ * @param <V>
+ */
+public class LongB2_3Tree<V> extends PrimitiveB2_3Tree<Long, V> {
+  private long[] keys; // keys[2 * id] is the left key, keys[2 * id + 1] the right key
+
+  /**
+   * Constructor for a LongB2_3Tree
+   */
+  public LongB2_3Tree() {
+    this(16);
+  }
+
+  /**
+   * Constructor for a LongB2_3Tree with room for the given number of nodes
+   *
+   * @param capacity - number of nodes to allocate up front
+   */
+  private LongB2_3Tree(int capacity) {
+    super(capacity);
+    keys = new long[2 * capacity];
+  }
+
+  /**
+   * Bulk-load constructor for a LongB2_3Tree. Builds a balanced tree from parallel lists of keys
+   * and values in O(n) after sorting. As with insert, only the first value for a duplicate key is
+   * kept.
+   *
+   * @param entryKeys   - keys to load, in any order
+   * @param entryValues - entryValues.get(i) is the value for entryKeys[i]
+   */
+  public LongB2_3Tree(long[] entryKeys, List<V> entryValues) {
+    this(Math.max(16, entryKeys.length));
+    if (entryKeys.length != entryValues.size()) {
+      throw new java.lang.IllegalArgumentException("Key and value counts differ.");
+    }
+    load(sortedOrder(entryKeys), i -> entryKeys[i], entryValues);
+  }
+
+  /**
+   * Sorts the positions of the given keys by key without boxing, using a bottom-up merge sort on
+   * an int[] of positions. The merge is stable, so equal keys stay in input order.
+   *
+   * @param entryKeys - keys to sort
+   * @return positions of the keys in ascending key order
+   */
+  private static int[] sortedOrder(long[] entryKeys) {
+    int n = entryKeys.length;
+    int[] order = new int[n];
+    int[] buffer = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    for (int width = 1; width < n; width *= 2) {
+      for (int lo = 0; lo < n - width; lo += 2 * width) {
+        int mid = lo + width;
+        int hi = Math.min(lo + 2 * width, n);
+        int left = lo;
+        int right = mid;
+        int out = lo;
+        while (left < mid && right < hi) {
+          // Take from the left run on ties to keep the sort stable
+          if (entryKeys[order[right]] < entryKeys[order[left]]) {
+            buffer[out++] = order[right++];
+          } else {
+            buffer[out++] = order[left++];
+          }
+        }
+        while (left < mid) {
+          buffer[out++] = order[left++];
+        }
+        while (right < hi) {
+          buffer[out++] = order[right++];
+        }
+        System.arraycopy(buffer, lo, order, lo, hi - lo);
+      }
+    }
+    return order;
+  }
+
+  @Override
+  protected long keyAt(int slot) {
+    return keys[slot];
+  }
+
+  @Override
+  protected void setKey(int slot, long key) {
+    keys[slot] = key;
+  }
+
+  @Override
+  protected Long boxedKey(int slot) {
+    return keys[slot];
+  }
+
+  @Override
+  protected void growKeys(int slots) {
+    keys = Arrays.copyOf(keys, slots);
+  }
+
+  /**
+   * Inserts the given key and value into the tree. If the key is already present the tree is left
+   * unchanged.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   */
+  public void insert(long key, V value) {
+    putKey(key, value, false);
+  }
+
+  /**
+   * Inserts the given key and value into the tree, replacing the value if the key is already
+   * present.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @return the previous value stored under key, else null
+   */
+  public V put(long key, V value) {
+    return putKey(key, value, true);
+  }
+
+  /**
+   * Inserts the given key and value into the tree only if the key is not already present.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @return the value already stored under key, else null
+   */
+  public V putIfAbsent(long key, V value) {
+    return putKey(key, value, false);
+  }
+
+  /**
+   * Computes a new value for the given key from its current value (null if absent) and stores it,
+   * all in one descent of the tree. If the function returns null the key is removed, or not
+   * inserted if it was absent. The function takes only the value so the key is never boxed.
+   *
+   * @param key       - Key to identify the node
+   * @param remapping - function from the current value to the new value
+   * @return the new value stored under key
+   */
+  public V compute(long key, Function<? super V, ? extends V> remapping) {
+    return computeKey(key, remapping);
+  }
+
+  /**
+   * Removes the given key from the tree, merging with or borrowing from sibling nodes on the way
+   * back up so that every leaf stays at the same depth.
+   *
+   * @param key - key to remove
+   * @return the value that was stored under key, else null
+   */
+  public V remove(long key) {
+    return removeKey(key);
+  }
+
+  /**
+   * Searches the tree for a node with the specified key
+   *
+   * @param key - key to search for
+   * @return - value of the node with specified key, else null
+   */
+  public V get(long key) {
+    return valueOf(key);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return true if the key is in the tree, else false
+   */
+  public boolean containsKey(long key) {
+    return hasKey(key);
+  }
+
+  /**
+   * Returns the values whose keys lie between from and to, in ascending key order. Only the part
+   * of the tree between the two bounds is visited.
+   *
+   * @param from          - lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return ArrayList of the values in the range
+   */
+  public ArrayList<V> range(long from, boolean fromInclusive, long to, boolean toInclusive) {
+    return rangeOf(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the key/value pairs whose keys lie between from and to,
+   * like B2_3Tree.rangeIterator.
+   *
+   * @param from          - lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return Iterator over boxed copies of the entries in the range in ascending key order
+   */
+  public Iterator<InnerNode<Long, V>> rangeIterator(long from, boolean fromInclusive, long to,
+      boolean toInclusive) {
+    return rangeEntries(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the values whose keys lie between from and to. Unlike
+   * rangeIterator it does not box the keys or create an entry per step.
+   *
+   * @param from          - lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return Iterator over the values in the range in ascending key order
+   */
+  public Iterator<V> rangeValueIterator(long from, boolean fromInclusive, long to,
+      boolean toInclusive) {
+    return rangeValues(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return the entry with the greatest key less than or equal to key, else null
+   */
+  public InnerNode<Long, V> floorEntry(long key) {
+    return lowerOrFloor(key, true);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return the entry with the greatest key strictly less than key, else null
+   */
+  public InnerNode<Long, V> lowerEntry(long key) {
+    return lowerOrFloor(key, false);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return the entry with the least key greater than or equal to key, else null
+   */
+  public InnerNode<Long, V> ceilingEntry(long key) {
+    return higherOrCeiling(key, true);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return the entry with the least key strictly greater than key, else null
+   */
+  public InnerNode<Long, V> higherEntry(long key) {
+    return higherOrCeiling(key, false);
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the keys in the tree. Keys are returned unboxed by
+   * nextLong().
+   *
+   * @return iterator over the keys of the tree in ascending order
+   */
+  public PrimitiveIterator.OfLong keyIterator() {
+    return new PrimitiveIterator.OfLong() {
+      private final TreeIterator itr = keySlots();
+
+      @Override
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      @Override
+      public long nextLong() {
+        return keys[itr.advance()];
+      }
+    };
+  }
+
+  /**
+   * Compares heap use and lookup latency of LongB2_3Tree against a B2_3Tree with Long keys.
+   *
+   * @param args
+   */
+  public static void main(String[] args) {
+    int n = 1000000;
+    Random rand = new Random(42);
+    long[] probes = new long[n];
+    for (int i = 0; i < n; i++) {
+      probes[i] = rand.nextLong();
+    }
+    String value = "Value";
+    try {
+      // Keys are boxed inside the loop so the B2_3Tree pays for its own Long objects
+      long before = usedMemory();
+      B2_3Tree<Long, String> boxed = new B2_3Tree<Long, String>();
+      for (long key : probes) {
+        boxed.insert(key, value);
+      }
+      long boxedBytes = usedMemory() - before;
+      before = usedMemory();
+      LongB2_3Tree<String> primitive = new LongB2_3Tree<String>();
+      for (long key : probes) {
+        primitive.insert(key, value);
+      }
+      long primitiveBytes = usedMemory() - before;
+      System.out.println("Entries: " + primitive.size());
+      System.out.println("B2_3Tree<Long, V> heap:  " + boxedBytes / primitive.size()
+          + " bytes/entry");
+      System.out.println("LongB2_3Tree<V> heap:    " + primitiveBytes / primitive.size()
+          + " bytes/entry");
+      for (int round = 0; round < 3; round++) { // First rounds warm up the JIT
+        long start = System.nanoTime();
+        int found = 0;
+        for (long key : probes) {
+          if (boxed.get(key) != null) {
+            found++;
+          }
+        }
+        long boxedTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (long key : probes) {
+          if (primitive.get(key) != null) {
+            found++;
+          }
+        }
+        long primitiveTime = System.nanoTime() - start;
+        System.out.println("Round " + round + ": B2_3Tree get " + boxedTime / n
+            + " ns, LongB2_3Tree get " + primitiveTime / n + " ns (" + found + " hits)");
+      }
+    } catch (IllegalKeyException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,408 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: MappedCSVReader
+// Files: MappedCSVReader.java, CSVRecord.java, CSVReader.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * CSV reader over a memory-mapped file. Record and field boundaries are found by scanning the
+ * mapped bytes in place, and only the fields that are asked for are copied out and decoded, so
+ * the file itself never passes through the Java heap.
+ *
+ * The file is mapped one window at a time (1 GB by default), so files larger than the 2 GB limit
+ * of a single mapping can be read. When a record runs past the end of the window, the next window
+ * is mapped starting at that record, which keeps every record inside one window.
+ *
+ * Accepts the same format as CSVReader, except that a stray \r inside an unquoted field is kept
+ * rather than dropped.
+ *
+ * @author fvanorde
+ *
+ */
+public class MappedCSVReader implements CSVRecord, Closeable {
+  private static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+  // Results of scanRecord()
+  private static final int RECORD = 0;
+  private static final int END = 1;
+  private static final int NEED_MORE = 2;
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final long end; // file offset where reading stops
+  private final int maxWindowSize;
+  private MappedByteBuffer window;
+  private long windowStart; // file offset of the first byte of window
+  private int limit; // number of bytes in window
+  private int pos; // window offset of the next record
+  private int[] fieldStarts; // raw field bounds, relative to window
+  private int[] fieldEnds;
+  private boolean[] fieldQuoted; // true if the raw field contains a quote
+  private int fieldCount;
+  private byte[] scratch; // decoded bytes of the field being read
+
+  /**
+   * Constructor for a MappedCSVReader
+   *
+   * @param csv - UTF-8 encoded CSV file to read
+   * @throws IOException
+   */
+  public MappedCSVReader(File csv) throws IOException {
+    this(csv, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Constructor for a MappedCSVReader with the given window size
+   *
+   * @param csv        - UTF-8 encoded CSV file to read
+   * @param windowSize - largest number of bytes mapped at once; must hold the longest record
+   * @throws IOException
+   */
+  public MappedCSVReader(File csv, int windowSize) throws IOException {
+    this(csv, 0, -1, windowSize);
+  }
+
+  /**
+   * Constructor for a MappedCSVReader over the bytes of a file between start and end, with the
+   * default window size
+   *
+   * @param csv   - UTF-8 encoded CSV file to read
+   * @param start - file offset of the first record to read
+   * @param end   - file offset after the last byte to read, -1 for the end of the file
+   * @throws IOException
+   */
+  public MappedCSVReader(File csv, long start, long end) throws IOException {
+    this(csv, start, end, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Constructor for a MappedCSVReader over the bytes of a file between start and end. start
+   * should be the first byte of a record; the records are read up to end, or to the end of the
+   * file if end is -1.
+   *
+   * @param csv        - UTF-8 encoded CSV file to read
+   * @param start      - file offset of the first record to read
+   * @param end        - file offset after the last byte to read, -1 for the end of the file
+   * @param windowSize - largest number of bytes mapped at once; must hold the longest record
+   * @throws IOException
+   */
+  public MappedCSVReader(File csv, long start, long end, int windowSize) throws IOException {
+    file = new RandomAccessFile(csv, "r");
+    channel = file.getChannel();
+    this.end = (end == -1) ? channel.size() : end;
+    maxWindowSize = windowSize;
+    fieldStarts = new int[16];
+    fieldEnds = new int[16];
+    fieldQuoted = new boolean[16];
+    fieldCount = 0;
+    scratch = new byte[256];
+    map(start);
+    // Skip the UTF-8 byte order mark that some spreadsheet programs write
+    if (start == 0 && limit >= 3 && (window.get(0) & 0xFF) == 0xEF
+        && (window.get(1) & 0xFF) == 0xBB && (window.get(2) & 0xFF) == 0xBF) {
+      pos = 3;
+    }
+  }
+
+  /**
+   * Maps the window starting at the given file offset
+   *
+   * @param start - file offset of the first byte to map
+   * @throws IOException
+   */
+  private void map(long start) throws IOException {
+    windowStart = start;
+    limit = (int) Math.min(maxWindowSize, end - start);
+    window = channel.map(FileChannel.MapMode.READ_ONLY, start, limit);
+    pos = 0;
+  }
+
+  /**
+   * @return true if window reaches the end of the bytes to read, else false
+   */
+  private boolean isLastWindow() {
+    return windowStart + limit == end;
+  }
+
+  /**
+   * Finds the start of the first line at or after the given offset, for splitting a file into
+   * pieces that can be read by separate MappedCSVReaders. Only line breaks are looked at, so a
+   * quoted field holding a line break can be split in two.
+   *
+   * @param channel - channel of the file to search
+   * @param offset  - file offset to search from
+   * @return offset of the byte after the first \n at or after offset - 1, or the size of the
+   *         file if there is none
+   * @throws IOException
+   */
+  public static long nextLineStart(FileChannel channel, long offset) throws IOException {
+    long size = channel.size();
+    if (offset <= 0) {
+      return 0;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    long position = offset - 1; // A line starts at offset if the byte before it is \n
+    while (position < size) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+
+  /**
+   * Moves to the next record of the file.
+   *
+   * @return true if a record was read, false at the end of the file
+   * @throws IOException
+   */
+  public boolean nextRecord() throws IOException {
+    while (true) {
+      int result = scanRecord();
+      if (result != NEED_MORE) {
+        return result == RECORD;
+      }
+      if (pos == 0) {
+        throw new IOException("Record at byte " + windowStart + " is longer than the "
+            + maxWindowSize + " byte mapping window.");
+      }
+      map(windowStart + pos);
+    }
+  }
+
+  /**
+   * Scans the record starting at pos and records its raw field bounds.
+   *
+   * @return RECORD if a record was read, END at the end of the file, or NEED_MORE if the record
+   *         runs past the end of a window that is not the last
+   */
+  private int scanRecord() {
+    fieldCount = 0;
+    if (pos == limit && isLastWindow()) {
+      return END;
+    }
+    int i = pos;
+    int fieldStart = i;
+    boolean blank = true; // true while the field holds only whitespace
+    boolean quoted = false;
+    while (true) {
+      if (i == limit) {
+        if (!isLastWindow()) {
+          return NEED_MORE;
+        }
+        endField(fieldStart, i, quoted);
+        pos = i;
+        return RECORD;
+      }
+      byte b = window.get(i);
+      if (b == ',') {
+        endField(fieldStart, i, quoted);
+        i++;
+        fieldStart = i;
+        blank = true;
+        quoted = false;
+      } else if (b == '\n') {
+        endField(fieldStart, i, quoted);
+        pos = i + 1;
+        return RECORD;
+      } else if (b == '"') {
+        quoted = true;
+        i++;
+        if (blank) {
+          // Opening quote -> skip to the closing quote, stepping over "" pairs
+          while (true) {
+            if (i == limit) {
+              if (!isLastWindow()) {
+                return NEED_MORE;
+              }
+              break; // Unterminated quote -> the field runs to the end of the file
+            }
+            if (window.get(i) != '"') {
+              i++;
+            } else if (i + 1 == limit && !isLastWindow()) {
+              return NEED_MORE;
+            } else if (i + 1 < limit && window.get(i + 1) == '"') {
+              i += 2;
+            } else {
+              i++;
+              break;
+            }
+          }
+          blank = false;
+        }
+      } else {
+        if (!CSVReader.isSpace(b)) {
+          blank = false;
+        }
+        i++;
+      }
+    }
+  }
+
+  /**
+   * Records the raw bounds of a field
+   *
+   * @param start  - window offset of the first byte of the field
+   * @param end    - window offset after the last byte of the field
+   * @param quoted - true if the field contains a quote
+   */
+  private void endField(int start, int end, boolean quoted) {
+    if (fieldCount == fieldStarts.length) {
+      fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+      fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+      fieldQuoted = Arrays.copyOf(fieldQuoted, fieldCount * 2);
+    }
+    fieldStarts[fieldCount] = start;
+    fieldEnds[fieldCount] = end;
+    fieldQuoted[fieldCount] = quoted;
+    fieldCount++;
+  }
+
+  /**
+   * Copies the text of a field into scratch, trimming it and removing quotes the same way
+   * CSVReader does.
+   *
+   * @param index - index of the field
+   * @return number of bytes of text in scratch
+   */
+  private int decode(int index) {
+    if (index < 0 || index >= fieldCount) {
+      throw new IndexOutOfBoundsException("Field " + index + " of " + fieldCount);
+    }
+    int start = fieldStarts[index];
+    int end = fieldEnds[index];
+    while (start < end && CSVReader.isSpace(window.get(start))) {
+      start++;
+    }
+    if (!fieldQuoted[index] || window.get(start) != '"') {
+      // Plain field (a quote after other text is kept as text) -> one bulk copy
+      while (end > start && CSVReader.isSpace(window.get(end - 1))) {
+        end--;
+      }
+      int length = end - start;
+      if (length > scratch.length) {
+        scratch = new byte[Math.max(length, scratch.length * 2)];
+      }
+      window.get(start, scratch, 0, length);
+      return length;
+    }
+    if (end - start > scratch.length) {
+      scratch = new byte[Math.max(end - start, scratch.length * 2)];
+    }
+    int length = 0;
+    int i = start + 1;
+    while (i < end) { // Inside the quotes
+      byte b = window.get(i++);
+      if (b == '"') {
+        if (i < end && window.get(i) == '"') {
+          i++;
+        } else {
+          break;
+        }
+      }
+      scratch[length++] = b;
+    }
+    int quotedEnd = length;
+    while (i < end) { // Any text after the closing quote
+      scratch[length++] = window.get(i++);
+    }
+    while (length > quotedEnd && CSVReader.isSpace(scratch[length - 1])) {
+      length--;
+    }
+    return length;
+  }
+
+  /**
+   * @return the number of fields in the current record
+   */
+  @Override
+  public int fieldCount() {
+    return fieldCount;
+  }
+
+  /**
+   * Decodes a field of the current record
+   *
+   * @param index - index of the field, starting at 0
+   * @return the field as a String
+   */
+  @Override
+  public String field(int index) {
+    int length = decode(index);
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Decodes a field of the current record through a pool
+   *
+   * @param index - index of the field, starting at 0
+   * @param pool  - pool of the strings of the current load
+   * @return the field as a pooled String
+   */
+  @Override
+  public String field(int index, StringPool pool) {
+    int length = decode(index);
+    return pool.intern(scratch, 0, length);
+  }
+
+  /**
+   * Splits a field of the current record on the given separator and adds each trimmed piece to
+   * out, following the same rules as CSVReader.splitField.
+   *
+   * @param index     - index of the field, starting at 0
+   * @param separator - ASCII character separating the pieces
+   * @param out       - collection to add the pieces to
+   */
+  @Override
+  public void splitField(int index, char separator, Collection<String> out) {
+    int length = decode(index);
+    CSVReader.splitBytes(scratch, 0, length, separator, out, null);
+  }
+
+  /**
+   * Same as splitField, but takes each piece from a pool
+   *
+   * @param index     - index of the field, starting at 0
+   * @param separator - ASCII character separating the pieces
+   * @param out       - collection to add the pieces to
+   * @param pool      - pool of the strings of the current load
+   */
+  @Override
+  public void splitField(int index, char separator, Collection<String> out, StringPool pool) {
+    int length = decode(index);
+    CSVReader.splitBytes(scratch, 0, length, separator, out, pool);
+  }
+
+  /**
+   * Closes the file. The last window stays valid until it is garbage collected.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+    file.close();
+  }
+}
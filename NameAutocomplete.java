@@ -0,0 +1,304 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: NameAutocomplete
+// Files: NameAutocomplete.java, EnemyDataParser.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Search-as-you-type index over enemy names, ignoring case. The distinct names are kept in one
+ * sorted array, and every later word of a name ("GUNDYR" in "Iudex Gundyr") in a second sorted
+ * array, so the completions of a prefix are one binary search followed by a walk over the
+ * matches.
+ *
+ * completeFuzzy() also accepts typos. It walks the sorted names like the paths of a trie,
+ * computing one edit distance row per character and reusing the rows of the prefix a name shares
+ * with the one before it. A prefix that is already too far from the query is skipped along with
+ * every name that starts with it.
+ *
+ * The index cannot be changed once built; build a new one when the names change.
+ *
+ * @author fvanorde
+ *
+ */
+public class NameAutocomplete {
+  private final String[] names; // distinct names in key order, as first seen
+  private final String[] keys; // upper case names, sorted
+  private final String[] wordKeys; // upper case names from their second word on, sorted
+  private final int[] wordNames; // index in names of each entry of wordKeys
+  private final int longest; // length of the longest key
+
+  /**
+   * Constructor for a NameAutocomplete
+   *
+   * @param enemyNames - enemy names; repeats are kept once, as first seen
+   */
+  public NameAutocomplete(Collection<String> enemyNames) {
+    HashMap<String, String> distinct = new HashMap<String, String>();
+    for (String name : enemyNames) {
+      distinct.putIfAbsent(normalize(name), name);
+    }
+    keys = distinct.keySet().toArray(new String[distinct.size()]);
+    Arrays.sort(keys);
+    names = new String[keys.length];
+    int length = 0;
+    ArrayList<String> words = new ArrayList<String>();
+    for (int i = 0; i < keys.length; i++) {
+      names[i] = distinct.get(keys[i]);
+      length = Math.max(length, keys[i].length());
+      for (int c = 1; c < keys[i].length(); c++) {
+        if (keys[i].charAt(c - 1) == ' ' && keys[i].charAt(c) != ' ') {
+          words.add(keys[i].substring(c) + '\0' + i); // The \0 sorts before any real character
+        }
+      }
+    }
+    longest = length;
+    String[] sortedWords = words.toArray(new String[words.size()]);
+    Arrays.sort(sortedWords);
+    wordKeys = new String[sortedWords.length];
+    wordNames = new int[sortedWords.length];
+    for (int i = 0; i < sortedWords.length; i++) {
+      int split = sortedWords[i].lastIndexOf('\0');
+      wordKeys[i] = sortedWords[i].substring(0, split);
+      wordNames[i] = Integer.parseInt(sortedWords[i].substring(split + 1));
+    }
+  }
+
+  /**
+   * @return the number of distinct names
+   */
+  public int size() {
+    return names.length;
+  }
+
+  /**
+   * Finds the names that start with the given prefix, then the names with a later word that starts
+   * with it. Each group is in alphabetical order.
+   *
+   * @param prefix - text typed so far, any case
+   * @param k      - largest number of names to return
+   * @return up to k matching names
+   */
+  public ArrayList<String> complete(String prefix, int k) {
+    ArrayList<String> result = new ArrayList<String>();
+    if (prefix == null || k <= 0) {
+      return result;
+    }
+    String query = normalize(prefix);
+    BitSet taken = new BitSet(names.length);
+    for (int i = lowerBound(keys, query); i < keys.length && keys[i].startsWith(query); i++) {
+      if (result.size() == k) {
+        return result;
+      }
+      result.add(names[i]);
+      taken.set(i);
+    }
+    for (int i = lowerBound(wordKeys, query);
+        result.size() < k && i < wordKeys.length && wordKeys[i].startsWith(query); i++) {
+      if (!taken.get(wordNames[i])) { // A name can have several matching words
+        result.add(names[wordNames[i]]);
+        taken.set(wordNames[i]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Finds the names with a prefix that is at most maxEdits single character insertions,
+   * deletions, substitutions or swaps of neighbouring characters away from the given prefix, so
+   * "Iudex Gundir" still finds "Iudex Gundyr".
+   *
+   * @param prefix   - text typed so far, any case
+   * @param k        - largest number of names to return
+   * @param maxEdits - largest number of edits allowed
+   * @return up to k matching names, the closest first and in alphabetical order for equal
+   *         distances
+   */
+  public ArrayList<String> completeFuzzy(String prefix, int k, int maxEdits) {
+    ArrayList<String> result = new ArrayList<String>();
+    if (prefix == null || k <= 0) {
+      return result;
+    }
+    String query = normalize(prefix);
+    int m = query.length();
+    // rows[j][i] = edit distance between the first i characters of the query and the first j of
+    // the name being walked; best[j] = least rows[j'][m] for any j' <= j
+    int[][] rows = new int[longest + 1][m + 1];
+    int[] best = new int[longest + 1];
+    for (int i = 0; i <= m; i++) {
+      rows[0][i] = i;
+    }
+    best[0] = m;
+    int[] distances = new int[names.length];
+    String previous = "";
+    int valid = 0; // rows[0..valid] hold the rows of the first valid characters of previous
+    int name = 0;
+    while (name < keys.length) {
+      String key = keys[name];
+      int j = Math.min(valid, commonPrefix(previous, key));
+      boolean pruned = false;
+      while (j < key.length() && !pruned) {
+        nextRow(rows, j, key, query);
+        j++;
+        best[j] = Math.min(best[j - 1], rows[j][m]);
+        // No longer prefix can get closer: rows only grow from here, except by a swap of the
+        // last two characters, which starts from the row before
+        pruned = rowMin(rows[j]) > maxEdits && rowMin(rows[j - 1]) + 1 > maxEdits;
+      }
+      previous = key;
+      valid = j;
+      distances[name++] = best[j];
+      if (pruned) { // Every following name starting with the same j characters ends the same way
+        while (name < keys.length && keys[name].regionMatches(0, key, 0, j)) {
+          distances[name++] = best[j];
+        }
+      }
+    }
+    ArrayList<Integer> matches = new ArrayList<Integer>();
+    for (int i = 0; i < names.length; i++) {
+      if (distances[i] <= maxEdits) {
+        matches.add(i);
+      }
+    }
+    matches.sort((a, b) -> (distances[a] != distances[b]) ? distances[a] - distances[b] : a - b);
+    for (int i = 0; i < matches.size() && i < k; i++) {
+      result.add(names[matches.get(i)]);
+    }
+    return result;
+  }
+
+  /**
+   * Computes rows[j + 1] from the rows before it
+   *
+   * @param rows  - edit distance rows
+   * @param j     - number of characters of key already walked
+   * @param key   - name being walked
+   * @param query - upper case query
+   */
+  private static void nextRow(int[][] rows, int j, String key, String query) {
+    int[] row = rows[j + 1];
+    int[] above = rows[j];
+    char c = key.charAt(j);
+    row[0] = j + 1;
+    for (int i = 1; i <= query.length(); i++) {
+      char q = query.charAt(i - 1);
+      int cost = (q == c) ? 0 : 1;
+      int value = Math.min(Math.min(above[i] + 1, row[i - 1] + 1), above[i - 1] + cost);
+      if (i > 1 && j > 0 && q == key.charAt(j - 1) && query.charAt(i - 2) == c) {
+        value = Math.min(value, rows[j - 1][i - 2] + 1); // Swapped neighbours
+      }
+      row[i] = value;
+    }
+  }
+
+  /**
+   * @param row - edit distance row
+   * @return the least value in the row
+   */
+  private static int rowMin(int[] row) {
+    int min = row[0];
+    for (int value : row) {
+      min = Math.min(min, value);
+    }
+    return min;
+  }
+
+  /**
+   * @param a - first string
+   * @param b - second string
+   * @return the number of leading characters a and b have in common
+   */
+  private static int commonPrefix(String a, String b) {
+    int length = Math.min(a.length(), b.length());
+    int i = 0;
+    while (i < length && a.charAt(i) == b.charAt(i)) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * @param sorted - sorted array
+   * @param key    - string to look for
+   * @return the index of the first string in sorted that is not less than key
+   */
+  private static int lowerBound(String[] sorted, String key) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid].compareTo(key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @param name - name or typed text
+   * @return the form names are matched in
+   */
+  private static String normalize(String name) {
+    return name.trim().toUpperCase();
+  }
+
+  /**
+   * Times completions of each prefix of a name, and a misspelled name, against scanning every
+   * enemy.
+   *
+   * @param args - optional name to type, defaults to Iudex Gundyr
+   */
+  public static void main(String[] args) {
+    String typed = (args.length > 0) ? args[0] : "Iudex Gundyr";
+    EnemyDataParser parser = new EnemyDataParser();
+    parser.parseCSV(new File("EnemiesCSV.csv"));
+    System.out.println("\"Gund\": " + parser.completeName("Gund", 5));
+    System.out.println("\"Iudex Gundir\", 2 edits: "
+        + parser.completeNameFuzzy("Iudex Gundir", 5, 2));
+    System.out.println("\"Lothirc\", 2 edits: " + parser.completeNameFuzzy("Lothirc", 5, 2));
+    int rounds = 20000;
+    for (int round = 0; round < 3; round++) { // First rounds warm up the JIT
+      long start = System.nanoTime();
+      int found = 0;
+      for (int i = 0; i < rounds; i++) {
+        for (int length = 1; length <= typed.length(); length++) {
+          found += parser.completeName(typed.substring(0, length), 10).size();
+        }
+      }
+      long indexNanos = (System.nanoTime() - start) / rounds / typed.length();
+      start = System.nanoTime();
+      for (int i = 0; i < rounds; i++) {
+        for (int length = 1; length <= typed.length(); length++) {
+          String prefix = typed.substring(0, length).toUpperCase();
+          int count = 0;
+          for (Enemy enemy : parser.getTree().traverse()) {
+            if (count < 10 && enemy.getName().toUpperCase().startsWith(prefix)) {
+              count++;
+            }
+          }
+          found += count;
+        }
+      }
+      long scanNanos = (System.nanoTime() - start) / rounds / typed.length();
+      start = System.nanoTime();
+      for (int i = 0; i < rounds; i++) {
+        found += parser.completeNameFuzzy("Iudex Gundir", 10, 2).size();
+      }
+      long fuzzyNanos = (System.nanoTime() - start) / rounds;
+      System.out.println("Round " + round + ": per keystroke, index " + indexNanos + " ns, scan "
+          + scanNanos + " ns; fuzzy " + fuzzyNanos + " ns (" + found + " hits)");
+    }
+  }
+}
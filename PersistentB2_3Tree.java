@@ -0,0 +1,1051 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: PersistentB2_3Tree
+// Files: PersistentB2_3Tree.java, B2_3Tree.java, InnerNode.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Immutable 2-3 tree. insert, put and remove leave the tree they are called on untouched and
+ * return a new version that shares every node off the changed root-to-leaf path with the old
+ * one, so each version costs O(log n) extra nodes. Since nothing is ever modified after it is
+ * built, any version can be read from any number of threads without locking.
+ *
+ * InnerNodes handed out by the iterators and the floor/ceiling methods are copies.
+ *
+ * @author fvanorde
+ *
+ * @param <K>
+ * @param <V>
+ */
+public final class PersistentB2_3Tree<K extends Comparable<? super K>, V> implements Iterable<V> {
+  private final Node<K, V> root;
+  private final int size;
+  private final int height; // number of levels, 0 for an empty tree
+
+  /**
+   * Immutable tree node. Static so that nodes shared between versions do not keep any one version
+   * alive.
+   *
+   * @author fvanorde
+   *
+   */
+  private static final class Node<K, V> {
+    private final K leftKey;
+    private final V leftValue;
+    private final K rightKey; // null for a 2Node
+    private final V rightValue;
+    private final Node<K, V> leftChild; // null for a leaf
+    private final Node<K, V> middleChild;
+    private final Node<K, V> rightChild;
+
+    /**
+     * Constructor for a Node
+     *
+     * @param leftKey     - left key
+     * @param leftValue   - value of the left key
+     * @param rightKey    - right key, null for a 2Node
+     * @param rightValue  - value of the right key
+     * @param leftChild   - left child, null for a leaf
+     * @param middleChild - middle child, null for a leaf
+     * @param rightChild  - right child, null for a leaf or a 2Node
+     */
+    private Node(K leftKey, V leftValue, K rightKey, V rightValue, Node<K, V> leftChild,
+        Node<K, V> middleChild, Node<K, V> rightChild) {
+      this.leftKey = leftKey;
+      this.leftValue = leftValue;
+      this.rightKey = rightKey;
+      this.rightValue = rightValue;
+      this.leftChild = leftChild;
+      this.middleChild = middleChild;
+      this.rightChild = rightChild;
+    }
+
+    /**
+     * @return true if the node holds a single key, else false
+     */
+    private boolean is2Node() {
+      return rightKey == null;
+    }
+
+    /**
+     * @param slot - 0 for the left child, 1 for the middle child, 2 for the right child
+     * @return the child in the given slot
+     */
+    private Node<K, V> child(int slot) {
+      if (slot == 0) {
+        return leftChild;
+      }
+      return slot == 1 ? middleChild : rightChild;
+    }
+
+    /**
+     * @param slot  - child slot to replace
+     * @param child - new child
+     * @return a copy of this node with the child in the given slot replaced
+     */
+    private Node<K, V> withChild(int slot, Node<K, V> child) {
+      if (slot == 0) {
+        return new Node<K, V>(leftKey, leftValue, rightKey, rightValue, child, middleChild,
+            rightChild);
+      }
+      if (slot == 1) {
+        return new Node<K, V>(leftKey, leftValue, rightKey, rightValue, leftChild, child,
+            rightChild);
+      }
+      return new Node<K, V>(leftKey, leftValue, rightKey, rightValue, leftChild, middleChild,
+          child);
+    }
+
+    /**
+     * @param index - 0 for the left entry, 1 for the right entry
+     * @param key   - new key
+     * @param value - new value
+     * @return a copy of this node with the entry at the given index replaced
+     */
+    private Node<K, V> withEntry(int index, K key, V value) {
+      if (index == 0) {
+        return new Node<K, V>(key, value, rightKey, rightValue, leftChild, middleChild,
+            rightChild);
+      }
+      return new Node<K, V>(leftKey, leftValue, key, value, leftChild, middleChild, rightChild);
+    }
+  }
+
+  /**
+   * Creates a 2Node
+   *
+   * @param key   - key of the node
+   * @param value - value of the node
+   * @param left  - left child, null for a leaf
+   * @param right - middle child, null for a leaf
+   * @return new 2Node
+   */
+  private static <K, V> Node<K, V> node2(K key, V value, Node<K, V> left, Node<K, V> right) {
+    return new Node<K, V>(key, value, null, null, left, right, null);
+  }
+
+  /**
+   * Creates a 3Node
+   *
+   * @param k0     - left key
+   * @param v0     - value of the left key
+   * @param k1     - right key
+   * @param v1     - value of the right key
+   * @param left   - left child, null for a leaf
+   * @param middle - middle child, null for a leaf
+   * @param right  - right child, null for a leaf
+   * @return new 3Node
+   */
+  private static <K, V> Node<K, V> node3(K k0, V v0, K k1, V v1, Node<K, V> left,
+      Node<K, V> middle, Node<K, V> right) {
+    return new Node<K, V>(k0, v0, k1, v1, left, middle, right);
+  }
+
+  /**
+   * Constructor for an empty PersistentB2_3Tree
+   */
+  public PersistentB2_3Tree() {
+    this(null, 0, 0);
+  }
+
+  /**
+   * Constructor for a version of the tree
+   *
+   * @param root   - root node, null for an empty tree
+   * @param size   - number of keys
+   * @param height - number of levels
+   */
+  private PersistentB2_3Tree(Node<K, V> root, int size, int height) {
+    this.root = root;
+    this.size = size;
+    this.height = height;
+  }
+
+  /**
+   * Bulk-load constructor for a PersistentB2_3Tree. Builds a balanced tree from the given entries
+   * in O(n) after sorting. As with insert, only the first entry for a duplicate key is kept.
+   *
+   * @param entries - key/value pairs to load, in any order
+   * @throws IllegalKeyException if any entry has a null key
+   */
+  public PersistentB2_3Tree(Collection<InnerNode<K, V>> entries) throws IllegalKeyException {
+    @SuppressWarnings("unchecked")
+    InnerNode<K, V>[] nodeAry = (InnerNode<K, V>[]) entries.toArray(new InnerNode<?, ?>[0]);
+    boolean sorted = true;
+    for (int i = 0; i < nodeAry.length; i++) {
+      if (nodeAry[i].getKey() == null) {
+        throw new IllegalKeyException("Cannot store a null value.");
+      }
+      if (i > 0 && nodeAry[i - 1].getKey().compareTo(nodeAry[i].getKey()) > 0) {
+        sorted = false;
+      }
+    }
+    if (!sorted) {
+      // Stable sort so the first of several duplicates stays first
+      Arrays.sort(nodeAry, (n1, n2) -> n1.getKey().compareTo(n2.getKey()));
+    }
+    int count = 0;
+    for (int i = 0; i < nodeAry.length; i++) {
+      if (count == 0 || nodeAry[count - 1].getKey().compareTo(nodeAry[i].getKey()) != 0) {
+        nodeAry[count++] = nodeAry[i];
+      }
+    }
+    int levels = 0;
+    while (count > 0 && maxKeys(levels - 1) < count) {
+      levels++;
+    }
+    this.root = (count == 0) ? null : buildSubtree(nodeAry, 0, count, levels - 1);
+    this.size = count;
+    this.height = levels;
+  }
+
+  /**
+   * Builds a subtree of the given height holding nodeAry[from, from + count).
+   *
+   * @param nodeAry - sorted InnerNodes with no duplicate keys
+   * @param from    - index of the first InnerNode of the subtree
+   * @param count   - number of InnerNodes in the subtree
+   * @param height  - height of the subtree, 0 for a leaf
+   * @return root node of the subtree
+   */
+  private static <K extends Comparable<? super K>, V> Node<K, V> buildSubtree(
+      InnerNode<K, V>[] nodeAry, int from, int count, int height) {
+    if (height == 0) {
+      if (count == 2) {
+        return node3(nodeAry[from].getKey(), nodeAry[from].getValue(),
+            nodeAry[from + 1].getKey(), nodeAry[from + 1].getValue(), null, null, null);
+      }
+      return node2(nodeAry[from].getKey(), nodeAry[from].getValue(), null, null);
+    }
+    // Use a 2Node unless the keys left over would overflow two full children
+    int childCount = (count - 1 <= 2 * maxKeys(height - 1)) ? 2 : 3;
+    int childKeys = count - (childCount - 1);
+    int size = childKeys / childCount + (0 < childKeys % childCount ? 1 : 0);
+    Node<K, V> left = buildSubtree(nodeAry, from, size, height - 1);
+    int sep0 = from + size;
+    size = childKeys / childCount + (1 < childKeys % childCount ? 1 : 0);
+    Node<K, V> middle = buildSubtree(nodeAry, sep0 + 1, size, height - 1);
+    if (childCount == 2) {
+      return node2(nodeAry[sep0].getKey(), nodeAry[sep0].getValue(), left, middle);
+    }
+    int sep1 = sep0 + 1 + size;
+    Node<K, V> right = buildSubtree(nodeAry, sep1 + 1, from + count - sep1 - 1, height - 1);
+    return node3(nodeAry[sep0].getKey(), nodeAry[sep0].getValue(), nodeAry[sep1].getKey(),
+        nodeAry[sep1].getValue(), left, middle, right);
+  }
+
+  /**
+   * @param height - height of a subtree, 0 for a leaf, -1 for no subtree
+   * @return the number of keys in a subtree of the given height made entirely of 3Nodes
+   */
+  private static long maxKeys(int height) {
+    long max = 1;
+    for (int i = 0; i <= height; i++) {
+      max *= 3;
+    }
+    return max - 1;
+  }
+
+  /**
+   * @return true if the tree is empty, else false
+   */
+  public boolean isEmpty() {
+    return root == null;
+  }
+
+  /**
+   * @return the number of keys stored in the tree
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns a version of the tree with the given key and value added. If the key is already
+   * present this tree is returned unchanged.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @return the new version of the tree
+   * @throws IllegalKeyException
+   */
+  public PersistentB2_3Tree<K, V> insert(K key, V value) throws IllegalKeyException {
+    return put(key, value, false);
+  }
+
+  /**
+   * Returns a version of the tree with the given key mapped to the given value, replacing the
+   * value if the key is already present.
+   *
+   * @param key   - Key to identify the node
+   * @param value - value contained by the node
+   * @return the new version of the tree
+   * @throws IllegalKeyException
+   */
+  public PersistentB2_3Tree<K, V> put(K key, V value) throws IllegalKeyException {
+    return put(key, value, true);
+  }
+
+  /**
+   * Returns a version of the tree with the value for key computed from its current value (null if
+   * absent). If the function returns null the key is removed, or not inserted if it was absent.
+   *
+   * @param key       - Key to identify the node
+   * @param remapping - function from the key and its current value to the new value
+   * @return the new version of the tree
+   * @throws IllegalKeyException
+   */
+  public PersistentB2_3Tree<K, V> compute(K key,
+      BiFunction<? super K, ? super V, ? extends V> remapping) throws IllegalKeyException {
+    if (key == null) { // Null check
+      throw new IllegalKeyException("Cannot store a null value.");
+    }
+    V value = remapping.apply(key, get(key));
+    if (value == null) {
+      return remove(key);
+    }
+    return put(key, value, true);
+  }
+
+  /**
+   * Helper method for insert and put. Descends to the key, then copies the nodes on the path back
+   * up to the root, splitting copies of full nodes on the way.
+   *
+   * @param key     - Key to identify the node
+   * @param value   - value contained by the node
+   * @param replace - true to replace the value of an existing key, false to keep it
+   * @return the new version of the tree
+   * @throws IllegalKeyException
+   */
+  private PersistentB2_3Tree<K, V> put(K key, V value, boolean replace)
+      throws IllegalKeyException {
+    if (key == null) { // Null check
+      throw new IllegalKeyException("Cannot store a null value.");
+    }
+    if (root == null) {
+      return new PersistentB2_3Tree<K, V>(node2(key, value, null, null), 1, 1);
+    }
+    @SuppressWarnings("unchecked")
+    Node<K, V>[] path = (Node<K, V>[]) new Node<?, ?>[height];
+    int[] slots = new int[height];
+    Node<K, V> node = root;
+    int d = 0;
+    while (true) {
+      int slot;
+      int cmp = key.compareTo(node.leftKey);
+      if (cmp == 0) {
+        slot = 0;
+      } else if (cmp < 0) {
+        slot = -1;
+      } else if (node.is2Node()) {
+        slot = -2;
+      } else {
+        cmp = key.compareTo(node.rightKey);
+        slot = (cmp == 0) ? 1 : (cmp < 0 ? -2 : -3);
+      }
+      if (slot >= 0) { // Match: copy the path with the value replaced
+        if (!replace) {
+          return this;
+        }
+        Node<K, V> copy = node.withEntry(slot, key, value);
+        return new PersistentB2_3Tree<K, V>(copyPath(path, slots, d, copy), size, height);
+      }
+      path[d] = node;
+      slots[d] = -slot - 1;
+      if (node.leftChild == null) {
+        break;
+      }
+      node = node.child(-slot - 1);
+      d++;
+    }
+    // Insert at the leaf and split full nodes on the way back up
+    K upKey = key;
+    V upValue = value;
+    Node<K, V> upLeft = null; // replaces the child at slot
+    Node<K, V> upRight = null; // goes to the right of upKey
+    for (; d >= 0; d--) {
+      node = path[d];
+      int slot = slots[d];
+      if (node.is2Node()) {
+        Node<K, V> copy;
+        if (slot == 0) {
+          copy = node3(upKey, upValue, node.leftKey, node.leftValue, upLeft, upRight,
+              node.middleChild);
+        } else {
+          copy = node3(node.leftKey, node.leftValue, upKey, upValue, node.leftChild, upLeft,
+              upRight);
+        }
+        return new PersistentB2_3Tree<K, V>(copyPath(path, slots, d, copy), size + 1, height);
+      }
+      // 3Node -> split into two 2Nodes and push the middle key up
+      Node<K, V> left;
+      Node<K, V> right;
+      if (slot == 0) {
+        left = node2(upKey, upValue, upLeft, upRight);
+        right = node2(node.rightKey, node.rightValue, node.middleChild, node.rightChild);
+        upKey = node.leftKey;
+        upValue = node.leftValue;
+      } else if (slot == 1) {
+        left = node2(node.leftKey, node.leftValue, node.leftChild, upLeft);
+        right = node2(node.rightKey, node.rightValue, upRight, node.rightChild);
+      } else {
+        left = node2(node.leftKey, node.leftValue, node.leftChild, node.middleChild);
+        right = node2(upKey, upValue, upLeft, upRight);
+        upKey = node.rightKey;
+        upValue = node.rightValue;
+      }
+      upLeft = left;
+      upRight = right;
+    }
+    // The root was split -> grow the tree by one level
+    return new PersistentB2_3Tree<K, V>(node2(upKey, upValue, upLeft, upRight), size + 1,
+        height + 1);
+  }
+
+  /**
+   * Copies the nodes above depth d of a recorded path, each pointing at the copy below it
+   *
+   * @param path  - nodes visited from the root
+   * @param slots - child slot taken from each node of the path
+   * @param d     - depth of the node that was replaced
+   * @param copy  - replacement for the node at depth d
+   * @return the new root
+   */
+  private static <K, V> Node<K, V> copyPath(Node<K, V>[] path, int[] slots, int d,
+      Node<K, V> copy) {
+    for (int i = d - 1; i >= 0; i--) {
+      copy = path[i].withChild(slots[i], copy);
+    }
+    return copy;
+  }
+
+  /**
+   * Returns a version of the tree without the given key. Underfull copies borrow from or merge
+   * with their siblings on the way back up, as in B2_3Tree.remove.
+   *
+   * @param key - key to remove
+   * @return the new version of the tree, or this tree if key is not present
+   */
+  public PersistentB2_3Tree<K, V> remove(K key) {
+    if (root == null || key == null) {
+      return this;
+    }
+    @SuppressWarnings("unchecked")
+    Node<K, V>[] path = (Node<K, V>[]) new Node<?, ?>[height];
+    int[] slots = new int[height];
+    Node<K, V> node = root;
+    int d = 0;
+    int index = -1; // index of the matching entry in node
+    while (true) {
+      int slot = 0;
+      int cmp = key.compareTo(node.leftKey);
+      if (cmp == 0) {
+        index = 0;
+      } else if (cmp < 0) {
+        slot = 0;
+      } else if (node.is2Node()) {
+        slot = 1;
+      } else {
+        cmp = key.compareTo(node.rightKey);
+        if (cmp == 0) {
+          index = 1;
+        }
+        slot = cmp < 0 ? 1 : 2;
+      }
+      if (index >= 0) {
+        break;
+      }
+      if (node.leftChild == null) { // Not found
+        return this;
+      }
+      path[d] = node;
+      slots[d] = slot;
+      node = node.child(slot);
+      d++;
+    }
+    if (node.leftChild != null) {
+      // Replace the entry with its in-order successor and remove the successor from its leaf
+      path[d] = node;
+      slots[d] = index + 1;
+      Node<K, V> leaf = node.child(index + 1);
+      int succDepth = d;
+      d++;
+      while (leaf.leftChild != null) {
+        path[d] = leaf;
+        slots[d] = 0;
+        leaf = leaf.leftChild;
+        d++;
+      }
+      path[succDepth] = node.withEntry(index, leaf.leftKey, leaf.leftValue);
+      node = leaf;
+      index = 0;
+    }
+    // node is a leaf at depth d
+    if (!node.is2Node()) {
+      Node<K, V> copy = (index == 0)
+          ? node2(node.rightKey, node.rightValue, null, null)
+          : node2(node.leftKey, node.leftValue, null, null);
+      return new PersistentB2_3Tree<K, V>(copyPath(path, slots, d, copy), size - 1, height);
+    }
+    // The leaf is left empty: walk up the path borrowing from or merging with siblings
+    Node<K, V> only = null; // single remaining subtree of the empty node
+    for (d = d - 1; d >= 0; d--) {
+      Node<K, V> parent = path[d];
+      int pos = slots[d];
+      Node<K, V> copy = null; // replacement for parent if the hole is fixed at this level
+      if (pos == 0) {
+        Node<K, V> sibling = parent.middleChild;
+        if (!sibling.is2Node()) { // Borrow from middle sibling
+          copy = node3(sibling.leftKey, sibling.leftValue, parent.rightKey, parent.rightValue,
+              node2(parent.leftKey, parent.leftValue, only, sibling.leftChild),
+              node2(sibling.rightKey, sibling.rightValue, sibling.middleChild,
+                  sibling.rightChild),
+              parent.rightChild);
+        } else { // Merge into middle sibling
+          Node<K, V> merged = node3(parent.leftKey, parent.leftValue, sibling.leftKey,
+              sibling.leftValue, only, sibling.leftChild, sibling.middleChild);
+          if (!parent.is2Node()) {
+            copy = node2(parent.rightKey, parent.rightValue, merged, parent.rightChild);
+          } else {
+            only = merged;
+          }
+        }
+      } else if (pos == 1) {
+        Node<K, V> left = parent.leftChild;
+        Node<K, V> right = parent.rightChild;
+        if (!left.is2Node()) { // Borrow from left sibling
+          copy = node3(left.rightKey, left.rightValue, parent.rightKey, parent.rightValue,
+              node2(left.leftKey, left.leftValue, left.leftChild, left.middleChild),
+              node2(parent.leftKey, parent.leftValue, left.rightChild, only), right);
+        } else if (right != null && !right.is2Node()) { // Borrow from right sibling
+          copy = node3(parent.leftKey, parent.leftValue, right.leftKey, right.leftValue, left,
+              node2(parent.rightKey, parent.rightValue, only, right.leftChild),
+              node2(right.rightKey, right.rightValue, right.middleChild, right.rightChild));
+        } else { // Merge into left sibling
+          Node<K, V> merged = node3(left.leftKey, left.leftValue, parent.leftKey,
+              parent.leftValue, left.leftChild, left.middleChild, only);
+          if (!parent.is2Node()) {
+            copy = node2(parent.rightKey, parent.rightValue, merged, right);
+          } else {
+            only = merged;
+          }
+        }
+      } else {
+        Node<K, V> sibling = parent.middleChild;
+        if (!sibling.is2Node()) { // Borrow from middle sibling
+          copy = node3(parent.leftKey, parent.leftValue, sibling.rightKey, sibling.rightValue,
+              parent.leftChild,
+              node2(sibling.leftKey, sibling.leftValue, sibling.leftChild, sibling.middleChild),
+              node2(parent.rightKey, parent.rightValue, sibling.rightChild, only));
+        } else { // Merge into middle sibling; parent drops back to a 2Node
+          copy = node2(parent.leftKey, parent.leftValue, parent.leftChild,
+              node3(sibling.leftKey, sibling.leftValue, parent.rightKey, parent.rightValue,
+                  sibling.leftChild, sibling.middleChild, only));
+        }
+      }
+      if (copy != null) {
+        return new PersistentB2_3Tree<K, V>(copyPath(path, slots, d, copy), size - 1, height);
+      }
+    }
+    // The root was emptied -> its only child becomes the root
+    return new PersistentB2_3Tree<K, V>(only, size - 1, height - 1);
+  }
+
+  /**
+   * Searches the tree for a node with the specified key
+   *
+   * @param key - key to search for
+   * @return - value of the node with specified key, else null
+   */
+  public V get(K key) {
+    Node<K, V> node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.leftKey);
+      if (cmp == 0) {
+        return node.leftValue;
+      }
+      if (cmp < 0) {
+        node = node.leftChild;
+      } else if (node.is2Node()) {
+        node = node.middleChild;
+      } else {
+        cmp = key.compareTo(node.rightKey);
+        if (cmp == 0) {
+          return node.rightValue;
+        }
+        node = (cmp < 0) ? node.middleChild : node.rightChild;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Traverses the tree in order and adds all objects to an ArrayList
+   *
+   * @return ArrayList containing all objects in the tree
+   */
+  public ArrayList<V> traverse() {
+    ArrayList<V> list = new ArrayList<V>(size);
+    for (V value : this) {
+      list.add(value);
+    }
+    return list;
+  }
+
+  /**
+   * Returns the values whose keys lie between from and to, in ascending key order. Only the part
+   * of the tree between the two bounds is visited.
+   *
+   * @param from          - lower bound, null for no lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound, null for no upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return ArrayList of the values in the range
+   */
+  public ArrayList<V> range(K from, boolean fromInclusive, K to, boolean toInclusive) {
+    ArrayList<V> list = new ArrayList<V>();
+    TreeIterator itr = new TreeIterator(from, fromInclusive, to, toInclusive);
+    while (itr.hasNext()) {
+      itr.advance();
+      list.add(itr.curValue());
+    }
+    return list;
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the key/value pairs whose keys lie between from and to.
+   *
+   * @param from          - lower bound, null for no lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound, null for no upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return Iterator over copies of the entries in the range in ascending key order
+   */
+  public Iterator<InnerNode<K, V>> rangeIterator(K from, boolean fromInclusive, K to,
+      boolean toInclusive) {
+    return new TreeIterator(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * Returns the values of every String key that starts with the given prefix, in ascending key
+   * order. Costs one descent to the first match plus one step per match.
+   *
+   * @param tree   - tree with String keys to search
+   * @param prefix - prefix to search for
+   * @return ArrayList of values whose keys start with prefix
+   */
+  public static <V> ArrayList<V> prefixScan(PersistentB2_3Tree<String, V> tree, String prefix) {
+    ArrayList<V> list = new ArrayList<V>();
+    PersistentB2_3Tree<String, V>.TreeIterator itr =
+        tree.new TreeIterator(prefix, true, null, false);
+    while (itr.hasNext()) {
+      itr.advance();
+      if (!itr.curKey().startsWith(prefix)) {
+        break;
+      }
+      list.add(itr.curValue());
+    }
+    return list;
+  }
+
+  /**
+   * @param key - key to search for
+   * @return a copy of the entry with the greatest key less than or equal to key, else null
+   */
+  public InnerNode<K, V> floorEntry(K key) {
+    return lowerOrFloor(key, true);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return a copy of the entry with the greatest key strictly less than key, else null
+   */
+  public InnerNode<K, V> lowerEntry(K key) {
+    return lowerOrFloor(key, false);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return a copy of the entry with the least key greater than or equal to key, else null
+   */
+  public InnerNode<K, V> ceilingEntry(K key) {
+    return higherOrCeiling(key, true);
+  }
+
+  /**
+   * @param key - key to search for
+   * @return a copy of the entry with the least key strictly greater than key, else null
+   */
+  public InnerNode<K, V> higherEntry(K key) {
+    return higherOrCeiling(key, false);
+  }
+
+  /**
+   * Helper method for floorEntry and lowerEntry. Descends the tree once, remembering the closest
+   * entry to the left of key seen so far.
+   *
+   * @param key       - key to search for
+   * @param inclusive - true if an entry with a key equal to key may be returned
+   * @return copy of the closest entry at or below key, else null
+   */
+  private InnerNode<K, V> lowerOrFloor(K key, boolean inclusive) {
+    Node<K, V> best = null;
+    int bestIndex = 0;
+    Node<K, V> node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.leftKey);
+      if (cmp < 0 || (cmp == 0 && !inclusive)) {
+        node = node.leftChild;
+        continue;
+      }
+      best = node;
+      bestIndex = 0;
+      if (cmp == 0) {
+        break;
+      }
+      if (node.is2Node()) {
+        node = node.middleChild;
+        continue;
+      }
+      cmp = key.compareTo(node.rightKey);
+      if (cmp < 0 || (cmp == 0 && !inclusive)) {
+        node = node.middleChild;
+      } else {
+        bestIndex = 1;
+        if (cmp == 0) {
+          break;
+        }
+        node = node.rightChild;
+      }
+    }
+    return entryOf(best, bestIndex);
+  }
+
+  /**
+   * Helper method for ceilingEntry and higherEntry. Descends the tree once, remembering the
+   * closest entry to the right of key seen so far.
+   *
+   * @param key       - key to search for
+   * @param inclusive - true if an entry with a key equal to key may be returned
+   * @return copy of the closest entry at or above key, else null
+   */
+  private InnerNode<K, V> higherOrCeiling(K key, boolean inclusive) {
+    Node<K, V> best = null;
+    int bestIndex = 0;
+    Node<K, V> node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.leftKey);
+      if (cmp < 0 || (cmp == 0 && inclusive)) {
+        best = node;
+        bestIndex = 0;
+        if (cmp == 0) {
+          break;
+        }
+        node = node.leftChild;
+        continue;
+      }
+      if (node.is2Node()) {
+        node = node.middleChild;
+        continue;
+      }
+      cmp = key.compareTo(node.rightKey);
+      if (cmp < 0 || (cmp == 0 && inclusive)) {
+        best = node;
+        bestIndex = 1;
+        if (cmp == 0) {
+          break;
+        }
+        node = node.middleChild;
+      } else {
+        node = node.rightChild;
+      }
+    }
+    return entryOf(best, bestIndex);
+  }
+
+  /**
+   * @param node  - node holding the entry, or null
+   * @param index - 0 for the left entry, 1 for the right entry
+   * @return a new InnerNode holding the entry, null if node is null
+   */
+  private InnerNode<K, V> entryOf(Node<K, V> node, int index) {
+    if (node == null) {
+      return null;
+    }
+    if (index == 0) {
+      return new InnerNode<K, V>(node.leftKey, node.leftValue);
+    }
+    return new InnerNode<K, V>(node.rightKey, node.rightValue);
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the values in the tree.
+   *
+   * @return Iterator over the values of the tree in ascending key order
+   */
+  @Override
+  public Iterator<V> iterator() {
+    return new Iterator<V>() {
+      private final TreeIterator itr = new TreeIterator(null, false, null, false);
+
+      @Override
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      @Override
+      public V next() {
+        itr.advance();
+        return itr.curValue();
+      }
+    };
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the keys in the tree.
+   *
+   * @return Iterator over the keys of the tree in ascending order
+   */
+  public Iterator<K> keyIterator() {
+    return new Iterator<K>() {
+      private final TreeIterator itr = new TreeIterator(null, false, null, false);
+
+      @Override
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      @Override
+      public K next() {
+        itr.advance();
+        return itr.curKey();
+      }
+    };
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the key/value pairs in the tree.
+   *
+   * @return Iterator over copies of the entries of the tree in ascending key order
+   */
+  public Iterator<InnerNode<K, V>> entryIterator() {
+    return new TreeIterator(null, false, null, false);
+  }
+
+  /**
+   * In-order iterator over the entries of the tree, using an explicit stack of (node, index)
+   * frames. advance() moves to the next entry without allocating; next() wraps it in a new
+   * InnerNode.
+   *
+   * @author fvanorde
+   *
+   */
+  private class TreeIterator implements Iterator<InnerNode<K, V>> {
+    private Node<K, V>[] nodeStack;
+    private int[] indexStack;
+    private int depth;
+    private K hi;
+    private boolean hiInclusive;
+    private Node<K, V> curNode; // node of the entry last moved to
+    private int curIndex;
+
+    /**
+     * Constructor for a TreeIterator over the keys between lo and hi
+     *
+     * @param lo          - lower bound, null for no lower bound
+     * @param loInclusive - true if a key equal to lo should be returned
+     * @param hi          - upper bound, null for no upper bound
+     * @param hiInclusive - true if a key equal to hi should be returned
+     */
+    @SuppressWarnings("unchecked")
+    private TreeIterator(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+      nodeStack = (Node<K, V>[]) new Node<?, ?>[Math.max(1, height)];
+      indexStack = new int[nodeStack.length];
+      depth = 0;
+      this.hi = hi;
+      this.hiInclusive = hiInclusive;
+      if (lo == null) {
+        pushLeftPath(root);
+      } else {
+        seek(lo, loInclusive);
+      }
+    }
+
+    /**
+     * Builds the stack so that the next entry returned holds the first key greater than (or equal
+     * to, if inclusive) lo
+     *
+     * @param lo        - lower bound
+     * @param inclusive - true if a key equal to lo should be returned
+     */
+    private void seek(K lo, boolean inclusive) {
+      Node<K, V> node = root;
+      while (node != null) {
+        int cmp = lo.compareTo(node.leftKey);
+        if (cmp < 0 || (cmp == 0 && inclusive)) {
+          push(node, 0);
+          if (cmp == 0) {
+            return;
+          }
+          node = node.leftChild;
+        } else if (node.is2Node()) {
+          node = node.middleChild;
+        } else {
+          cmp = lo.compareTo(node.rightKey);
+          if (cmp < 0 || (cmp == 0 && inclusive)) {
+            push(node, 1);
+            if (cmp == 0) {
+              return;
+            }
+            node = node.middleChild;
+          } else {
+            node = node.rightChild;
+          }
+        }
+      }
+    }
+
+    /**
+     * Pushes node and all of its leftmost descendants onto the stack
+     *
+     * @param node - node to start from, null for none
+     */
+    private void pushLeftPath(Node<K, V> node) {
+      while (node != null) {
+        push(node, 0);
+        node = node.leftChild;
+      }
+    }
+
+    /**
+     * Pushes a frame onto the stack, growing the stack if needed
+     *
+     * @param node  - node of the frame
+     * @param index - index of the next entry to return from node
+     */
+    private void push(Node<K, V> node, int index) {
+      if (depth == nodeStack.length) {
+        nodeStack = Arrays.copyOf(nodeStack, depth * 2);
+        indexStack = Arrays.copyOf(indexStack, depth * 2);
+      }
+      nodeStack[depth] = node;
+      indexStack[depth] = index;
+      depth++;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (depth == 0) {
+        return false;
+      }
+      if (hi == null) {
+        return true;
+      }
+      Node<K, V> node = nodeStack[depth - 1];
+      K key = (indexStack[depth - 1] == 0) ? node.leftKey : node.rightKey;
+      int cmp = key.compareTo(hi);
+      return cmp < 0 || (cmp == 0 && hiInclusive);
+    }
+
+    /**
+     * Moves to the next entry in key order
+     */
+    private void advance() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      depth--;
+      Node<K, V> node = nodeStack[depth];
+      int index = indexStack[depth];
+      nodeStack[depth] = null;
+      if (index == 0 && !node.is2Node()) {
+        // Come back for the right key of a 3Node once the middle subtree is done
+        push(node, 1);
+      }
+      pushLeftPath(node.child(index + 1));
+      curNode = node;
+      curIndex = index;
+    }
+
+    /**
+     * @return key of the entry last moved to
+     */
+    private K curKey() {
+      return (curIndex == 0) ? curNode.leftKey : curNode.rightKey;
+    }
+
+    /**
+     * @return value of the entry last moved to
+     */
+    private V curValue() {
+      return (curIndex == 0) ? curNode.leftValue : curNode.rightValue;
+    }
+
+    @Override
+    public InnerNode<K, V> next() {
+      advance();
+      return entryOf(curNode, curIndex);
+    }
+  }
+
+  /**
+   * Keeps many versions of a tree side by side and reports what they cost.
+   *
+   * @param args
+   */
+  public static void main(String[] args) {
+    int n = 1000000;
+    int versions = 1000;
+    ArrayList<InnerNode<Integer, String>> entries = new ArrayList<InnerNode<Integer, String>>();
+    for (int i = 0; i < n; i++) {
+      entries.add(new InnerNode<Integer, String>(i, "Value"));
+    }
+    try {
+      long before = usedMemory();
+      PersistentB2_3Tree<Integer, String> base = new PersistentB2_3Tree<Integer, String>(entries);
+      long baseBytes = usedMemory() - before;
+      @SuppressWarnings("unchecked")
+      PersistentB2_3Tree<Integer, String>[] history =
+          (PersistentB2_3Tree<Integer, String>[]) new PersistentB2_3Tree<?, ?>[versions];
+      history[0] = base;
+      java.util.Random rand = new java.util.Random(42);
+      before = usedMemory();
+      for (int v = 1; v < versions; v++) {
+        int key = rand.nextInt(2 * n);
+        history[v] = (key < n) ? history[v - 1].remove(key)
+            : history[v - 1].put(key, "Patched");
+      }
+      long historyBytes = usedMemory() - before;
+      System.out.println("Base version: " + base.size() + " entries, " + baseBytes / 1024
+          + " KB");
+      System.out.println((versions - 1) + " more versions: " + historyBytes / 1024 + " KB total, "
+          + historyBytes / (versions - 1) + " bytes per version");
+      System.out.println("Base still has key 0: " + (base.get(0) != null) + ", latest size: "
+          + history[versions - 1].size());
+    } catch (IllegalKeyException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * @return bytes of heap in use after a garbage collection
+   */
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
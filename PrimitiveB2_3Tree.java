@@ -0,0 +1,1067 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.IntToLongFunction;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: PrimitiveB2_3Tree
+// Files: PrimitiveB2_3Tree.java, IntB2_3Tree.java, LongB2_3Tree.java, InnerNode.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Shared base of the 2-3 trees with primitive keys, laid out like ArrayB2_3Tree. Values, child
+ * links and the key count of each node sit in parallel arrays indexed by node id; the subclass
+ * keeps the keys in a primitive array with two slots per node. All descents, splits, merges and
+ * iterators live here and see the keys widened to long, which orders int keys the same way.
+ *
+ * The subclasses expose the typed public API (put(int, V), get(long) and so on) and delegate to
+ * the protected long-keyed methods below.
+ *
+ * @author fvanorde
+ *
+ * @param <K> - boxed key type handed out in entries
+ * @param <V>
+ */
+public abstract class PrimitiveB2_3Tree<K extends Comparable<? super K>, V>
+    implements Iterable<V> {
+  protected static final int NIL = -1;
+
+  private Object[] values; // values[2 * id + i] belongs to the key in slot 2 * id + i
+  private byte[] keyCounts; // 1 for a 2Node, 2 for a 3Node
+  private int[] children; // children[3 * id] is NIL for a leaf
+  private int nodeCount; // number of ids handed out so far
+  private int freeList; // head of the list of removed ids, chained through children[3 * id]
+  private int root;
+  private int size;
+  // Path from the root taken by the last descend(), reused by insert and remove
+  private int[] pathNodes;
+  private int[] pathSlots;
+  private int pathDepth;
+
+  /**
+   * Constructor for a tree with room for the given number of nodes. The subclass allocates its
+   * key array for the same number of nodes.
+   *
+   * @param capacity - number of nodes to allocate up front
+   */
+  protected PrimitiveB2_3Tree(int capacity) {
+    values = new Object[2 * capacity];
+    keyCounts = new byte[capacity];
+    children = new int[3 * capacity];
+    nodeCount = 0;
+    freeList = NIL;
+    root = NIL;
+    size = 0;
+    pathNodes = new int[16];
+    pathSlots = new int[16];
+  }
+
+  /**
+   * @param slot - 2 * id + index of a key slot
+   * @return the key in the slot, widened to long
+   */
+  protected abstract long keyAt(int slot);
+
+  /**
+   * @param slot - 2 * id + index of a key slot
+   * @param key  - key to store, within the range of the subclass's key type
+   */
+  protected abstract void setKey(int slot, long key);
+
+  /**
+   * @param slot - 2 * id + index of a key slot
+   * @return the key in the slot, boxed
+   */
+  protected abstract K boxedKey(int slot);
+
+  /**
+   * Grows the key array of the subclass
+   *
+   * @param slots - number of key slots the array must hold
+   */
+  protected abstract void growKeys(int slots);
+
+  /**
+   * Builds a balanced tree in O(n) from entries sorted by key. As with insert, only the first value
+   * for a duplicate key is kept.
+   *
+   * @param order       - positions of the entries in ascending key order, equal keys in input
+   *                    order; duplicates are dropped from it in place
+   * @param keyOf       - maps a position to its key
+   * @param entryValues - entryValues.get(i) is the value for the key at position i
+   */
+  protected final void load(int[] order, IntToLongFunction keyOf, List<V> entryValues) {
+    // Drop duplicate keys
+    int count = 0;
+    for (int i = 0; i < order.length; i++) {
+      if (count == 0 || keyOf.applyAsLong(order[count - 1]) != keyOf.applyAsLong(order[i])) {
+        order[count++] = order[i];
+      }
+    }
+    if (count == 0) {
+      return;
+    }
+    int height = 0;
+    while (maxKeys(height) < count) {
+      height++;
+    }
+    root = buildSubtree(order, keyOf, entryValues, 0, count, height);
+    size = count;
+  }
+
+  /**
+   * Builds a subtree of the given height holding the entries order[from, from + count).
+   *
+   * @param order       - positions of the entries in ascending key order, no duplicate keys
+   * @param keyOf       - maps a position to its key
+   * @param entryValues - values being loaded
+   * @param from        - index into order of the first entry of the subtree
+   * @param count       - number of entries in the subtree
+   * @param height      - height of the subtree, 0 for a leaf
+   * @return id of the root node of the subtree
+   */
+  private int buildSubtree(int[] order, IntToLongFunction keyOf, List<V> entryValues, int from,
+      int count, int height) {
+    int node = allocNode();
+    if (height == 0) {
+      setEntry(node, 0, keyOf.applyAsLong(order[from]), entryValues.get(order[from]));
+      if (count == 2) {
+        setEntry(node, 1, keyOf.applyAsLong(order[from + 1]), entryValues.get(order[from + 1]));
+      }
+      keyCounts[node] = (byte) count;
+      return node;
+    }
+    // Use a 2Node unless the keys left over would overflow two full children
+    int childCount = (count - 1 <= 2 * maxKeys(height - 1)) ? 2 : 3;
+    int childKeys = count - (childCount - 1);
+    int pos = from;
+    for (int c = 0; c < childCount; c++) {
+      // Spread the keys as evenly as possible over the children
+      int childSize = childKeys / childCount + (c < childKeys % childCount ? 1 : 0);
+      int child = buildSubtree(order, keyOf, entryValues, pos, childSize, height - 1);
+      children[3 * node + c] = child;
+      pos += childSize;
+      if (c < childCount - 1) {
+        setEntry(node, c, keyOf.applyAsLong(order[pos]), entryValues.get(order[pos]));
+        pos++;
+      }
+    }
+    keyCounts[node] = (byte) (childCount - 1);
+    return node;
+  }
+
+  /**
+   * @param height - height of a subtree, 0 for a leaf
+   * @return the number of keys in a subtree of the given height made entirely of 3Nodes
+   */
+  private static long maxKeys(int height) {
+    long max = 3;
+    for (int i = 0; i < height; i++) {
+      max *= 3;
+    }
+    return max - 1;
+  }
+
+  /**
+   * Hands out a node id, reusing removed ids first and growing the arrays when full
+   *
+   * @return id of an empty leaf node
+   */
+  private int allocNode() {
+    int node;
+    if (freeList != NIL) {
+      node = freeList;
+      freeList = children[3 * node];
+    } else {
+      if (nodeCount == keyCounts.length) {
+        int capacity = Math.max(16, nodeCount * 2);
+        growKeys(2 * capacity);
+        values = Arrays.copyOf(values, 2 * capacity);
+        keyCounts = Arrays.copyOf(keyCounts, capacity);
+        children = Arrays.copyOf(children, 3 * capacity);
+      }
+      node = nodeCount++;
+    }
+    keyCounts[node] = 1;
+    children[3 * node] = NIL;
+    children[3 * node + 1] = NIL;
+    children[3 * node + 2] = NIL;
+    return node;
+  }
+
+  /**
+   * Returns a node id to the free list
+   *
+   * @param node - id of the node to free
+   */
+  private void freeNode(int node) {
+    values[2 * node] = null;
+    values[2 * node + 1] = null;
+    keyCounts[node] = 0;
+    children[3 * node] = freeList;
+    freeList = node;
+  }
+
+  /**
+   * @param node  - node id
+   * @param index - 0 for the left value, 1 for the right value
+   * @return the value in the given slot
+   */
+  @SuppressWarnings("unchecked")
+  private V value(int node, int index) {
+    return (V) values[2 * node + index];
+  }
+
+  /**
+   * Stores a key and value in the given slot
+   *
+   * @param node  - node id
+   * @param index - 0 for the left slot, 1 for the right slot
+   * @param key   - key to store
+   * @param value - value to store
+   */
+  private void setEntry(int node, int index, long key, Object value) {
+    setKey(2 * node + index, key);
+    values[2 * node + index] = value;
+  }
+
+  /**
+   * Copies the entry in one slot to another slot
+   *
+   * @param toNode    - node id to copy to
+   * @param toIndex   - slot index to copy to
+   * @param fromNode  - node id to copy from
+   * @param fromIndex - slot index to copy from
+   */
+  private void copyEntry(int toNode, int toIndex, int fromNode, int fromIndex) {
+    setKey(2 * toNode + toIndex, keyAt(2 * fromNode + fromIndex));
+    values[2 * toNode + toIndex] = values[2 * fromNode + fromIndex];
+  }
+
+  /**
+   * @param node - node id
+   * @return true if the node holds a single key, else false
+   */
+  private boolean is2Node(int node) {
+    return keyCounts[node] == 1;
+  }
+
+  /**
+   * @param node - node id
+   * @return true if the node has no children, else false
+   */
+  private boolean isLeaf(int node) {
+    return children[3 * node] == NIL;
+  }
+
+  /**
+   * @return true if the tree is empty, else false
+   */
+  public boolean isEmpty() {
+    return root == NIL;
+  }
+
+  /**
+   * @return the number of keys stored in the tree
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Removes every key from the tree.
+   */
+  public void clear() {
+    Arrays.fill(values, 0, 2 * nodeCount, null);
+    nodeCount = 0;
+    freeList = NIL;
+    root = NIL;
+    size = 0;
+  }
+
+  /**
+   * Stores a value under key in one descent of the tree.
+   *
+   * @param key     - Key to identify the node
+   * @param value   - value contained by the node
+   * @param replace - true to replace the value of a key that is already present
+   * @return the value stored under key before the call, else null
+   */
+  protected final V putKey(long key, V value, boolean replace) {
+    if (root != NIL && descend(key)) {
+      int node = pathNodes[pathDepth - 1];
+      int index = pathSlots[pathDepth - 1];
+      V previous = value(node, index);
+      if (replace) {
+        values[2 * node + index] = value;
+      }
+      return previous;
+    }
+    insertAtPath(key, value);
+    return null;
+  }
+
+  /**
+   * Computes a new value for the given key from its current value (null if absent) and stores it,
+   * all in one descent of the tree. If the function returns null the key is removed, or not
+   * inserted if it was absent.
+   *
+   * @param key       - Key to identify the node
+   * @param remapping - function from the current value to the new value
+   * @return the new value stored under key
+   */
+  protected final V computeKey(long key, Function<? super V, ? extends V> remapping) {
+    if (root != NIL && descend(key)) {
+      int node = pathNodes[pathDepth - 1];
+      int index = pathSlots[pathDepth - 1];
+      V value = remapping.apply(value(node, index));
+      if (value == null) {
+        removeAtPath();
+      } else {
+        values[2 * node + index] = value;
+      }
+      return value;
+    }
+    V value = remapping.apply(null);
+    if (value != null) {
+      insertAtPath(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Removes the given key from the tree, merging with or borrowing from sibling nodes on the way
+   * back up the recorded path so that every leaf stays at the same depth.
+   *
+   * @param key - key to remove
+   * @return the value that was stored under key, else null
+   */
+  protected final V removeKey(long key) {
+    if (root == NIL || !descend(key)) {
+      return null;
+    }
+    return removeAtPath();
+  }
+
+  /**
+   * Searches the tree for a node with the specified key
+   *
+   * @param key - key to search for
+   * @return - value of the node with specified key, else null
+   */
+  protected final V valueOf(long key) {
+    int node = root;
+    while (node != NIL) {
+      long leftKey = keyAt(2 * node);
+      if (key == leftKey) {
+        return value(node, 0);
+      }
+      int slot;
+      if (key < leftKey) {
+        slot = 0;
+      } else if (is2Node(node)) {
+        slot = 1;
+      } else {
+        long rightKey = keyAt(2 * node + 1);
+        if (key == rightKey) {
+          return value(node, 1);
+        }
+        slot = (key < rightKey) ? 1 : 2;
+      }
+      node = children[3 * node + slot];
+    }
+    return null;
+  }
+
+  /**
+   * @param key - key to search for
+   * @return true if the key is in the tree, else false
+   */
+  protected final boolean hasKey(long key) {
+    return root != NIL && descend(key);
+  }
+
+  /**
+   * Descends a non-empty tree towards key, recording every node visited and the child slot taken
+   * from it. The last entry of the path is the node holding key, with the index of the matching
+   * key as its slot, or else the leaf where key would go, with the insert position as its slot.
+   *
+   * @param key - key to search for
+   * @return true if key is in the tree, else false
+   */
+  private boolean descend(long key) {
+    pathDepth = 0;
+    int node = root;
+    while (true) {
+      int slot;
+      long leftKey = keyAt(2 * node);
+      if (key == leftKey) {
+        pushPath(node, 0);
+        return true;
+      }
+      if (key < leftKey) {
+        slot = 0;
+      } else if (is2Node(node)) {
+        slot = 1;
+      } else {
+        long rightKey = keyAt(2 * node + 1);
+        if (key == rightKey) {
+          pushPath(node, 1);
+          return true;
+        }
+        slot = (key < rightKey) ? 1 : 2;
+      }
+      pushPath(node, slot);
+      if (isLeaf(node)) {
+        return false;
+      }
+      node = children[3 * node + slot];
+    }
+  }
+
+  /**
+   * Appends a node to the recorded path, growing the path arrays if needed
+   *
+   * @param node - node id
+   * @param slot - child slot taken from node
+   */
+  private void pushPath(int node, int slot) {
+    if (pathDepth == pathNodes.length) {
+      pathNodes = Arrays.copyOf(pathNodes, pathDepth * 2);
+      pathSlots = Arrays.copyOf(pathSlots, pathDepth * 2);
+    }
+    pathNodes[pathDepth] = node;
+    pathSlots[pathDepth] = slot;
+    pathDepth++;
+  }
+
+  /**
+   * Inserts a key that descend() did not find at the leaf it stopped at, splitting full nodes
+   * back up the recorded path.
+   *
+   * @param key   - key to insert
+   * @param value - value to insert
+   */
+  private void insertAtPath(long key, V value) {
+    size++;
+    if (root == NIL) {
+      root = allocNode();
+      setEntry(root, 0, key, value);
+      return;
+    }
+    long upKey = key;
+    Object upValue = value;
+    int upChild = NIL; // new node to the right of upKey
+    for (int d = pathDepth - 1; d >= 0; d--) {
+      int node = pathNodes[d];
+      int slot = pathSlots[d];
+      int c = 3 * node;
+      if (is2Node(node)) {
+        if (slot == 0) {
+          copyEntry(node, 1, node, 0);
+          setEntry(node, 0, upKey, upValue);
+          children[c + 2] = children[c + 1];
+          children[c + 1] = upChild;
+        } else {
+          setEntry(node, 1, upKey, upValue);
+          children[c + 2] = upChild;
+        }
+        keyCounts[node] = 2;
+        return;
+      }
+      // 3Node -> split into node (smallest key) and right (largest key), promote the middle key
+      int right = allocNode();
+      long promoteKey;
+      Object promoteValue;
+      if (slot == 0) {
+        promoteKey = keyAt(2 * node);
+        promoteValue = values[2 * node];
+        copyEntry(right, 0, node, 1);
+        setEntry(node, 0, upKey, upValue);
+        children[3 * right] = children[c + 1];
+        children[3 * right + 1] = children[c + 2];
+        children[c + 1] = upChild;
+      } else if (slot == 1) {
+        promoteKey = upKey;
+        promoteValue = upValue;
+        copyEntry(right, 0, node, 1);
+        children[3 * right] = upChild;
+        children[3 * right + 1] = children[c + 2];
+      } else {
+        promoteKey = keyAt(2 * node + 1);
+        promoteValue = values[2 * node + 1];
+        setEntry(right, 0, upKey, upValue);
+        children[3 * right] = children[c + 2];
+        children[3 * right + 1] = upChild;
+      }
+      values[2 * node + 1] = null;
+      keyCounts[node] = 1;
+      children[c + 2] = NIL;
+      upKey = promoteKey;
+      upValue = promoteValue;
+      upChild = right;
+    }
+    // The root was split -> grow the tree by one level
+    int newRoot = allocNode();
+    setEntry(newRoot, 0, upKey, upValue);
+    children[3 * newRoot] = root;
+    children[3 * newRoot + 1] = upChild;
+    root = newRoot;
+  }
+
+  /**
+   * Removes the key that descend() found. A key in an internal node is first replaced by its
+   * in-order successor, which always sits in a leaf.
+   *
+   * @return the value that was stored under the removed key
+   */
+  private V removeAtPath() {
+    size--;
+    int d = pathDepth - 1;
+    int node = pathNodes[d];
+    int index = pathSlots[d];
+    V removed = value(node, index);
+    if (!isLeaf(node)) {
+      // Successor is the leftmost key of the subtree to the right of the removed key
+      pathSlots[d] = index + 1;
+      int leaf = children[3 * node + index + 1];
+      while (true) {
+        pushPath(leaf, 0);
+        if (isLeaf(leaf)) {
+          break;
+        }
+        leaf = children[3 * leaf];
+      }
+      copyEntry(node, index, leaf, 0);
+      node = leaf;
+      index = 0;
+      d = pathDepth - 1;
+    }
+    // node is a leaf
+    if (!is2Node(node)) {
+      if (index == 0) {
+        copyEntry(node, 0, node, 1);
+      }
+      values[2 * node + 1] = null;
+      keyCounts[node] = 1;
+      return removed;
+    }
+    values[2 * node] = null;
+    fixEmptyNode(d, NIL);
+    return removed;
+  }
+
+  /**
+   * Restores the tree after the node at the given depth of the recorded path has lost its only
+   * key. The empty node either borrows a key through its parent from a 3Node sibling, or merges
+   * with a 2Node sibling. A merge takes a key away from the parent, which may leave the parent
+   * empty in turn.
+   *
+   * @param d    - depth of the empty node in the recorded path
+   * @param only - the single remaining child of the empty node, NIL if it is a leaf
+   */
+  private void fixEmptyNode(int d, int only) {
+    while (true) {
+      int hole = pathNodes[d];
+      // Special case: the root is empty -> its only child becomes the root
+      if (d == 0) {
+        root = only;
+        freeNode(hole);
+        return;
+      }
+      int parent = pathNodes[d - 1];
+      int pos = pathSlots[d - 1];
+      int p = 3 * parent;
+      int h = 3 * hole;
+      int merged;
+      keyCounts[hole] = 1;
+      // Case 1: hole is the left child of parent
+      if (pos == 0) {
+        int sibling = children[p + 1];
+        int s = 3 * sibling;
+        if (!is2Node(sibling)) { // Borrow from middle sibling
+          copyEntry(hole, 0, parent, 0);
+          copyEntry(parent, 0, sibling, 0);
+          copyEntry(sibling, 0, sibling, 1);
+          values[2 * sibling + 1] = null;
+          keyCounts[sibling] = 1;
+          children[h] = only;
+          children[h + 1] = children[s];
+          children[h + 2] = NIL;
+          children[s] = children[s + 1];
+          children[s + 1] = children[s + 2];
+          children[s + 2] = NIL;
+          return;
+        }
+        // Merge into middle sibling
+        copyEntry(sibling, 1, sibling, 0);
+        copyEntry(sibling, 0, parent, 0);
+        keyCounts[sibling] = 2;
+        children[s + 2] = children[s + 1];
+        children[s + 1] = children[s];
+        children[s] = only;
+        freeNode(hole);
+        if (!is2Node(parent)) {
+          copyEntry(parent, 0, parent, 1);
+          values[2 * parent + 1] = null;
+          keyCounts[parent] = 1;
+          children[p] = sibling;
+          children[p + 1] = children[p + 2];
+          children[p + 2] = NIL;
+          return;
+        }
+        merged = sibling;
+      }
+      // Case 2: hole is the middle child of parent
+      else if (pos == 1) {
+        int left = children[p];
+        int right = children[p + 2];
+        if (!is2Node(left)) { // Borrow from left sibling
+          copyEntry(hole, 0, parent, 0);
+          copyEntry(parent, 0, left, 1);
+          values[2 * left + 1] = null;
+          keyCounts[left] = 1;
+          children[h] = children[3 * left + 2];
+          children[h + 1] = only;
+          children[h + 2] = NIL;
+          children[3 * left + 2] = NIL;
+          return;
+        }
+        if (right != NIL && !is2Node(right)) { // Borrow from right sibling
+          int r = 3 * right;
+          copyEntry(hole, 0, parent, 1);
+          copyEntry(parent, 1, right, 0);
+          copyEntry(right, 0, right, 1);
+          values[2 * right + 1] = null;
+          keyCounts[right] = 1;
+          children[h] = only;
+          children[h + 1] = children[r];
+          children[h + 2] = NIL;
+          children[r] = children[r + 1];
+          children[r + 1] = children[r + 2];
+          children[r + 2] = NIL;
+          return;
+        }
+        // Merge into left sibling
+        copyEntry(left, 1, parent, 0);
+        keyCounts[left] = 2;
+        children[3 * left + 2] = only;
+        freeNode(hole);
+        if (!is2Node(parent)) {
+          copyEntry(parent, 0, parent, 1);
+          values[2 * parent + 1] = null;
+          keyCounts[parent] = 1;
+          children[p + 1] = children[p + 2];
+          children[p + 2] = NIL;
+          return;
+        }
+        merged = left;
+      }
+      // Case 3: hole is the right child of a 3Node parent
+      else {
+        int sibling = children[p + 1];
+        int s = 3 * sibling;
+        if (!is2Node(sibling)) { // Borrow from middle sibling
+          copyEntry(hole, 0, parent, 1);
+          copyEntry(parent, 1, sibling, 1);
+          values[2 * sibling + 1] = null;
+          keyCounts[sibling] = 1;
+          children[h] = children[s + 2];
+          children[h + 1] = only;
+          children[h + 2] = NIL;
+          children[s + 2] = NIL;
+          return;
+        }
+        // Merge into middle sibling; parent drops back to a 2Node
+        copyEntry(sibling, 1, parent, 1);
+        keyCounts[sibling] = 2;
+        children[s + 2] = only;
+        values[2 * parent + 1] = null;
+        keyCounts[parent] = 1;
+        children[p + 2] = NIL;
+        freeNode(hole);
+        return;
+      }
+      // parent was a 2Node and gave its key to the merge -> parent is now the empty node
+      values[2 * parent] = null;
+      only = merged;
+      d--;
+    }
+  }
+
+  /**
+   * Traverses the tree in order and adds all objects to an ArrayList
+   *
+   * @return ArrayList containing all objects in the tree
+   */
+  public ArrayList<V> traverse() {
+    ArrayList<V> list = new ArrayList<V>(size);
+    for (V value : this) {
+      list.add(value);
+    }
+    return list;
+  }
+
+  /**
+   * Returns the values whose keys lie between from and to, in ascending key order. Only the part
+   * of the tree between the two bounds is visited.
+   *
+   * @param from          - lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return ArrayList of the values in the range
+   */
+  protected final ArrayList<V> rangeOf(long from, boolean fromInclusive, long to,
+      boolean toInclusive) {
+    ArrayList<V> list = new ArrayList<V>();
+    TreeIterator itr = new TreeIterator(true, from, fromInclusive, true, to, toInclusive);
+    while (itr.hasNext()) {
+      itr.advance();
+      list.add(itr.curValue());
+    }
+    return list;
+  }
+
+  /**
+   * @param from          - lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return Iterator over boxed copies of the entries in the range in ascending key order
+   */
+  protected final TreeIterator rangeEntries(long from, boolean fromInclusive, long to,
+      boolean toInclusive) {
+    return new TreeIterator(true, from, fromInclusive, true, to, toInclusive);
+  }
+
+  /**
+   * @param from          - lower bound
+   * @param fromInclusive - true if a key equal to from should be included
+   * @param to            - upper bound
+   * @param toInclusive   - true if a key equal to to should be included
+   * @return Iterator over the values in the range in ascending key order
+   */
+  protected final Iterator<V> rangeValues(long from, boolean fromInclusive, long to,
+      boolean toInclusive) {
+    return new ValueIterator(new TreeIterator(true, from, fromInclusive, true, to, toInclusive));
+  }
+
+  /**
+   * Helper method for floorEntry and lowerEntry. Descends the tree once, remembering the closest
+   * slot to the left of key seen so far.
+   *
+   * @param key       - key to search for
+   * @param inclusive - true if an entry with a key equal to key may be returned
+   * @return the closest entry at or below key, else null
+   */
+  protected final InnerNode<K, V> lowerOrFloor(long key, boolean inclusive) {
+    int best = NIL; // 2 * id + index of the best slot so far
+    int node = root;
+    while (node != NIL) {
+      long leftKey = keyAt(2 * node);
+      if (key < leftKey || (key == leftKey && !inclusive)) {
+        node = children[3 * node];
+        continue;
+      }
+      best = 2 * node;
+      if (key == leftKey) {
+        break;
+      }
+      if (is2Node(node)) {
+        node = children[3 * node + 1];
+        continue;
+      }
+      long rightKey = keyAt(2 * node + 1);
+      if (key < rightKey || (key == rightKey && !inclusive)) {
+        node = children[3 * node + 1];
+      } else {
+        best = 2 * node + 1;
+        if (key == rightKey) {
+          break;
+        }
+        node = children[3 * node + 2];
+      }
+    }
+    return entryAt(best);
+  }
+
+  /**
+   * Helper method for ceilingEntry and higherEntry. Descends the tree once, remembering the
+   * closest slot to the right of key seen so far.
+   *
+   * @param key       - key to search for
+   * @param inclusive - true if an entry with a key equal to key may be returned
+   * @return the closest entry at or above key, else null
+   */
+  protected final InnerNode<K, V> higherOrCeiling(long key, boolean inclusive) {
+    int best = NIL; // 2 * id + index of the best slot so far
+    int node = root;
+    while (node != NIL) {
+      long leftKey = keyAt(2 * node);
+      if (key < leftKey || (key == leftKey && inclusive)) {
+        best = 2 * node;
+        if (key == leftKey) {
+          break;
+        }
+        node = children[3 * node];
+        continue;
+      }
+      if (is2Node(node)) {
+        node = children[3 * node + 1];
+        continue;
+      }
+      long rightKey = keyAt(2 * node + 1);
+      if (key < rightKey || (key == rightKey && inclusive)) {
+        best = 2 * node + 1;
+        if (key == rightKey) {
+          break;
+        }
+        node = children[3 * node + 1];
+      } else {
+        node = children[3 * node + 2];
+      }
+    }
+    return entryAt(best);
+  }
+
+  /**
+   * @param slot - 2 * id + index of a key slot, or NIL
+   * @return a new InnerNode holding the key and value of the slot, null for NIL
+   */
+  @SuppressWarnings("unchecked")
+  private InnerNode<K, V> entryAt(int slot) {
+    if (slot == NIL) {
+      return null;
+    }
+    return new InnerNode<K, V>(boxedKey(slot), (V) values[slot]);
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the values in the tree.
+   *
+   * @return Iterator over the values of the tree in ascending key order
+   */
+  @Override
+  public Iterator<V> iterator() {
+    return new ValueIterator(new TreeIterator(false, 0, false, false, 0, false));
+  }
+
+  /**
+   * Returns a lazy in-order iterator over the key/value pairs in the tree.
+   *
+   * @return Iterator over boxed copies of the entries of the tree in ascending key order
+   */
+  public Iterator<InnerNode<K, V>> entryIterator() {
+    return new TreeIterator(false, 0, false, false, 0, false);
+  }
+
+  /**
+   * @return a TreeIterator over every key of the tree, for the unboxed key iterators
+   */
+  protected final TreeIterator keySlots() {
+    return new TreeIterator(false, 0, false, false, 0, false);
+  }
+
+  /**
+   * Iterator over the values visited by a TreeIterator
+   *
+   * @author fvanorde
+   *
+   */
+  private class ValueIterator implements Iterator<V> {
+    private final TreeIterator itr;
+
+    /**
+     * @param itr - TreeIterator to take the values from
+     */
+    private ValueIterator(TreeIterator itr) {
+      this.itr = itr;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return itr.hasNext();
+    }
+
+    @Override
+    public V next() {
+      itr.advance();
+      return itr.curValue();
+    }
+  }
+
+  /**
+   * In-order iterator over the key slots of the tree, using an explicit stack of (node, index)
+   * frames. advance() moves to the next slot without allocating; next() wraps it in a new
+   * InnerNode.
+   *
+   * @author fvanorde
+   *
+   */
+  protected class TreeIterator implements Iterator<InnerNode<K, V>> {
+    private int[] nodeStack;
+    private int[] indexStack;
+    private int depth;
+    private boolean bounded; // false if there is no upper bound
+    private long hi;
+    private boolean hiInclusive;
+    private int cur; // 2 * id + index of the slot last returned
+
+    /**
+     * Constructor for a TreeIterator over the keys between lo and hi
+     *
+     * @param hasLo       - false to start at the smallest key
+     * @param lo          - lower bound
+     * @param loInclusive - true if a key equal to lo should be returned
+     * @param hasHi       - false to run to the largest key
+     * @param hi          - upper bound
+     * @param hiInclusive - true if a key equal to hi should be returned
+     */
+    private TreeIterator(boolean hasLo, long lo, boolean loInclusive, boolean hasHi, long hi,
+        boolean hiInclusive) {
+      nodeStack = new int[16];
+      indexStack = new int[16];
+      depth = 0;
+      this.bounded = hasHi;
+      this.hi = hi;
+      this.hiInclusive = hiInclusive;
+      cur = NIL;
+      if (!hasLo) {
+        pushLeftPath(root);
+      } else {
+        seek(lo, loInclusive);
+      }
+    }
+
+    /**
+     * Builds the stack so that the next slot returned holds the first key greater than (or equal
+     * to, if inclusive) lo
+     *
+     * @param lo        - lower bound
+     * @param inclusive - true if a key equal to lo should be returned
+     */
+    private void seek(long lo, boolean inclusive) {
+      int node = root;
+      while (node != NIL) {
+        long leftKey = keyAt(2 * node);
+        if (lo < leftKey || (lo == leftKey && inclusive)) {
+          push(node, 0);
+          if (lo == leftKey) {
+            return;
+          }
+          node = children[3 * node];
+        } else if (is2Node(node)) {
+          node = children[3 * node + 1];
+        } else {
+          long rightKey = keyAt(2 * node + 1);
+          if (lo < rightKey || (lo == rightKey && inclusive)) {
+            push(node, 1);
+            if (lo == rightKey) {
+              return;
+            }
+            node = children[3 * node + 1];
+          } else {
+            node = children[3 * node + 2];
+          }
+        }
+      }
+    }
+
+    /**
+     * Pushes node and all of its leftmost descendants onto the stack
+     *
+     * @param node - node id to start from, NIL for none
+     */
+    private void pushLeftPath(int node) {
+      while (node != NIL) {
+        push(node, 0);
+        node = children[3 * node];
+      }
+    }
+
+    /**
+     * Pushes a frame onto the stack, growing the stack if needed
+     *
+     * @param node  - node id of the frame
+     * @param index - index of the next key to return from node
+     */
+    private void push(int node, int index) {
+      if (depth == nodeStack.length) {
+        nodeStack = Arrays.copyOf(nodeStack, depth * 2);
+        indexStack = Arrays.copyOf(indexStack, depth * 2);
+      }
+      nodeStack[depth] = node;
+      indexStack[depth] = index;
+      depth++;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (depth == 0) {
+        return false;
+      }
+      if (!bounded) {
+        return true;
+      }
+      long key = keyAt(2 * nodeStack[depth - 1] + indexStack[depth - 1]);
+      return key < hi || (key == hi && hiInclusive);
+    }
+
+    /**
+     * Moves to the next slot in key order
+     *
+     * @return 2 * id + index of the slot moved to
+     */
+    protected int advance() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      depth--;
+      int node = nodeStack[depth];
+      int index = indexStack[depth];
+      if (index == 0 && !is2Node(node)) {
+        // Come back for the right key of a 3Node once the middle subtree is done
+        push(node, 1);
+      }
+      if (!isLeaf(node)) {
+        pushLeftPath(children[3 * node + index + 1]);
+      }
+      cur = 2 * node + index;
+      return cur;
+    }
+
+    /**
+     * @return value of the slot last moved to
+     */
+    @SuppressWarnings("unchecked")
+    private V curValue() {
+      return (V) values[cur];
+    }
+
+    @Override
+    public InnerNode<K, V> next() {
+      advance();
+      return entryAt(cur);
+    }
+  }
+
+  /**
+   * @return bytes of heap in use after a garbage collection
+   */
+  protected static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,656 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: RoaringBitmap
+// Files: RoaringBitmap.java, FacetIndex.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Compressed set of non-negative ints in the style of a Roaring bitmap. Values are grouped by
+ * their high 16 bits into containers of up to 65536 values. A container holding at most 4096
+ * values is a sorted char array of the low 16 bits; a fuller one is a 1024-word bitmap. Sparse
+ * sets stay small, and dense sets are combined a word at a time.
+ *
+ * and, or and andNot return new bitmaps and never change their arguments, so a bitmap kept in an
+ * index can be combined freely.
+ *
+ * @author fvanorde
+ *
+ */
+public class RoaringBitmap {
+  private static final int ARRAY_MAX = 4096; // largest cardinality kept as an array container
+  private static final int BITMAP_WORDS = 1024; // 65536 bits
+
+  private char[] highs; // sorted high 16 bits of each container
+  private Object[] containers; // char[] array container or long[] bitmap container
+  private int[] cardinalities; // number of values in each container
+  private int size; // number of containers in use
+
+  /**
+   * Constructor for an empty RoaringBitmap
+   */
+  public RoaringBitmap() {
+    highs = new char[4];
+    containers = new Object[4];
+    cardinalities = new int[4];
+    size = 0;
+  }
+
+  /**
+   * Constructor for a RoaringBitmap holding the given values
+   *
+   * @param values - values to add, each at least 0
+   */
+  public RoaringBitmap(int... values) {
+    this();
+    for (int value : values) {
+      add(value);
+    }
+  }
+
+  /**
+   * @return a new bitmap holding the same values as this one
+   */
+  public RoaringBitmap copy() {
+    RoaringBitmap result = new RoaringBitmap();
+    for (int i = 0; i < size; i++) {
+      result.appendCopy(this, i);
+    }
+    return result;
+  }
+
+  /**
+   * @param from - first value, at least 0
+   * @param to   - value after the last
+   * @return a bitmap holding every value from from up to but not including to
+   */
+  public static RoaringBitmap range(int from, int to) {
+    RoaringBitmap result = new RoaringBitmap();
+    int value = from;
+    while (value < to) {
+      int high = value >>> 16;
+      int last = Math.min(to, (high + 1) << 16); // value after the last one in this container
+      long[] words = new long[BITMAP_WORDS];
+      for (int low = value & 0xFFFF; low <= ((last - 1) & 0xFFFF); low++) {
+        words[low >>> 6] |= 1L << low;
+      }
+      result.appendWords((char) high, words, last - value);
+      value = last;
+    }
+    return result;
+  }
+
+  /**
+   * Adds a value to the bitmap
+   *
+   * @param value - value to add, at least 0
+   * @return true if the value was not already in the bitmap, else false
+   */
+  public boolean add(int value) {
+    checkValue(value);
+    char high = (char) (value >>> 16);
+    char low = (char) value;
+    int index = findContainer(high);
+    if (index < 0) {
+      index = -index - 1;
+      insertContainer(index, high, new char[] {low}, 1);
+      return true;
+    }
+    Object container = containers[index];
+    int cardinality = cardinalities[index];
+    if (container instanceof long[]) {
+      long[] words = (long[]) container;
+      long bit = 1L << low;
+      if ((words[low >>> 6] & bit) != 0) {
+        return false;
+      }
+      words[low >>> 6] |= bit;
+      cardinalities[index]++;
+      return true;
+    }
+    char[] array = (char[]) container;
+    int position = Arrays.binarySearch(array, 0, cardinality, low);
+    if (position >= 0) {
+      return false;
+    }
+    position = -position - 1;
+    if (cardinality == ARRAY_MAX) { // Full array -> switch to a bitmap
+      long[] words = toWords(array, cardinality);
+      words[low >>> 6] |= 1L << low;
+      containers[index] = words;
+    } else {
+      if (cardinality == array.length) {
+        array = Arrays.copyOf(array, Math.min(ARRAY_MAX, cardinality * 2));
+        containers[index] = array;
+      }
+      System.arraycopy(array, position, array, position + 1, cardinality - position);
+      array[position] = low;
+    }
+    cardinalities[index]++;
+    return true;
+  }
+
+  /**
+   * Removes a value from the bitmap
+   *
+   * @param value - value to remove
+   * @return true if the value was in the bitmap, else false
+   */
+  public boolean remove(int value) {
+    if (value < 0) {
+      return false;
+    }
+    int index = findContainer((char) (value >>> 16));
+    if (index < 0) {
+      return false;
+    }
+    char low = (char) value;
+    Object container = containers[index];
+    int cardinality = cardinalities[index];
+    if (container instanceof long[]) {
+      long[] words = (long[]) container;
+      long bit = 1L << low;
+      if ((words[low >>> 6] & bit) == 0) {
+        return false;
+      }
+      words[low >>> 6] &= ~bit;
+      if (cardinality - 1 <= ARRAY_MAX) { // Sparse again -> switch back to an array
+        containers[index] = toArray(words, cardinality - 1);
+      }
+    } else {
+      char[] array = (char[]) container;
+      int position = Arrays.binarySearch(array, 0, cardinality, low);
+      if (position < 0) {
+        return false;
+      }
+      System.arraycopy(array, position + 1, array, position, cardinality - position - 1);
+    }
+    cardinalities[index]--;
+    if (cardinalities[index] == 0) {
+      removeContainer(index);
+    }
+    return true;
+  }
+
+  /**
+   * @param value - value to look for
+   * @return true if the value is in the bitmap, else false
+   */
+  public boolean contains(int value) {
+    if (value < 0) {
+      return false;
+    }
+    int index = findContainer((char) (value >>> 16));
+    if (index < 0) {
+      return false;
+    }
+    char low = (char) value;
+    Object container = containers[index];
+    if (container instanceof long[]) {
+      return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+    }
+    return Arrays.binarySearch((char[]) container, 0, cardinalities[index], low) >= 0;
+  }
+
+  /**
+   * @return the number of values in the bitmap
+   */
+  public int cardinality() {
+    int total = 0;
+    for (int i = 0; i < size; i++) {
+      total += cardinalities[i];
+    }
+    return total;
+  }
+
+  /**
+   * @return true if the bitmap holds no values, else false
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return the values of the bitmap in ascending order
+   */
+  public int[] toArray() {
+    int[] values = new int[cardinality()];
+    int count = 0;
+    PrimitiveIterator.OfInt iterator = iterator();
+    while (iterator.hasNext()) {
+      values[count++] = iterator.nextInt();
+    }
+    return values;
+  }
+
+  /**
+   * @return an iterator over the values of the bitmap in ascending order
+   */
+  public PrimitiveIterator.OfInt iterator() {
+    return new PrimitiveIterator.OfInt() {
+      private int index = 0; // container being read
+      private int position = 0; // next array slot, or next bit of a bitmap container
+
+      @Override
+      public boolean hasNext() {
+        while (index < size) {
+          Object container = containers[index];
+          if (container instanceof char[]) {
+            if (position < cardinalities[index]) {
+              return true;
+            }
+          } else if (position < 65536) {
+            long[] words = (long[]) container;
+            int word = position >>> 6;
+            long bits = words[word] & (-1L << position); // bits at or after position
+            while (bits == 0 && ++word < BITMAP_WORDS) {
+              bits = words[word];
+            }
+            if (bits != 0) {
+              position = (word << 6) + Long.numberOfTrailingZeros(bits);
+              return true;
+            }
+          }
+          index++;
+          position = 0;
+        }
+        return false;
+      }
+
+      @Override
+      public int nextInt() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        int high = highs[index] << 16;
+        Object container = containers[index];
+        if (container instanceof char[]) {
+          return high | ((char[]) container)[position++];
+        }
+        return high | position++;
+      }
+    };
+  }
+
+  /**
+   * @param a - first bitmap
+   * @param b - second bitmap
+   * @return a new bitmap of the values in both a and b
+   */
+  public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+    RoaringBitmap result = new RoaringBitmap();
+    int i = 0;
+    int j = 0;
+    while (i < a.size && j < b.size) {
+      if (a.highs[i] < b.highs[j]) {
+        i++;
+      } else if (a.highs[i] > b.highs[j]) {
+        j++;
+      } else {
+        Object x = a.containers[i];
+        Object y = b.containers[j];
+        if (x instanceof char[] && y instanceof char[]) {
+          char[] out = new char[Math.min(a.cardinalities[i], b.cardinalities[j])];
+          int count = intersect((char[]) x, a.cardinalities[i], (char[]) y, b.cardinalities[j],
+              out);
+          result.appendArray(a.highs[i], out, count);
+        } else if (x instanceof char[]) {
+          result.appendArray(a.highs[i], filter((char[]) x, a.cardinalities[i], (long[]) y, true));
+        } else if (y instanceof char[]) {
+          result.appendArray(a.highs[i], filter((char[]) y, b.cardinalities[j], (long[]) x, true));
+        } else {
+          long[] words = new long[BITMAP_WORDS];
+          int count = 0;
+          for (int w = 0; w < BITMAP_WORDS; w++) {
+            words[w] = ((long[]) x)[w] & ((long[]) y)[w];
+            count += Long.bitCount(words[w]);
+          }
+          result.appendWords(a.highs[i], words, count);
+        }
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param a - first bitmap
+   * @param b - second bitmap
+   * @return a new bitmap of the values in a or b
+   */
+  public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+    RoaringBitmap result = new RoaringBitmap();
+    int i = 0;
+    int j = 0;
+    while (i < a.size || j < b.size) {
+      if (j == b.size || (i < a.size && a.highs[i] < b.highs[j])) {
+        result.appendCopy(a, i++);
+      } else if (i == a.size || a.highs[i] > b.highs[j]) {
+        result.appendCopy(b, j++);
+      } else {
+        Object x = a.containers[i];
+        Object y = b.containers[j];
+        if (x instanceof char[] && y instanceof char[]
+            && a.cardinalities[i] + b.cardinalities[j] <= ARRAY_MAX) {
+          char[] out = new char[a.cardinalities[i] + b.cardinalities[j]];
+          int count = union((char[]) x, a.cardinalities[i], (char[]) y, b.cardinalities[j], out);
+          result.appendArray(a.highs[i], out, count);
+        } else {
+          long[] words = (x instanceof long[]) ? ((long[]) x).clone()
+              : toWords((char[]) x, a.cardinalities[i]);
+          if (y instanceof long[]) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+              words[w] |= ((long[]) y)[w];
+            }
+          } else {
+            char[] array = (char[]) y;
+            for (int k = 0; k < b.cardinalities[j]; k++) {
+              words[array[k] >>> 6] |= 1L << array[k];
+            }
+          }
+          result.appendWords(a.highs[i], words, bitCount(words));
+        }
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param a - bitmap to take values from
+   * @param b - bitmap of values to leave out
+   * @return a new bitmap of the values in a but not in b
+   */
+  public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+    RoaringBitmap result = new RoaringBitmap();
+    int j = 0;
+    for (int i = 0; i < a.size; i++) {
+      while (j < b.size && b.highs[j] < a.highs[i]) {
+        j++;
+      }
+      if (j == b.size || b.highs[j] != a.highs[i]) {
+        result.appendCopy(a, i);
+        continue;
+      }
+      Object x = a.containers[i];
+      Object y = b.containers[j];
+      if (x instanceof char[] && y instanceof char[]) {
+        char[] out = new char[a.cardinalities[i]];
+        int count = difference((char[]) x, a.cardinalities[i], (char[]) y, b.cardinalities[j],
+            out);
+        result.appendArray(a.highs[i], out, count);
+      } else if (x instanceof char[]) {
+        result.appendArray(a.highs[i], filter((char[]) x, a.cardinalities[i], (long[]) y, false));
+      } else {
+        long[] words = ((long[]) x).clone();
+        if (y instanceof long[]) {
+          for (int w = 0; w < BITMAP_WORDS; w++) {
+            words[w] &= ~((long[]) y)[w];
+          }
+        } else {
+          char[] array = (char[]) y;
+          for (int k = 0; k < b.cardinalities[j]; k++) {
+            words[array[k] >>> 6] &= ~(1L << array[k]);
+          }
+        }
+        result.appendWords(a.highs[i], words, bitCount(words));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return a String of the values of the bitmap, such as {1, 5, 70000}
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("{");
+    PrimitiveIterator.OfInt iterator = iterator();
+    while (iterator.hasNext()) {
+      builder.append(iterator.nextInt());
+      if (iterator.hasNext()) {
+        builder.append(", ");
+      }
+    }
+    return builder.append('}').toString();
+  }
+
+  /**
+   * @param value - value to check
+   * @throws IllegalArgumentException if the value is negative
+   */
+  private static void checkValue(int value) {
+    if (value < 0) {
+      throw new java.lang.IllegalArgumentException("Cannot store a negative value: " + value);
+    }
+  }
+
+  /**
+   * @param high - high 16 bits of a value
+   * @return the index of the container for high, or -(insertion point) - 1 if there is none
+   */
+  private int findContainer(char high) {
+    return Arrays.binarySearch(highs, 0, size, high);
+  }
+
+  /**
+   * Inserts a container at the given index, growing the arrays if needed
+   *
+   * @param index       - index to insert at
+   * @param high        - high 16 bits of the values in the container
+   * @param container   - char[] or long[] container
+   * @param cardinality - number of values in the container
+   */
+  private void insertContainer(int index, char high, Object container, int cardinality) {
+    if (size == highs.length) {
+      highs = Arrays.copyOf(highs, size * 2);
+      containers = Arrays.copyOf(containers, size * 2);
+      cardinalities = Arrays.copyOf(cardinalities, size * 2);
+    }
+    System.arraycopy(highs, index, highs, index + 1, size - index);
+    System.arraycopy(containers, index, containers, index + 1, size - index);
+    System.arraycopy(cardinalities, index, cardinalities, index + 1, size - index);
+    highs[index] = high;
+    containers[index] = container;
+    cardinalities[index] = cardinality;
+    size++;
+  }
+
+  /**
+   * @param index - index of the container to remove
+   */
+  private void removeContainer(int index) {
+    System.arraycopy(highs, index + 1, highs, index, size - index - 1);
+    System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+    System.arraycopy(cardinalities, index + 1, cardinalities, index, size - index - 1);
+    size--;
+    containers[size] = null;
+  }
+
+  /**
+   * Adds a copy of a container of another bitmap after the last container of this one
+   *
+   * @param other - bitmap to copy from
+   * @param index - index of the container in other
+   */
+  private void appendCopy(RoaringBitmap other, int index) {
+    Object container = other.containers[index];
+    Object copy = (container instanceof long[]) ? ((long[]) container).clone()
+        : Arrays.copyOf((char[]) container, other.cardinalities[index]);
+    insertContainer(size, other.highs[index], copy, other.cardinalities[index]);
+  }
+
+  /**
+   * Adds an array container after the last container, unless it is empty
+   *
+   * @param high  - high 16 bits of the values
+   * @param array - sorted low 16 bits
+   * @param count - number of values in array
+   */
+  private void appendArray(char high, char[] array, int count) {
+    if (count > 0) {
+      insertContainer(size, high, array, count);
+    }
+  }
+
+  /**
+   * Adds a whole array container after the last container, unless it is empty
+   *
+   * @param high  - high 16 bits of the values
+   * @param array - sorted low 16 bits, exactly as long as the number of values
+   */
+  private void appendArray(char high, char[] array) {
+    appendArray(high, array, array.length);
+  }
+
+  /**
+   * Adds a container for a bitmap after the last container, as an array if it is sparse enough
+   * and not at all if it is empty
+   *
+   * @param high  - high 16 bits of the values
+   * @param words - 1024-word bitmap of the low 16 bits
+   * @param count - number of bits set in words
+   */
+  private void appendWords(char high, long[] words, int count) {
+    if (count == 0) {
+      return;
+    }
+    insertContainer(size, high, (count <= ARRAY_MAX) ? toArray(words, count) : words, count);
+  }
+
+  /**
+   * @param array       - sorted low 16 bits
+   * @param cardinality - number of values in array
+   * @return a 1024-word bitmap of the values
+   */
+  private static long[] toWords(char[] array, int cardinality) {
+    long[] words = new long[BITMAP_WORDS];
+    for (int k = 0; k < cardinality; k++) {
+      words[array[k] >>> 6] |= 1L << array[k];
+    }
+    return words;
+  }
+
+  /**
+   * @param words       - 1024-word bitmap
+   * @param cardinality - number of bits set in words
+   * @return a sorted array of the set bits
+   */
+  private static char[] toArray(long[] words, int cardinality) {
+    char[] array = new char[cardinality];
+    int count = 0;
+    for (int w = 0; w < BITMAP_WORDS; w++) {
+      long bits = words[w];
+      while (bits != 0) {
+        array[count++] = (char) ((w << 6) + Long.numberOfTrailingZeros(bits));
+        bits &= bits - 1;
+      }
+    }
+    return array;
+  }
+
+  /**
+   * @param words - 1024-word bitmap
+   * @return the number of bits set in words
+   */
+  private static int bitCount(long[] words) {
+    int count = 0;
+    for (long word : words) {
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+  /**
+   * @param array       - sorted low 16 bits
+   * @param cardinality - number of values in array
+   * @param words       - 1024-word bitmap
+   * @param keep        - true to keep the values set in words, false to keep the values not set
+   * @return a sorted array of the kept values
+   */
+  private static char[] filter(char[] array, int cardinality, long[] words, boolean keep) {
+    char[] out = new char[cardinality];
+    int count = 0;
+    for (int k = 0; k < cardinality; k++) {
+      char low = array[k];
+      if (((words[low >>> 6] & (1L << low)) != 0) == keep) {
+        out[count++] = low;
+      }
+    }
+    return Arrays.copyOf(out, count);
+  }
+
+  /**
+   * Writes the values in both sorted arrays to out
+   *
+   * @return the number of values written
+   */
+  private static int intersect(char[] x, int xCount, char[] y, int yCount, char[] out) {
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < xCount && j < yCount) {
+      if (x[i] < y[j]) {
+        i++;
+      } else if (x[i] > y[j]) {
+        j++;
+      } else {
+        out[count++] = x[i];
+        i++;
+        j++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Writes the values in either sorted array to out
+   *
+   * @return the number of values written
+   */
+  private static int union(char[] x, int xCount, char[] y, int yCount, char[] out) {
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < xCount || j < yCount) {
+      if (j == yCount || (i < xCount && x[i] < y[j])) {
+        out[count++] = x[i++];
+      } else if (i == xCount || x[i] > y[j]) {
+        out[count++] = y[j++];
+      } else {
+        out[count++] = x[i];
+        i++;
+        j++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Writes the values in sorted array x but not in sorted array y to out
+   *
+   * @return the number of values written
+   */
+  private static int difference(char[] x, int xCount, char[] y, int yCount, char[] out) {
+    int count = 0;
+    int j = 0;
+    for (int i = 0; i < xCount; i++) {
+      while (j < yCount && y[j] < x[i]) {
+        j++;
+      }
+      if (j == yCount || y[j] != x[i]) {
+        out[count++] = x[i];
+      }
+    }
+    return count;
+  }
+}
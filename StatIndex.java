@@ -0,0 +1,255 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.function.ToLongFunction;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: StatIndex
+// Files: StatIndex.java, LongB2_3Tree.java, EnemyDataParser.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Sorted index of enemies by a numeric stat such as HP, souls or souls per HP. Enemies whose stat
+ * is not known are left out. Stat values are kept in a LongB2_3Tree, each mapping to a B2_3Tree
+ * of the enemies with that value under their usual keys, so enemies with equal stats come back in
+ * key order.
+ *
+ * The values are stored negated, so the tree runs from the highest stat to the lowest. top() is
+ * then a plain in-order walk, and both top() and range() take O(log n + k) for k results.
+ *
+ * @author fvanorde
+ *
+ */
+public class StatIndex {
+  /** Value returned by a stat function for an enemy that should be left out of the index */
+  public static final long NONE = Long.MIN_VALUE;
+
+  private final ToLongFunction<Enemy> stat;
+  private LongB2_3Tree<B2_3Tree<String, Enemy>> postings; // -stat -> enemies with it
+  private int size;
+
+  /**
+   * Constructor for a StatIndex
+   *
+   * @param stat - function giving the stat of an enemy, or NONE to leave it out; values are
+   *             compared as longs and must be greater than NONE
+   */
+  public StatIndex(ToLongFunction<Enemy> stat) {
+    this.stat = stat;
+    postings = new LongB2_3Tree<B2_3Tree<String, Enemy>>();
+    size = 0;
+  }
+
+  /**
+   * @return an index on Enemy.getHP()
+   */
+  public static StatIndex byHP() {
+    return new StatIndex(enemy -> (enemy.getHP() == Enemy.UNKNOWN) ? NONE : enemy.getHP());
+  }
+
+  /**
+   * @return an index on Enemy.getSouls()
+   */
+  public static StatIndex bySouls() {
+    return new StatIndex(enemy -> (enemy.getSouls() == Enemy.UNKNOWN) ? NONE : enemy.getSouls());
+  }
+
+  /**
+   * Index on souls divided by HP. The ratio is stored as the bits of the double, which sort the
+   * same way as the doubles themselves since the ratio is never negative; use ratioKey() to turn a
+   * ratio into a bound for range().
+   *
+   * @return an index on souls per HP, leaving out enemies with unknown or zero HP or unknown souls
+   */
+  public static StatIndex bySoulsPerHP() {
+    return new StatIndex(enemy -> (enemy.getHP() <= 0 || enemy.getSouls() == Enemy.UNKNOWN) ? NONE
+        : ratioKey((double) enemy.getSouls() / enemy.getHP()));
+  }
+
+  /**
+   * @param ratio - ratio at least 0
+   * @return the index value bySoulsPerHP() stores for the ratio
+   */
+  public static long ratioKey(double ratio) {
+    return Double.doubleToLongBits(ratio);
+  }
+
+  /**
+   * Replaces the contents of the index with the enemies of the given tree
+   *
+   * @param tree - tree of all enemies
+   */
+  public void rebuild(B2_3Tree<String, Enemy> tree) {
+    clear();
+    for (Enemy enemy : tree) {
+      add(enemy);
+    }
+  }
+
+  /**
+   * Adds an enemy under its stat, if it has one
+   *
+   * @param enemy - enemy to add
+   */
+  public void add(Enemy enemy) {
+    long value = stat.applyAsLong(enemy);
+    if (value == NONE) {
+      return;
+    }
+    try {
+      B2_3Tree<String, Enemy> posting = postings.get(-value);
+      if (posting == null) {
+        posting = new B2_3Tree<String, Enemy>();
+        postings.insert(-value, posting);
+      }
+      if (posting.put(enemy.getKey(), enemy) == null) {
+        size++;
+      }
+    } catch (IllegalKeyException e) { // Enemy keys are never null
+      System.out.println(e.getMessage());
+    }
+  }
+
+  /**
+   * Removes an enemy from under its stat. The stat must not have changed since the enemy was
+   * added.
+   *
+   * @param enemy - enemy to remove
+   */
+  public void remove(Enemy enemy) {
+    long value = stat.applyAsLong(enemy);
+    if (value == NONE) {
+      return;
+    }
+    B2_3Tree<String, Enemy> posting = postings.get(-value);
+    if (posting != null && posting.remove(enemy.getKey()) != null) {
+      size--;
+      if (posting.isEmpty()) {
+        postings.remove(-value);
+      }
+    }
+  }
+
+  /**
+   * Removes every enemy from the index
+   */
+  public void clear() {
+    postings = new LongB2_3Tree<B2_3Tree<String, Enemy>>();
+    size = 0;
+  }
+
+  /**
+   * @return the number of enemies in the index
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param min - lowest stat to include
+   * @param max - highest stat to include
+   * @return the enemies with a stat between min and max inclusive, from the lowest stat to the
+   *         highest and in key order for equal stats
+   */
+  public ArrayList<Enemy> range(long min, long max) {
+    ArrayList<Enemy> result = new ArrayList<Enemy>();
+    long low = Math.max(min, NONE + 1); // NONE is never stored, and -NONE would overflow
+    if (low > max) {
+      return result;
+    }
+    Iterator<B2_3Tree<String, Enemy>> values =
+        postings.rangeValueIterator(-max, true, -low, true);
+    while (values.hasNext()) {
+      ArrayList<Enemy> posting = values.next().traverse();
+      Collections.reverse(posting); // Reversed again below, back into key order
+      result.addAll(posting);
+    }
+    Collections.reverse(result);
+    return result;
+  }
+
+  /**
+   * @param k - largest number of enemies to return
+   * @return up to k enemies with the highest stats, highest first and in key order for equal
+   *         stats
+   */
+  public ArrayList<Enemy> top(int k) {
+    ArrayList<Enemy> result = new ArrayList<Enemy>();
+    Iterator<B2_3Tree<String, Enemy>> values = postings.iterator();
+    while (result.size() < k && values.hasNext()) {
+      for (Enemy enemy : values.next()) {
+        if (result.size() == k) {
+          break;
+        }
+        result.add(enemy);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Compares indexed stat queries against sorting or filtering every enemy.
+   *
+   * @param args - optional number of copies of the CSV rows in the generated export, defaults to
+   *             500
+   */
+  public static void main(String[] args) {
+    int copies = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+    EnemyDataParser parser = new EnemyDataParser();
+    parser.parseCSV(new File("EnemiesCSV.csv"));
+    System.out.println("Top 10 souls per HP:");
+    for (Enemy enemy : parser.getTopSoulsPerHP(10)) {
+      System.out.println("  " + enemy + ": " + enemy.getSouls() + " souls, " + enemy.getHP()
+          + " HP");
+    }
+    System.out.println("HP between 500 and 2000: "
+        + parser.getEnemiesWithHPBetween(500, 2000).size() + " enemies");
+    EnemyDataParser big = new EnemyDataParser();
+    try {
+      big.parseCSV(EnemyCSVGenerator.write(EnemyCSVGenerator.lines(copies)));
+    } catch (IOException e) {
+      e.printStackTrace();
+      return;
+    }
+    B2_3Tree<String, Enemy> tree = big.getTree();
+    StatIndex hp = byHP();
+    hp.rebuild(tree);
+    StatIndex ratio = bySoulsPerHP();
+    ratio.rebuild(tree);
+    System.out.println(tree.size() + " enemies");
+    int rounds = 20;
+    for (int round = 0; round < 3; round++) { // First rounds warm up the JIT
+      long start = System.nanoTime();
+      int found = 0;
+      for (int i = 0; i < rounds; i++) {
+        found += ratio.top(10).size() + hp.range(500, 2000).size();
+      }
+      long indexMicros = (System.nanoTime() - start) / rounds / 1000;
+      start = System.nanoTime();
+      for (int i = 0; i < rounds; i++) {
+        ArrayList<Enemy> known = new ArrayList<Enemy>();
+        for (Enemy enemy : tree) {
+          if (enemy.getHP() > 0 && enemy.getSouls() != Enemy.UNKNOWN) {
+            known.add(enemy);
+          }
+          if (enemy.getHP() >= 500 && enemy.getHP() <= 2000) {
+            found++;
+          }
+        }
+        known.sort((x, y) -> Double.compare((double) y.getSouls() / y.getHP(),
+            (double) x.getSouls() / x.getHP()));
+        found += Math.min(10, known.size());
+      }
+      long scanMicros = (System.nanoTime() - start) / rounds / 1000;
+      System.out.println("Round " + round + ": top 10 souls per HP and HP 500-2000, index "
+          + indexMicros + " us, scan and sort " + scanMicros + " us (" + found + " hits)");
+    }
+  }
+}
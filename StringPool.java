@@ -0,0 +1,138 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: StringPool
+// Files: StringPool.java, CSVReader.java, MappedCSVReader.java, EnemyDataParser.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Dictionary of the strings seen while loading a file, looked up by their UTF-8 bytes. A field
+ * whose bytes were seen before comes back as the same String object without being decoded again,
+ * so the thousands of rows sharing a handful of areas, types and damage types share their
+ * strings too, and hashing them is only ever done once.
+ *
+ * Meant to live for one load: it keeps every distinct string it has handed out. Not safe to
+ * share between threads.
+ *
+ * @author fvanorde
+ *
+ */
+public class StringPool {
+  private byte[][] keys; // UTF-8 bytes of each string, null for an empty slot
+  private String[] strings;
+  private int[] hashes;
+  private int size;
+
+  /**
+   * Constructor for an empty StringPool
+   */
+  public StringPool() {
+    keys = new byte[256][];
+    strings = new String[256];
+    hashes = new int[256];
+    size = 0;
+  }
+
+  /**
+   * Returns the string for a range of UTF-8 bytes, decoding it only the first time it is seen
+   *
+   * @param bytes  - array holding the text
+   * @param start  - index of the first byte of the text
+   * @param length - number of bytes of text
+   * @return the pooled String for the bytes
+   */
+  public String intern(byte[] bytes, int start, int length) {
+    int hash = 1;
+    for (int i = start; i < start + length; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    int mask = keys.length - 1;
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    while (keys[slot] != null) {
+      if (hashes[slot] == hash && Arrays.equals(keys[slot], 0, keys[slot].length, bytes, start,
+          start + length)) {
+        return strings[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    String str = new String(bytes, start, length, StandardCharsets.UTF_8);
+    keys[slot] = Arrays.copyOfRange(bytes, start, start + length);
+    strings[slot] = str;
+    hashes[slot] = hash;
+    size++;
+    if (size * 2 > keys.length) { // Keep the table at most half full
+      grow();
+    }
+    return str;
+  }
+
+  /**
+   * @return the number of distinct strings in the pool
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Doubles the table and puts every string back in
+   */
+  private void grow() {
+    byte[][] oldKeys = keys;
+    String[] oldStrings = strings;
+    int[] oldHashes = hashes;
+    keys = new byte[oldKeys.length * 2][];
+    strings = new String[oldKeys.length * 2];
+    hashes = new int[oldKeys.length * 2];
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        int slot = (oldHashes[i] ^ (oldHashes[i] >>> 16)) & mask;
+        while (keys[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        strings[slot] = oldStrings[i];
+        hashes[slot] = oldHashes[i];
+      }
+    }
+  }
+
+  /**
+   * Measures the heap kept per enemy after parsing a generated export from EnemyCSVGenerator, whose
+   * names are distinct but whose areas, types and damage types repeat.
+   *
+   * @param args - optional number of copies of the CSV rows, defaults to 400
+   */
+  public static void main(String[] args) {
+    int copies = (args.length > 0) ? Integer.parseInt(args[0]) : 400;
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    try {
+      File big = EnemyCSVGenerator.write(EnemyCSVGenerator.lines(copies));
+      for (int round = 0; round < 3; round++) {
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        EnemyDataParser parser = new EnemyDataParser();
+        parser.parseCSV(big);
+        ArrayList<Enemy> enemies = parser.getTree().traverse(); // Keep the enemies, not indexes
+        parser = null;
+        System.gc();
+        long kept = memory.getHeapMemoryUsage().getUsed() - before;
+        System.out.println(enemies.size() + " enemies: " + kept / enemies.size()
+            + " bytes of heap per enemy");
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+///////////////////////////////////////////////////////////////////////////////
+//
+// Title: ValueRegistry
+// Files: ValueRegistry.java, EnemyDataParser.java
+//
+// Author: Finn Van Order
+// Email: finnvanorder@gmail.com
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Set of the distinct values of an enemy attribute (areas, weaknesses, ...) that remembers the
+ * order values were first added in. Membership is a hash lookup, and the values are handed out as
+ * unmodifiable lists in insertion or sorted order. Each list is built on first use and kept until
+ * a new value is added, so the GUI can ask for them as often as it likes.
+ *
+ * The registry can also count the enemies holding each value, case and all, so that a value can
+ * be removed once the last enemy with exactly that spelling is gone.
+ *
+ * @author fvanorde
+ *
+ */
+public class ValueRegistry {
+  private LinkedHashSet<String> values;
+  private List<String> inOrder; // cached views, null when out of date
+  private List<String> sorted;
+  private HashMap<String, Integer> holders; // number of enemies with each value, exact case
+
+  /**
+   * Constructor for an empty ValueRegistry
+   */
+  public ValueRegistry() {
+    values = new LinkedHashSet<String>();
+    inOrder = null;
+    sorted = null;
+    holders = new HashMap<String, Integer>();
+  }
+
+  /**
+   * Adds a value if it is not already in the registry
+   *
+   * @param value - value to add
+   * @return true if the value was new, else false
+   */
+  public boolean add(String value) {
+    if (!values.add(value)) {
+      return false;
+    }
+    inOrder = null;
+    sorted = null;
+    return true;
+  }
+
+  /**
+   * Adds every value of a collection that is not already in the registry, in the collection's
+   * iteration order
+   *
+   * @param newValues - values to add
+   * @return true if any value was new, else false
+   */
+  public boolean addAll(Collection<String> newValues) {
+    boolean changed = false;
+    for (String value : newValues) {
+      changed |= add(value);
+    }
+    return changed;
+  }
+
+  /**
+   * Removes a value from the registry
+   *
+   * @param value - value to remove
+   * @return true if the value was in the registry, else false
+   */
+  public boolean remove(String value) {
+    if (!values.remove(value)) {
+      return false;
+    }
+    inOrder = null;
+    sorted = null;
+    return true;
+  }
+
+  /**
+   * Counts one more enemy holding a value. Does not add the value.
+   *
+   * @param value - value of the enemy, exact case
+   */
+  public void hold(String value) {
+    holders.merge(value, 1, Integer::sum);
+  }
+
+  /**
+   * Counts one enemy fewer holding a value, and removes the value once no enemy holds it
+   *
+   * @param value - value of the enemy, exact case
+   * @return true if the value was removed, else false
+   */
+  public boolean release(String value) {
+    Integer count = holders.get(value);
+    if (count != null && count > 1) {
+      holders.put(value, count - 1);
+      return false;
+    }
+    holders.remove(value);
+    return remove(value);
+  }
+
+  /**
+   * @param value - value to look for, exact case
+   * @return the number of enemies counted as holding the value
+   */
+  public int holders(String value) {
+    Integer count = holders.get(value);
+    return (count == null) ? 0 : count;
+  }
+
+  /**
+   * Forgets every holder count, for when they are about to be counted again
+   */
+  public void clearHolders() {
+    holders.clear();
+  }
+
+  /**
+   * @param value - value to look for
+   * @return true if the value is in the registry, else false
+   */
+  public boolean contains(String value) {
+    return values.contains(value);
+  }
+
+  /**
+   * @return the number of values in the registry
+   */
+  public int size() {
+    return values.size();
+  }
+
+  /**
+   * Removes every value from the registry
+   */
+  public void clear() {
+    values.clear();
+    holders.clear();
+    inOrder = null;
+    sorted = null;
+  }
+
+  /**
+   * @return an unmodifiable list of the values in the order they were first added
+   */
+  public List<String> inInsertionOrder() {
+    if (inOrder == null) {
+      inOrder = Collections.unmodifiableList(new ArrayList<String>(values));
+    }
+    return inOrder;
+  }
+
+  /**
+   * @return an unmodifiable list of the values in natural String order
+   */
+  public List<String> inSortedOrder() {
+    if (sorted == null) {
+      ArrayList<String> list = new ArrayList<String>(values);
+      list.sort(null);
+      sorted = Collections.unmodifiableList(list);
+    }
+    return sorted;
+  }
+}